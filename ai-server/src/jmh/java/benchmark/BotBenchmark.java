@@ -0,0 +1,48 @@
+package benchmark;
+
+import game.Bot;
+import game.State;
+import game.TranspositionTable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmarks of the search at fixed depths. Each operation decides on all boards of the phase, starting from an
+ * empty transposition table, so the iterations don't reuse the values found by each other.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class BotBenchmark {
+
+    @Param
+    public GamePhase phase;
+
+    @Param({"1", "2", "3"})
+    public int intelligenceLevel;
+
+    protected State[] states;
+
+    protected TranspositionTable transpositionTable;
+
+    @Setup
+    public void setUp() {
+        this.states = this.phase.states();
+        this.transpositionTable = new TranspositionTable();
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTranspositionTable() {
+        this.transpositionTable.clear();
+    }
+
+    @Benchmark
+    public void decide(Blackhole blackhole) {
+        for (State state : this.states) {
+            Bot bot = Bot.builder(this.intelligenceLevel).transpositionTable(this.transpositionTable).build();
+            blackhole.consume(bot.decide(state));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import game.Action;
+import game.Game;
+import game.State;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The benchmarks of the rules of the game. Each operation runs over all boards of the phase.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+public class GameBenchmark {
+
+    @Param
+    public GamePhase phase;
+
+    protected Game game;
+
+    protected List<String> boards;
+
+    protected State[] states;
+
+    /**
+     * The states paired with each of their actions, for the result benchmark
+     */
+    protected State[] actionStates;
+
+    protected Action[] actions;
+
+    @Setup
+    public void setUp() {
+        this.game = new Game();
+        this.boards = this.phase.boards();
+        this.states = this.phase.states();
+
+        List<State> actionStates = new ArrayList<>();
+        List<Action> actions = new ArrayList<>();
+        for (State state : this.states) {
+            for (Action action : this.game.actions(state)) {
+                actionStates.add(state);
+                actions.add(action);
+            }
+        }
+
+        this.actionStates = actionStates.toArray(State[]::new);
+        this.actions = actions.toArray(Action[]::new);
+    }
+
+    @Benchmark
+    public void actions(Blackhole blackhole) {
+        for (State state : this.states) {
+            blackhole.consume(this.game.actions(state));
+        }
+    }
+
+    @Benchmark
+    public void result(Blackhole blackhole) {
+        for (int i = 0; i < this.actions.length; i++) {
+            blackhole.consume(this.game.result(this.actionStates[i], this.actions[i]));
+        }
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (State state : this.states) {
+            blackhole.consume(this.game.evaluate(state));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String board : this.boards) {
+            blackhole.consume(State.parse(board, true));
+        }
+    }
+}
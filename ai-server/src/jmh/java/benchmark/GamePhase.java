@@ -0,0 +1,56 @@
+package benchmark;
+
+import game.State;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The phases of the game the benchmarks run over. The boards of each phase are read from the resources, in the same
+ * format as the boards received by the api, separated by blank lines.
+ */
+public enum GamePhase {
+    OPENING("boards/opening.txt"),
+    MIDDLEGAME("boards/middlegame.txt"),
+    ENDGAME("boards/endgame.txt");
+
+    private final String resource;
+
+    GamePhase(String resource) {
+        this.resource = resource;
+    }
+
+    /**
+     * Read the boards of this phase
+     * @return the boards
+     */
+    public List<String> boards() {
+        try (InputStream input = GamePhase.class.getClassLoader().getResourceAsStream(this.resource)) {
+            if (input == null) {
+                throw new IllegalStateException("The resource " + this.resource + " not found");
+            }
+
+            String text = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            return Arrays.stream(text.split("\n\\s*\n"))
+                    .map(String::strip)
+                    .filter(board -> !board.isEmpty())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parse the boards of this phase into the states of the bot turn
+     * @return the states
+     */
+    public State[] states() {
+        return this.boards().stream()
+                .map(board -> State.parse(board, true))
+                .toArray(State[]::new);
+    }
+}
@@ -1,11 +1,13 @@
 package api;
 
 import game.Action;
+import game.BoardFormat;
 import game.Game;
 import game.State;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Collection;
+import java.util.Optional;
 
 @CrossOrigin
 @RequestMapping("api/actions")
@@ -17,11 +19,12 @@ public class ActionsController {
     /**
      * Return the possible actions of the human player from the given board
      * @param board the board
+     * @param boardFormat the format of the board. UNICODE if not given
      * @return the actions
      */
     @GetMapping
-    public Collection<Action> actions(@RequestParam String board) {
-        State state = State.parse(board, false);
+    public Collection<Action> actions(@RequestParam String board, @RequestParam Optional<BoardFormat> boardFormat) {
+        State state = BoardParser.parse(board, boardFormat.orElse(null), false);
         return game.actions(state);
     }
 }
@@ -0,0 +1,31 @@
+package api;
+
+import game.BoardFormat;
+import game.State;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Parse the boards of the requests in the format the client gives them in
+ */
+public final class BoardParser {
+
+    private BoardParser() {}
+
+    /**
+     * Parse the given board of the given format into the state
+     * @param board the board
+     * @param boardFormat the format of the board, or null for UNICODE
+     * @param isBotTurn whether it is a bot turn or not, unless the board gives the player to move
+     * @return the state
+     * @throws ResponseStatusException with 400 when the board is not valid
+     */
+    public static State parse(String board, @Nullable BoardFormat boardFormat, boolean isBotTurn) {
+        try {
+            return (boardFormat == null ? BoardFormat.UNICODE : boardFormat).parse(board, isBotTurn);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The board is not valid: " + e.getMessage());
+        }
+    }
+}
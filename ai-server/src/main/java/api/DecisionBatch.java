@@ -0,0 +1,360 @@
+package api;
+
+import game.DecisionRecord;
+import game.SearchControl;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch of decisions searched on the search executor. At most a given number of boards are searched at once, so
+ * a large batch doesn't fill the queue of the executor and get its boards rejected, and the next board is submitted
+ * as each one completes. The decisions are sent to the event stream as they complete, followed by the statistics of
+ * the batch.
+ * <p>
+ * The completions are handled on the event executor, so the boards answered right away from the cache or the book
+ * don't nest a call for each one on the stack. A board rejected because the search executor is full is retried after
+ * the next board of the batch completes, or after a delay if none of them is being searched.
+ * <p>
+ * The events are sent on the event executor in the order they are queued, outside the lock of the batch, so a slow
+ * client never holds up the search thread that completed a board.
+ */
+public class DecisionBatch {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The event of the decision of a board
+     */
+    public static final String RESULT_EVENT = "result";
+
+    /**
+     * The event of the statistics of the batch, sent last
+     */
+    public static final String SUMMARY_EVENT = "summary";
+
+    /**
+     * The time before the rejected boards are submitted again when no board of the batch is being searched
+     */
+    protected static final long RETRY_DELAY_MILLIS = 100;
+
+    protected final DecisionService decisionService;
+
+    protected final List<DecisionRequest> requests;
+
+    protected final SseEmitter emitter;
+
+    protected final Executor eventExecutor;
+
+    /**
+     * The sends of the events not run yet, in the order they are run
+     */
+    protected final Deque<Runnable> pendingSends;
+
+    /**
+     * Whether the event executor is running the pending sends
+     */
+    protected boolean isSending;
+
+    /**
+     * The number of boards searched at once
+     */
+    protected final int maxInFlight;
+
+    /**
+     * The search controls of the boards being searched
+     */
+    protected final Set<SearchControl> searchControls;
+
+    /**
+     * The time taken by the search of each completed board
+     */
+    protected final List<Duration> timesTaken;
+
+    protected final long startNanos;
+
+    /**
+     * The indices of the boards rejected by the search executor, submitted before the next board
+     */
+    protected final Deque<Integer> rejectedIndices;
+
+    /**
+     * The index of the next board to submit
+     */
+    protected int nextIndex;
+
+    protected int numCompleted;
+
+    protected int numFailed;
+
+    protected long numNodesExpanded;
+
+    protected boolean isCancelled;
+
+    /**
+     * Create the batch
+     * @param decisionService the service the boards are searched by
+     * @param requests the requests of the decisions
+     * @param emitter the event stream of the batch
+     * @param eventExecutor the executor the events are sent on
+     * @param maxInFlight the number of boards searched at once
+     */
+    public DecisionBatch(DecisionService decisionService, List<DecisionRequest> requests, SseEmitter emitter,
+                         Executor eventExecutor, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight cannot be less than 1. Given: " + maxInFlight);
+        }
+
+        this.decisionService = decisionService;
+        this.requests = requests;
+        this.emitter = emitter;
+        this.eventExecutor = eventExecutor;
+        this.pendingSends = new ArrayDeque<>();
+        this.isSending = false;
+        this.maxInFlight = maxInFlight;
+        this.searchControls = new HashSet<>();
+        this.timesTaken = new ArrayList<>(requests.size());
+        this.startNanos = System.nanoTime();
+        this.rejectedIndices = new ArrayDeque<>();
+        this.nextIndex = 0;
+        this.numCompleted = 0;
+        this.numFailed = 0;
+        this.numNodesExpanded = 0;
+        this.isCancelled = false;
+    }
+
+    /**
+     * Start searching the boards. The batch is cancelled when its event stream is closed.
+     */
+    public synchronized void start() {
+        this.emitter.onCompletion(this::cancel);
+        this.emitter.onTimeout(this::cancel);
+        this.emitter.onError(e -> this.cancel());
+
+        if (this.requests.isEmpty()) {
+            this.finish();
+            return;
+        }
+
+        this.submitNext();
+    }
+
+    /**
+     * Stop the searches of the batch and don't submit the remaining boards
+     */
+    public synchronized void cancel() {
+        if (this.isCancelled || this.numCompleted == this.requests.size()) {
+            return;
+        }
+
+        logger.info("Cancelling the batch after {} of {} decisions", this.numCompleted, this.requests.size());
+        this.isCancelled = true;
+        this.searchControls.forEach(SearchControl::cancel);
+    }
+
+    /**
+     * Submit the rejected boards and then the next boards until the given number of boards are being searched or none
+     * are left. It stops at a board rejected by the search executor, which is submitted again later.
+     */
+    protected void submitNext() {
+        while (!this.isCancelled && this.searchControls.size() < this.maxInFlight
+                && (!this.rejectedIndices.isEmpty() || this.nextIndex < this.requests.size())) {
+            int index = this.rejectedIndices.isEmpty() ? this.nextIndex++ : this.rejectedIndices.poll();
+            DecisionRequest request = this.requests.get(index);
+            SearchControl searchControl = this.decisionService.createSearchControl(request);
+
+            CompletableFuture<DecisionRecord> search;
+            try {
+                search = this.decisionService.submit(request, searchControl, null, false);
+            } catch (ResponseStatusException e) {
+                if (e.getStatus() == HttpStatus.SERVICE_UNAVAILABLE) {
+                    this.reject(index);
+                    return;
+                }
+                search = CompletableFuture.failedFuture(e);
+            }
+
+            this.searchControls.add(searchControl);
+            search.whenCompleteAsync((decisionRecord, e) -> this.complete(index, searchControl, decisionRecord,
+                    e == null ? null : DecisionService.unwrap(e)), this.eventExecutor);
+        }
+    }
+
+    /**
+     * Keep the given board to submit it again. If no board of the batch is being searched, no completion submits it,
+     * so it is submitted after a delay.
+     * @param index the index of the board
+     */
+    protected void reject(int index) {
+        this.rejectedIndices.addFirst(index);
+        if (this.searchControls.isEmpty()) {
+            logger.debug("Retrying the board {} of the batch in {} ms, as the search executor is full", index, RETRY_DELAY_MILLIS);
+            CompletableFuture.delayedExecutor(RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS, this.eventExecutor)
+                    .execute(this::retry);
+        }
+    }
+
+    /**
+     * Submit the rejected boards again
+     */
+    protected synchronized void retry() {
+        this.submitNext();
+    }
+
+    /**
+     * Send the decision of the given board, and submit the next board or finish the batch
+     * @param index the index of the board
+     * @param searchControl the search control of the board
+     * @param decisionRecord the decision, or null if the search failed
+     * @param e the failure, or null if the search succeeded
+     */
+    protected synchronized void complete(int index, SearchControl searchControl, @Nullable DecisionRecord decisionRecord,
+                                         @Nullable Throwable e) {
+        this.searchControls.remove(searchControl);
+        this.numCompleted++;
+
+        DecisionBatchResult result;
+        if (decisionRecord != null) {
+            this.timesTaken.add(decisionRecord.timeTaken());
+            if (!decisionRecord.isFromCache()) {
+                this.numNodesExpanded += decisionRecord.numNodesExpanded() + decisionRecord.numQuiescenceNodesExpanded();
+            }
+            result = new DecisionBatchResult(index, decisionRecord, null);
+        } else {
+            this.numFailed++;
+            String error = e instanceof ResponseStatusException statusException ? statusException.getReason() : String.valueOf(e);
+            result = new DecisionBatchResult(index, null, error);
+        }
+
+        if (this.isCancelled) {
+            return;
+        }
+
+        this.dispatch(() -> {
+            if (!this.send(RESULT_EVENT, result)) {
+                this.cancel();
+            }
+        });
+        if (this.numCompleted == this.requests.size()) {
+            this.finish();
+        } else {
+            this.submitNext();
+        }
+    }
+
+    /**
+     * Send the statistics of the batch and close the event stream. It is called with the lock of the batch held.
+     */
+    protected void finish() {
+        DecisionBatchRecord batchRecord = this.toRecord();
+        logger.info("Finished the batch of {} decisions in {} seconds, expanding {} nodes at {} nodes/sec. Median: {} seconds, p99: {} seconds.",
+                batchRecord.numDecisions(), batchRecord.timeTaken().toMillis() / 1000.0, batchRecord.numNodesExpanded(),
+                Math.round(batchRecord.nodesPerSecond()), batchRecord.medianTimeTaken().toMillis() / 1000.0,
+                batchRecord.p99TimeTaken().toMillis() / 1000.0);
+
+        this.dispatch(() -> {
+            if (this.send(SUMMARY_EVENT, batchRecord)) {
+                this.emitter.complete();
+            }
+        });
+    }
+
+    /**
+     * Queue the given send of events, and start sending the queued events on the event executor unless it is already
+     * sending them. It is called with the lock of the batch held.
+     * @param send the send
+     */
+    protected void dispatch(Runnable send) {
+        this.pendingSends.add(send);
+        if (this.isSending) {
+            return;
+        }
+
+        this.isSending = true;
+        try {
+            this.eventExecutor.execute(this::sendPending);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Dropping the events of the batch, as the event executor is shut down");
+            this.pendingSends.clear();
+            this.isSending = false;
+        }
+    }
+
+    /**
+     * Run the queued sends in order until none is left. The lock of the batch is not held while sending.
+     */
+    protected void sendPending() {
+        while (true) {
+            Runnable send;
+            synchronized (this) {
+                send = this.pendingSends.poll();
+                if (send == null) {
+                    this.isSending = false;
+                    return;
+                }
+            }
+
+            send.run();
+        }
+    }
+
+    /**
+     * Send the given event to the event stream
+     * @param name the name of the event
+     * @param data the data of the event
+     * @return true if it was sent, false if the stream is gone
+     */
+    protected boolean send(String name, Object data) {
+        try {
+            this.emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.info("The event stream of the batch failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Get the statistics of the decisions completed so far
+     * @return the record
+     */
+    public synchronized DecisionBatchRecord toRecord() {
+        Duration timeTaken = Duration.ofNanos(System.nanoTime() - this.startNanos);
+        List<Duration> sortedTimesTaken = this.timesTaken.stream().sorted().toList();
+
+        return new DecisionBatchRecord(this.requests.size(), this.numFailed, this.numNodesExpanded,
+                this.numNodesExpanded / Math.max(timeTaken.toNanos() / 1e9, 1e-9), timeTaken,
+                percentile(sortedTimesTaken, 0.5), percentile(sortedTimesTaken, 0.99));
+    }
+
+    /**
+     * Get the given percentile of the given times by the nearest rank
+     * @param sortedTimes the times in ascending order
+     * @param fraction the percentile as a fraction between 0 and 1
+     * @return the time, or zero if there are none
+     */
+    protected static Duration percentile(List<Duration> sortedTimes, double fraction) {
+        if (sortedTimes.isEmpty()) {
+            return Duration.ZERO;
+        }
+
+        int rank = (int) Math.ceil(fraction * sortedTimes.size());
+        return sortedTimes.get(Math.max(rank - 1, 0));
+    }
+}
@@ -0,0 +1,86 @@
+package api;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The decisions of many boards in one request, for the analysis of many positions without a request per board
+ */
+@CrossOrigin
+@RequestMapping("api/decision/batch")
+@RestController
+public class DecisionBatchController {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    protected final DecisionService decisionService;
+
+    /**
+     * The executor the events of the batches are sent on
+     */
+    protected final ExecutorService eventExecutor;
+
+    /**
+     * The number of boards a batch can have
+     */
+    protected final int maxBatchSize;
+
+    /**
+     * The number of boards of a batch searched at once
+     */
+    protected final int maxInFlight;
+
+    public DecisionBatchController(DecisionService decisionService, ExecutorService eventExecutor,
+                                   @Value("${ai.search.batch.max-size}") int maxBatchSize,
+                                   @Value("${ai.search.batch.max-in-flight}") int maxInFlight) {
+        this.decisionService = decisionService;
+        this.eventExecutor = eventExecutor;
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Search the AI's decisions from the given boards on the search executor, and stream a "result" event with the
+     * index of the board as each decision completes, in any order. The last event is the "summary" with the total
+     * nodes, the nodes per second and the median and 99th percentile time of a board. Closing the stream cancels
+     * the remaining searches.
+     * @param batchRequest the requests of the decisions, each with its own intelligence level, time limit and node
+     *                     budget. Must have between 1 and the maximum batch size requests
+     * @return the event stream
+     */
+    @PostMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter batch(@RequestBody DecisionBatchRequest batchRequest) {
+        List<DecisionRequest> requests = batchRequest.decisions();
+        if (requests == null || requests.isEmpty() || requests.size() > this.maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "decisions must have between 1 and " + this.maxBatchSize
+                    + " requests. Given: " + (requests == null ? 0 : requests.size()));
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                this.decisionService.validate(requests.get(i));
+            } catch (ResponseStatusException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "decisions[" + i + "]: " + e.getReason());
+            }
+        }
+
+        logger.info("Received a batch of {} decisions", requests.size());
+
+        // every board can take up to the hard deadline, and the boards are searched maxInFlight at a time
+        long numRounds = (requests.size() + this.maxInFlight - 1) / this.maxInFlight;
+        SseEmitter emitter = new SseEmitter(numRounds * this.decisionService.getMaxSearchTimeMillis()
+                + DecisionJobController.EVENT_STREAM_TIMEOUT_MARGIN_MILLIS);
+        new DecisionBatch(this.decisionService, requests, emitter, this.eventExecutor, this.maxInFlight).start();
+
+        return emitter;
+    }
+}
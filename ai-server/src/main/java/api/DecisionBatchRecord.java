@@ -0,0 +1,23 @@
+package api;
+
+import java.time.Duration;
+
+/**
+ * Record of a finished batch of decisions
+ * @param numDecisions the number of boards in the batch
+ * @param numFailed the number of boards whose searches failed
+ * @param numNodesExpanded the number of nodes expanded by all searches, including the quiescence nodes
+ * @param nodesPerSecond the number of nodes expanded per second of the batch
+ * @param timeTaken the time taken by the whole batch
+ * @param medianTimeTaken the median time taken by the search of a board
+ * @param p99TimeTaken the 99th percentile of the time taken by the search of a board
+ */
+public record DecisionBatchRecord(
+        int numDecisions,
+        int numFailed,
+        long numNodesExpanded,
+        double nodesPerSecond,
+        Duration timeTaken,
+        Duration medianTimeTaken,
+        Duration p99TimeTaken
+) {}
@@ -0,0 +1,9 @@
+package api;
+
+import java.util.List;
+
+/**
+ * Request of the decisions of many boards, each searched with its own intelligence level and time limit
+ * @param decisions the requests of the decisions
+ */
+public record DecisionBatchRequest(List<DecisionRequest> decisions) {}
@@ -0,0 +1,12 @@
+package api;
+
+import game.DecisionRecord;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Record of the decision of one board of a batch
+ * @param index the index of the board in the batch
+ * @param decision the decision, or null if the search failed
+ * @param error the message of the failure, or null if the search succeeded
+ */
+public record DecisionBatchResult(int index, @Nullable DecisionRecord decision, @Nullable String error) {}
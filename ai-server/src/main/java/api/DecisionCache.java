@@ -0,0 +1,516 @@
+package api;
+
+import game.Action;
+import game.BoardCodec;
+import game.DecisionRecord;
+import game.Game;
+import game.Move;
+import game.Player;
+import game.SearchControl;
+import game.SearchFeature;
+import game.SearchFeatureRecord;
+import game.SearchStatisticsRecord;
+import game.State;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+import piece.Queen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The decisions already made, so a request for a state searched before is answered without searching again, e.g. when
+ * the page is reloaded or the same opening is played by many users. The decisions are kept by the hash of the state,
+ * which includes the player to move, and the search features, and the least recently used one is evicted when the
+ * cache is full. A decision satisfies a request when it is searched at least as deep as the intelligence level of the
+ * request, or when the time limit of its search stopped it and the request has the same or a shorter time limit, as
+ * the search of the request would stop no deeper.
+ * <p>
+ * The cache can be saved to a file when the server stops and loaded when it starts. The file starts with the magic
+ * number and the number of entries, followed by the entries from the least recently used.
+ */
+public class DecisionCache {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The counter of the lookups of the cache, tagged by the result: hit or miss
+     */
+    public static final String REQUESTS_METRIC = "ai.search.cache.requests";
+
+    /**
+     * The counter of the decisions evicted because the cache was full
+     */
+    public static final String EVICTIONS_METRIC = "ai.search.cache.evictions";
+
+    /**
+     * The gauge of the number of decisions in the cache
+     */
+    public static final String SIZE_METRIC = "ai.search.cache.size";
+
+    /**
+     * The magic number at the start of a cache file, "DCC1"
+     */
+    public static final int MAGIC = 0x44434331;
+
+    /**
+     * The time limit written for a search with no time limit
+     */
+    protected static final long NO_TIME_LIMIT = -1;
+
+    /**
+     * The ordinal written for a decision with no stop reason
+     */
+    protected static final int NO_STOP_REASON = -1;
+
+    /**
+     * The longest principal variation read from a file, so a corrupt length doesn't allocate a huge array
+     */
+    protected static final int MAX_PRINCIPAL_VARIATION_LENGTH = 1024;
+
+    protected final int maxEntries;
+
+    /**
+     * The file the cache is saved to, or null if it is not saved
+     */
+    @Nullable
+    protected final Path path;
+
+    /**
+     * The entries from the least recently used, guarded by this cache
+     */
+    protected final LinkedHashMap<Key, Entry> entries;
+
+    protected final Game game;
+
+    protected final Counter hitCounter;
+
+    protected final Counter missCounter;
+
+    protected final Counter evictionCounter;
+
+    /**
+     * The key of the decisions of a state
+     * @param hash the Zobrist hash of the state
+     * @param searchFeatures the forward pruning features the decisions are searched with
+     */
+    protected record Key(long hash, Set<SearchFeature> searchFeatures) {}
+
+    /**
+     * A decision of the cache
+     * @param board the board of the state packed by BoardCodec, to tell apart the states of the same hash
+     * @param isBotTurn whether the bot is to move in the state or not
+     * @param intelligenceLevel the intelligence level the decision is searched at
+     * @param timeLimit the time limit of the search, or null for no limit
+     * @param decision the decision, with the board of the result in the unicode format
+     */
+    protected record Entry(byte[] board, boolean isBotTurn, int intelligenceLevel, @Nullable Duration timeLimit,
+                           DecisionRecord decision) {}
+
+    /**
+     * Create the cache
+     * @param maxEntries the number of decisions the cache can hold. Must be at least 0, which disables the cache
+     * @param path the file the cache is saved to and loaded from, or null if it is not saved
+     * @param meterRegistry the registry of the metrics of the cache
+     */
+    public DecisionCache(int maxEntries, @Nullable Path path, MeterRegistry meterRegistry) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries cannot be less than 0. Given: " + maxEntries);
+        }
+
+        this.maxEntries = maxEntries;
+        this.path = path;
+        this.game = new Game();
+        this.hitCounter = meterRegistry.counter(REQUESTS_METRIC, "result", "hit");
+        this.missCounter = meterRegistry.counter(REQUESTS_METRIC, "result", "miss");
+        this.evictionCounter = meterRegistry.counter(EVICTIONS_METRIC);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (this.size() > DecisionCache.this.maxEntries) {
+                    DecisionCache.this.evictionCounter.increment();
+                    return true;
+                }
+
+                return false;
+            }
+        };
+        meterRegistry.gauge(SIZE_METRIC, this, DecisionCache::size);
+    }
+
+    /**
+     * Get the number of decisions in the cache
+     * @return the number of decisions
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Find the decision of the given state that satisfies the given request
+     * @param state the state
+     * @param intelligenceLevel the intelligence level of the request
+     * @param timeLimit the time limit of the request, or null for no limit
+     * @param searchFeatures the forward pruning features of the request
+     * @return a copy of the decision flagged as from the cache, with the time taken by the lookup, or null if the
+     * cache has no decision that satisfies the request
+     */
+    @Nullable
+    public DecisionRecord get(State state, int intelligenceLevel, @Nullable Duration timeLimit,
+                              Set<SearchFeature> searchFeatures) {
+        if (this.maxEntries == 0) {
+            return null;
+        }
+
+        long startNanos = System.nanoTime();
+        Entry entry;
+        synchronized (this) {
+            entry = this.entries.get(new Key(state.getHash(), searchFeatures));
+        }
+
+        if (entry == null || !isSameState(entry, state) || !satisfies(entry, intelligenceLevel, timeLimit)) {
+            this.missCounter.increment();
+            return null;
+        }
+
+        this.hitCounter.increment();
+        return copy(entry.decision(), true, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Put the given decision of the given state, unless the cache has a deeper decision of the state. The decisions
+     * from the opening book and the tablebase are not put, as they are made without searching.
+     * @param state the state
+     * @param intelligenceLevel the intelligence level the decision is searched at
+     * @param timeLimit the time limit of the search, or null for no limit
+     * @param searchFeatures the forward pruning features the decision is searched with
+     * @param decision the decision, with the board of the result in the unicode format
+     */
+    public void put(State state, int intelligenceLevel, @Nullable Duration timeLimit, Set<SearchFeature> searchFeatures,
+                    DecisionRecord decision) {
+        if (this.maxEntries == 0 || decision.isFromOpeningBook() || decision.isFromTablebase()) {
+            return;
+        }
+
+        Entry entry = new Entry(BoardCodec.pack(state), state.isBotTurn(), intelligenceLevel, timeLimit,
+                copy(decision, false, decision.timeTaken()));
+        Key key = new Key(state.getHash(), searchFeatures.isEmpty()
+                ? EnumSet.noneOf(SearchFeature.class)
+                : EnumSet.copyOf(searchFeatures));
+        synchronized (this) {
+            this.entries.merge(key, entry, (oldEntry, newEntry) ->
+                    isSameState(oldEntry, state) && oldEntry.decision().depthReached() > newEntry.decision().depthReached()
+                            ? oldEntry
+                            : newEntry);
+        }
+    }
+
+    /**
+     * Check if the given entry is of the given state
+     * @param entry the entry
+     * @param state the state
+     * @return true if it is, false if it is of another state of the same hash
+     */
+    protected static boolean isSameState(Entry entry, State state) {
+        return entry.isBotTurn() == state.isBotTurn() && Arrays.equals(entry.board(), BoardCodec.pack(state));
+    }
+
+    /**
+     * Check if the decision of the given entry satisfies the given request
+     * @param entry the entry
+     * @param intelligenceLevel the intelligence level of the request
+     * @param timeLimit the time limit of the request, or null for no limit
+     * @return true if it does, false otherwise
+     */
+    protected static boolean satisfies(Entry entry, int intelligenceLevel, @Nullable Duration timeLimit) {
+        DecisionRecord decision = entry.decision();
+        if (decision.depthReached() >= intelligenceLevel) {
+            return true;
+        }
+
+        // the search of the entry was stopped by its time limit before its intelligence level
+        return decision.stopReason() == null && entry.intelligenceLevel() >= intelligenceLevel
+                && entry.timeLimit() != null && timeLimit != null && timeLimit.compareTo(entry.timeLimit()) <= 0;
+    }
+
+    /**
+     * Copy the given decision, so the result modified by a request doesn't change the decision in the cache
+     * @param decision the decision
+     * @param isFromCache whether the copy is answered from the cache
+     * @param timeTaken the time taken of the copy
+     * @return the copy
+     */
+    protected static DecisionRecord copy(DecisionRecord decision, boolean isFromCache, Duration timeTaken) {
+        return new DecisionRecord(timeTaken, decision.minimaxValue(), decision.actionTaken(),
+                decision.result().deepCopy(), decision.principalVariation(), decision.depthReached(),
+                decision.numNodesExpanded(), decision.numQuiescenceNodesExpanded(), decision.numReSearches(),
+                decision.searchFeatures(), decision.statistics(), decision.isFromOpeningBook(),
+                decision.isFromTablebase(), isFromCache, decision.stopReason());
+    }
+
+    /**
+     * Load the decisions from the file of the cache, after the decisions already in the cache. The decisions of the
+     * states whose moves are not legal anymore are skipped. The decisions are put only once the whole file is read, so
+     * a corrupt file loads none of them.
+     * @return the number of decisions loaded
+     * @throws IOException when the file cannot be read, is not a cache file or is corrupt
+     */
+    public int load() throws IOException {
+        if (this.path == null || !Files.exists(this.path)) {
+            return 0;
+        }
+
+        List<Runnable> puts = new ArrayList<>();
+        try (InputStream file = Files.newInputStream(this.path);
+             DataInputStream input = new DataInputStream(new BufferedInputStream(file))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("The file " + this.path + " is not a decision cache");
+            }
+
+            int numEntries = input.readInt();
+            for (int i = 0; i < numEntries; i++) {
+                byte[] board = input.readNBytes(BoardCodec.PACKED_SIZE);
+                if (board.length < BoardCodec.PACKED_SIZE) {
+                    throw new EOFException("The decision cache " + this.path + " ends in the middle of a board");
+                }
+                boolean isBotTurn = input.readBoolean();
+                Set<SearchFeature> searchFeatures = readSearchFeatures(input.readInt());
+                int intelligenceLevel = input.readInt();
+                long timeLimitMillis = input.readLong();
+                Duration timeLimit = timeLimitMillis == NO_TIME_LIMIT ? null : Duration.ofMillis(timeLimitMillis);
+
+                State state = BoardCodec.unpack(board, isBotTurn);
+                try {
+                    DecisionRecord decision = this.readDecision(input, state);
+                    puts.add(() -> this.put(state, intelligenceLevel, timeLimit, searchFeatures, decision));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipped a decision of the cache {}: {}", this.path, e.getMessage());
+                }
+            }
+        } catch (RuntimeException e) {
+            // the bytes of a corrupt file decode to invalid boards, ordinals and lengths
+            throw new IOException("The decision cache " + this.path + " is corrupt", e);
+        }
+
+        puts.forEach(Runnable::run);
+        return puts.size();
+    }
+
+    /**
+     * Save the decisions to the file of the cache, replacing the file once all of them are written
+     * @return the number of decisions saved
+     * @throws IOException when the file cannot be written
+     */
+    public int save() throws IOException {
+        if (this.path == null) {
+            return 0;
+        }
+
+        List<Map.Entry<Key, Entry>> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(this.entries.entrySet());
+        }
+
+        Path tempPath = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(tempPath);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(MAGIC);
+            output.writeInt(entries.size());
+            for (Map.Entry<Key, Entry> mapEntry : entries) {
+                Entry entry = mapEntry.getValue();
+                output.write(entry.board());
+                output.writeBoolean(entry.isBotTurn());
+                output.writeInt(writeSearchFeatures(mapEntry.getKey().searchFeatures()));
+                output.writeInt(entry.intelligenceLevel());
+                output.writeLong(entry.timeLimit() == null ? NO_TIME_LIMIT : entry.timeLimit().toMillis());
+                writeDecision(output, entry.decision());
+            }
+        }
+
+        Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return entries.size();
+    }
+
+    /**
+     * Save the cache when the server stops. Spring calls it when the context is closed.
+     */
+    public void close() {
+        if (this.path == null) {
+            return;
+        }
+
+        try {
+            int numSaved = this.save();
+            logger.info("Saved {} decisions to the decision cache {}", numSaved, this.path);
+        } catch (IOException e) {
+            logger.error("The decision cache cannot be saved to " + this.path, e);
+        }
+    }
+
+    /**
+     * Pack the given search features into bits by their ordinals
+     * @param searchFeatures the search features
+     * @return the bits
+     */
+    protected static int writeSearchFeatures(Set<SearchFeature> searchFeatures) {
+        int bits = 0;
+        for (SearchFeature feature : searchFeatures) {
+            bits |= 1 << feature.ordinal();
+        }
+
+        return bits;
+    }
+
+    /**
+     * Unpack the search features packed by writeSearchFeatures
+     * @param bits the bits
+     * @return the search features
+     */
+    protected static Set<SearchFeature> readSearchFeatures(int bits) {
+        Set<SearchFeature> searchFeatures = EnumSet.noneOf(SearchFeature.class);
+        for (SearchFeature feature : SearchFeature.values()) {
+            if ((bits & 1 << feature.ordinal()) != 0) {
+                searchFeatures.add(feature);
+            }
+        }
+
+        return searchFeatures;
+    }
+
+    /**
+     * Write the given decision. The actions are written as the squares of their moves and the result is not written,
+     * as they are made again from the state when the decision is read
+     * @param output the output
+     * @param decision the decision
+     * @throws IOException when the decision cannot be written
+     */
+    protected static void writeDecision(DataOutputStream output, DecisionRecord decision) throws IOException {
+        output.writeLong(decision.timeTaken().toNanos());
+        output.writeDouble(decision.minimaxValue());
+        output.writeShort(Move.of(decision.actionTaken()));
+        output.writeInt(decision.principalVariation().size());
+        for (Action action : decision.principalVariation()) {
+            output.writeShort(Move.of(action));
+        }
+        output.writeInt(decision.depthReached());
+        output.writeInt(decision.numNodesExpanded());
+        output.writeInt(decision.numQuiescenceNodesExpanded());
+        output.writeInt(decision.numReSearches());
+        output.writeInt(decision.stopReason() == null ? NO_STOP_REASON : decision.stopReason().ordinal());
+
+        output.writeInt(decision.searchFeatures().size());
+        for (Map.Entry<SearchFeature, SearchFeatureRecord> feature : decision.searchFeatures().entrySet()) {
+            output.writeInt(feature.getKey().ordinal());
+            output.writeInt(feature.getValue().numSearches());
+            output.writeInt(feature.getValue().numCutoffs());
+            output.writeInt(feature.getValue().numNodesExpanded());
+            output.writeLong(feature.getValue().timeTaken().toNanos());
+        }
+
+        SearchStatisticsRecord statistics = decision.statistics();
+        output.writeDouble(statistics.nodesPerSecond());
+        output.writeLong(statistics.numInteriorNodes());
+        output.writeLong(statistics.numLeafNodes());
+        output.writeLong(statistics.numQuiescenceNodes());
+        output.writeLong(statistics.numTranspositionProbes());
+        output.writeLong(statistics.numTranspositionHits());
+        output.writeDouble(statistics.transpositionHitRate());
+        output.writeLong(statistics.numTablebaseHits());
+        output.writeLong(statistics.numCutoffs());
+        output.writeLong(statistics.numFirstMoveCutoffs());
+        output.writeDouble(statistics.firstMoveCutoffRate());
+        output.writeDouble(statistics.effectiveBranchingFactor());
+        output.writeInt(statistics.maxDepthReached());
+        output.writeLong(statistics.numEvaluations());
+        output.writeLong(statistics.evaluationTime().toNanos());
+        output.writeLong(statistics.numMoveGenerations());
+        output.writeLong(statistics.moveGenerationTime().toNanos());
+    }
+
+    /**
+     * Read the decision written by writeDecision
+     * @param input the input
+     * @param state the state of the decision
+     * @return the decision
+     * @throws IOException when the decision cannot be read
+     * @throws IllegalArgumentException when a move of the decision is not legal in the state
+     */
+    protected DecisionRecord readDecision(DataInputStream input, State state) throws IOException {
+        Duration timeTaken = Duration.ofNanos(input.readLong());
+        double minimaxValue = input.readDouble();
+        int move = input.readUnsignedShort();
+        int principalVariationLength = input.readInt();
+        if (principalVariationLength < 0 || principalVariationLength > MAX_PRINCIPAL_VARIATION_LENGTH) {
+            throw new IOException("The principal variation has the invalid length " + principalVariationLength);
+        }
+        int[] principalVariation = new int[principalVariationLength];
+        for (int i = 0; i < principalVariation.length; i++) {
+            principalVariation[i] = input.readUnsignedShort();
+        }
+        int depthReached = input.readInt();
+        int numNodesExpanded = input.readInt();
+        int numQuiescenceNodesExpanded = input.readInt();
+        int numReSearches = input.readInt();
+        int stopReason = input.readInt();
+
+        int numSearchFeatures = input.readInt();
+        Map<SearchFeature, SearchFeatureRecord> searchFeatures = new EnumMap<>(SearchFeature.class);
+        for (int i = 0; i < numSearchFeatures; i++) {
+            searchFeatures.put(SearchFeature.values()[input.readInt()], new SearchFeatureRecord(input.readInt(),
+                    input.readInt(), input.readInt(), Duration.ofNanos(input.readLong())));
+        }
+
+        SearchStatisticsRecord statistics = new SearchStatisticsRecord(input.readDouble(), input.readLong(),
+                input.readLong(), input.readLong(), input.readLong(), input.readLong(), input.readDouble(),
+                input.readLong(), input.readLong(), input.readLong(), input.readDouble(), input.readDouble(),
+                input.readInt(), input.readLong(), Duration.ofNanos(input.readLong()), input.readLong(),
+                Duration.ofNanos(input.readLong()));
+
+        Action action = toAction(state, move);
+        State nextState = this.game.result(state, action, Queen.BLACK_ICON);
+
+        State variationState = state.clone();
+        List<Action> principalVariationActions = new ArrayList<>(principalVariation.length);
+        for (int variationMove : principalVariation) {
+            principalVariationActions.add(toAction(variationState, variationMove));
+            variationState.makeMove(variationMove);
+        }
+
+        return new DecisionRecord(timeTaken, minimaxValue, action, nextState.toJSON(), principalVariationActions,
+                depthReached, numNodesExpanded, numQuiescenceNodesExpanded, numReSearches, searchFeatures, statistics,
+                false, false, false, stopReason == NO_STOP_REASON ? null : SearchControl.StopReason.values()[stopReason]);
+    }
+
+    /**
+     * Create the action of the given move of the player to move in the given state
+     * @param state the state
+     * @param move the squares of the move
+     * @return the action
+     * @throws IllegalArgumentException when the player has no piece at the square of the move
+     */
+    protected static Action toAction(State state, int move) {
+        Player player = state.isBotTurn() ? state.getBotPlayer() : state.getHumanPlayer();
+        return player.toAction(move);
+    }
+}
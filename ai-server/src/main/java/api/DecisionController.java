@@ -1,21 +1,19 @@
 package api;
 
-import game.Bot;
 import game.DecisionRecord;
-import game.State;
+import game.BoardFormat;
+import game.MoveOrdering;
+import game.SearchControl;
+import game.SearchFeature;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.Set;
 
 @CrossOrigin
 @RequestMapping("api/decision")
@@ -25,59 +23,62 @@ public class DecisionController {
     private static final Logger logger = LogManager.getLogger();
 
     /**
-     * Return the AI's decision from the given board
+     * The time the response waits for a search after its hard deadline
+     */
+    protected static final long RESPONSE_TIMEOUT_MARGIN_MILLIS = 1000;
+
+    protected final DecisionService decisionService;
+
+    public DecisionController(DecisionService decisionService) {
+        this.decisionService = decisionService;
+    }
+
+    /**
+     * Return the AI's decision from the given board. The search runs on the search executor and is cancelled when
+     * the client goes away or the response times out, so an abandoned search doesn't keep its threads busy.
+     * While many decisions are waiting, the new ones are searched at most at the degraded level, and when the queue
+     * is full they are rejected with 503.
      * @param intelligenceLevel the intelligence level of the AI. Must be at least 0
      * @param board the board
-     * @param timeLimit the time limit the bot can think in seconds. Must be at least 5
+     * @param boardFormat the format of the board, which the board of the result is returned in too. UNICODE if not
+     *                    given
+     * @param timeLimit the time limit the bot can think in seconds. Must be at least 5 and at most the maximum search
+     *                  time
+     * @param numThreads the number of threads searching for the decision. Must be between 1 and the maximum number
+     *                   of threads per request
+     * @param moveOrdering the order in which the bot searches the actions. HEURISTIC if not given
+     * @param searchFeatures the forward pruning features the bot searches with. None if not given
+     * @param nodeBudget the number of nodes the search can expand before it stops. Must be positive. No limit if not
+     *                   given
      * @return the decision with relevant information
      */
     @GetMapping
-    public DecisionRecord decision(@RequestParam int intelligenceLevel, @RequestParam String board, @RequestParam Optional<Integer> timeLimit) {
-        if (intelligenceLevel < 0) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "intelligenceLevel cannot be less than 0. Given: " + intelligenceLevel);
-        } else if (timeLimit.isPresent() && timeLimit.get() < 5) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "timeLimit cannot be less than 5. Given: " + timeLimit.get());
-        }
+    public DeferredResult<DecisionRecord> decision(@RequestParam int intelligenceLevel, @RequestParam String board, @RequestParam Optional<BoardFormat> boardFormat,
+                                                   @RequestParam Optional<Integer> timeLimit, @RequestParam Optional<Integer> numThreads, @RequestParam Optional<MoveOrdering> moveOrdering,
+                                                   @RequestParam Optional<Set<SearchFeature>> searchFeatures, @RequestParam Optional<Long> nodeBudget) {
+        DecisionRequest request = new DecisionRequest(intelligenceLevel, board, boardFormat.orElse(null), timeLimit.orElse(null),
+                numThreads.orElse(null), moveOrdering.orElse(null), searchFeatures.orElse(null), nodeBudget.orElse(null));
+        SearchControl searchControl = this.decisionService.createSearchControl(request);
 
-        State state = State.parse(board, true);
+        // the search stops itself at the hard deadline, so the response times out only if it fails to
+        DeferredResult<DecisionRecord> result = new DeferredResult<>(this.decisionService.getMaxSearchTimeMillis() + RESPONSE_TIMEOUT_MARGIN_MILLIS);
+        result.onTimeout(() -> {
+            searchControl.cancel();
+            result.setErrorResult(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The search timed out"));
+        });
+        result.onError(e -> {
+            logger.info("Cancelling the search of the request that failed: {}", e.getMessage());
+            searchControl.cancel();
+        });
 
-        logger.info("Received intelligenceLevel: {}", intelligenceLevel);
-        logger.info("Received timeLimit: {}", timeLimit);
-        logger.info("Received state:\n{}", state);
-        logger.info("Thinking...");
-
-        Stack<DecisionRecord> decisionStack = new Stack<>();
-
-        if (timeLimit.isEmpty()) {
-            decisionStack.push(new Bot(intelligenceLevel).decide(state));
-        } else {
-            // decide with iterative intelligence level
-            List<CompletableFuture<?>> futures = new LinkedList<>();
-            for (int i = 0; i < intelligenceLevel+1; i++) {
-                final int currentIntelligenceLevel = i;
-                CompletableFuture<?> future =
-                        CompletableFuture.supplyAsync(() -> new Bot(currentIntelligenceLevel).decide(state))
-                                .thenApply(decisionStack::push)
-                                .orTimeout(timeLimit.get(), TimeUnit.SECONDS)
-                                .exceptionally(e -> {
-                                    if (!(e instanceof TimeoutException)) {
-                                        logger.error(e);
-                                    }
-                                    return null;
-                                });
-                futures.add(future);
+        this.decisionService.submit(request, searchControl, null).whenComplete((decisionRecord, e) -> {
+            if (e != null) {
+                result.setErrorResult(DecisionService.unwrap(e));
+            } else {
+                result.setResult(decisionRecord);
             }
-            futures.forEach(CompletableFuture::join);
-        }
-
-        DecisionRecord decisionRecord = decisionStack.pop();
-
-        logger.info("Moved {} to {} with Minimax value: {} after {} seconds, expanding {} nodes.",
-                decisionRecord.actionTaken().piece().toString(), decisionRecord.actionTaken(), decisionRecord.minimaxValue(),
-                (decisionRecord.timeTaken().toMillis() / 1000.0), decisionRecord.numNodesExpanded());
-
-        logger.info("Result:{}", decisionRecord.result());
+        });
 
-        return decisionRecord;
+        return result;
     }
 }
@@ -0,0 +1,289 @@
+package api;
+
+import game.DecisionRecord;
+import game.IterationRecord;
+import game.SearchControl;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A decision searched in the background. The completed iterations are kept as the search goes deeper and pushed to
+ * the subscribed event streams, so a client can show the progress of the search or poll for it.
+ * <p>
+ * The events are sent on the event executor in the order they are added, outside the lock of the job, so a slow
+ * client never holds up the search thread that completed an iteration.
+ */
+public class DecisionJob {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The event of a completed iteration
+     */
+    public static final String ITERATION_EVENT = "iteration";
+
+    /**
+     * The event of the decision, sent last
+     */
+    public static final String DECISION_EVENT = "decision";
+
+    /**
+     * The event of the failure of the search, sent last
+     */
+    public static final String ERROR_EVENT = "error";
+
+    /**
+     * The state of a job
+     */
+    public enum Status {
+        RUNNING,
+        DONE,
+        FAILED
+    }
+
+    protected final String id;
+
+    protected final SearchControl searchControl;
+
+    protected final List<IterationRecord> iterations;
+
+    protected final List<SseEmitter> emitters;
+
+    protected final Executor eventExecutor;
+
+    /**
+     * The sends of the events not run yet, in the order they are run
+     */
+    protected final Deque<Runnable> pendingSends;
+
+    /**
+     * Whether the event executor is running the pending sends
+     */
+    protected boolean isSending;
+
+    protected Status status;
+
+    @Nullable
+    protected DecisionRecord decision;
+
+    @Nullable
+    protected String error;
+
+    /**
+     * The time the job finished, or null if it is running
+     */
+    @Nullable
+    protected Instant finishedAt;
+
+    /**
+     * Create the job
+     * @param id the id of the job
+     * @param searchControl the search control of the search
+     * @param eventExecutor the executor the events are sent on
+     */
+    public DecisionJob(String id, SearchControl searchControl, Executor eventExecutor) {
+        this.id = id;
+        this.searchControl = searchControl;
+        this.iterations = new ArrayList<>();
+        this.emitters = new ArrayList<>();
+        this.eventExecutor = eventExecutor;
+        this.pendingSends = new ArrayDeque<>();
+        this.isSending = false;
+        this.status = Status.RUNNING;
+        this.decision = null;
+        this.error = null;
+        this.finishedAt = null;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Stop the search. The job finishes with the decision of the last completed iteration.
+     */
+    public void cancel() {
+        this.searchControl.cancel();
+    }
+
+    /**
+     * Keep the given iteration and push it to the subscribers
+     * @param iteration the iteration
+     */
+    public synchronized void addIteration(IterationRecord iteration) {
+        this.iterations.add(iteration);
+        for (SseEmitter emitter : this.emitters) {
+            this.dispatch(() -> {
+                if (!send(emitter, ITERATION_EVENT, iteration)) {
+                    this.unsubscribe(emitter);
+                }
+            });
+        }
+    }
+
+    /**
+     * Finish the job with the given decision
+     * @param decision the decision
+     */
+    public synchronized void complete(DecisionRecord decision) {
+        this.decision = decision;
+        this.finish(Status.DONE);
+    }
+
+    /**
+     * Finish the job with the failure of the search
+     * @param error the message of the failure
+     */
+    public synchronized void fail(String error) {
+        this.error = error;
+        this.finish(Status.FAILED);
+    }
+
+    /**
+     * Finish the job, and send the last event to the subscribers and close their streams
+     * @param status the final status
+     */
+    protected void finish(Status status) {
+        this.status = status;
+        this.finishedAt = Instant.now();
+
+        for (SseEmitter emitter : this.emitters) {
+            this.dispatch(() -> this.sendLastEvent(emitter));
+        }
+        this.emitters.clear();
+    }
+
+    /**
+     * Subscribe the given event stream. The iterations completed so far are sent first, and the stream is closed
+     * right away if the job has finished.
+     * @param emitter the event stream
+     */
+    public synchronized void subscribe(SseEmitter emitter) {
+        List<IterationRecord> iterations = List.copyOf(this.iterations);
+        boolean isRunning = this.status == Status.RUNNING;
+        if (isRunning) {
+            this.emitters.add(emitter);
+            emitter.onCompletion(() -> this.unsubscribe(emitter));
+            emitter.onTimeout(() -> this.unsubscribe(emitter));
+        }
+
+        this.dispatch(() -> {
+            for (IterationRecord iteration : iterations) {
+                if (!send(emitter, ITERATION_EVENT, iteration)) {
+                    this.unsubscribe(emitter);
+                    return;
+                }
+            }
+
+            if (!isRunning) {
+                this.sendLastEvent(emitter);
+            }
+        });
+    }
+
+    /**
+     * Stop pushing to the given event stream
+     * @param emitter the event stream
+     */
+    public synchronized void unsubscribe(SseEmitter emitter) {
+        this.emitters.remove(emitter);
+    }
+
+    /**
+     * Queue the given send of events, and start sending the queued events on the event executor unless it is already
+     * sending them. It is called with the lock of the job held.
+     * @param send the send
+     */
+    protected void dispatch(Runnable send) {
+        this.pendingSends.add(send);
+        if (this.isSending) {
+            return;
+        }
+
+        this.isSending = true;
+        try {
+            this.eventExecutor.execute(this::sendPending);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Dropping the events of the decision job {}, as the event executor is shut down", this.id);
+            this.pendingSends.clear();
+            this.isSending = false;
+        }
+    }
+
+    /**
+     * Run the queued sends in order until none is left. The lock of the job is not held while sending.
+     */
+    protected void sendPending() {
+        while (true) {
+            Runnable send;
+            synchronized (this) {
+                send = this.pendingSends.poll();
+                if (send == null) {
+                    this.isSending = false;
+                    return;
+                }
+            }
+
+            send.run();
+        }
+    }
+
+    /**
+     * Send the decision or the failure to the given event stream and close it
+     * @param emitter the event stream
+     */
+    protected void sendLastEvent(SseEmitter emitter) {
+        boolean isSent = this.status == Status.DONE
+                ? send(emitter, DECISION_EVENT, this.decision)
+                : send(emitter, ERROR_EVENT, this.error);
+        if (isSent) {
+            emitter.complete();
+        }
+    }
+
+    /**
+     * Send the given event to the given event stream
+     * @param emitter the event stream
+     * @param name the name of the event
+     * @param data the data of the event
+     * @return true if it was sent, false if the stream is gone
+     */
+    protected static boolean send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("Dropping the event stream that failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Check if the job finished more than the given time ago
+     * @param timeToLive the time a finished job is kept
+     * @return true if it did, false otherwise
+     */
+    public synchronized boolean isExpired(Duration timeToLive) {
+        return this.finishedAt != null && this.finishedAt.plus(timeToLive).isBefore(Instant.now());
+    }
+
+    /**
+     * Get the record of the current state of the job
+     * @return the record
+     */
+    public synchronized DecisionJobRecord toRecord() {
+        return new DecisionJobRecord(this.id, this.status, List.copyOf(this.iterations), this.decision, this.error);
+    }
+}
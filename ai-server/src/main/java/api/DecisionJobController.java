@@ -0,0 +1,156 @@
+package api;
+
+import game.BoardFormat;
+import game.MoveOrdering;
+import game.SearchControl;
+import game.SearchFeature;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The decisions searched in the background, so a request doesn't hold a servlet thread for the whole search.
+ * A client submits a decision and gets its job id right away, then polls the job or subscribes to its event stream,
+ * which pushes each iteration as the search goes deeper and the decision at the end.
+ */
+@CrossOrigin
+@RequestMapping("api/decision/jobs")
+@RestController
+public class DecisionJobController {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The time an event stream stays open after the hard deadline of the search
+     */
+    protected static final long EVENT_STREAM_TIMEOUT_MARGIN_MILLIS = 1000;
+
+    protected final DecisionService decisionService;
+
+    protected final Map<String, DecisionJob> jobs;
+
+    /**
+     * The executor the events of the jobs are sent on
+     */
+    protected final ExecutorService eventExecutor;
+
+    /**
+     * The time a finished job is kept for the client to fetch it
+     */
+    protected final Duration jobTimeToLive;
+
+    public DecisionJobController(DecisionService decisionService, ExecutorService eventExecutor,
+                                 @Value("${ai.search.jobs.time-to-live-ms}") long jobTimeToLiveMillis) {
+        this.decisionService = decisionService;
+        this.eventExecutor = eventExecutor;
+        this.jobs = new ConcurrentHashMap<>();
+        this.jobTimeToLive = Duration.ofMillis(jobTimeToLiveMillis);
+    }
+
+    /**
+     * Start searching the AI's decision from the given board in the background
+     * @param intelligenceLevel the intelligence level of the AI. Must be at least 0
+     * @param board the board
+     * @param boardFormat the format of the board, which the board of the result is returned in too. UNICODE if not
+     *                    given
+     * @param timeLimit the time limit the bot can think in seconds. Must be at least 5 and at most the maximum search
+     *                  time
+     * @param numThreads the number of threads searching for the decision. Must be between 1 and the maximum number
+     *                   of threads per request
+     * @param moveOrdering the order in which the bot searches the actions. HEURISTIC if not given
+     * @param searchFeatures the forward pruning features the bot searches with. None if not given
+     * @param nodeBudget the number of nodes the search can expand before it stops. Must be positive. No limit if not
+     *                   given
+     * @return the job
+     */
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public DecisionJobRecord submit(@RequestParam int intelligenceLevel, @RequestParam String board, @RequestParam Optional<BoardFormat> boardFormat,
+                                    @RequestParam Optional<Integer> timeLimit, @RequestParam Optional<Integer> numThreads, @RequestParam Optional<MoveOrdering> moveOrdering,
+                                    @RequestParam Optional<Set<SearchFeature>> searchFeatures, @RequestParam Optional<Long> nodeBudget) {
+        this.jobs.values().removeIf(job -> job.isExpired(this.jobTimeToLive));
+
+        DecisionRequest request = new DecisionRequest(intelligenceLevel, board, boardFormat.orElse(null), timeLimit.orElse(null),
+                numThreads.orElse(null), moveOrdering.orElse(null), searchFeatures.orElse(null), nodeBudget.orElse(null));
+        SearchControl searchControl = this.decisionService.createSearchControl(request);
+        DecisionJob job = new DecisionJob(UUID.randomUUID().toString(), searchControl, this.eventExecutor);
+
+        this.decisionService.submit(request, searchControl, job::addIteration).whenComplete((decisionRecord, e) -> {
+            if (e != null) {
+                job.fail(DecisionService.unwrap(e).getMessage());
+            } else {
+                job.complete(decisionRecord);
+            }
+        });
+
+        this.jobs.put(job.getId(), job);
+        logger.info("Submitted the decision job {}", job.getId());
+
+        return job.toRecord();
+    }
+
+    /**
+     * Return the current state of the given job
+     * @param id the id of the job
+     * @return the job
+     */
+    @GetMapping("{id}")
+    public DecisionJobRecord job(@PathVariable String id) {
+        return this.findJob(id).toRecord();
+    }
+
+    /**
+     * Stream the iterations of the given job as they complete, followed by the decision. The iterations completed
+     * before the subscription are sent first.
+     * @param id the id of the job
+     * @return the event stream
+     */
+    @GetMapping(path = "{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter events(@PathVariable String id) {
+        DecisionJob job = this.findJob(id);
+        SseEmitter emitter = new SseEmitter(this.decisionService.getMaxSearchTimeMillis() + EVENT_STREAM_TIMEOUT_MARGIN_MILLIS);
+        job.subscribe(emitter);
+        return emitter;
+    }
+
+    /**
+     * Stop the search of the given job. The job finishes with the decision of the last completed iteration.
+     * @param id the id of the job
+     * @return the job
+     */
+    @DeleteMapping("{id}")
+    public DecisionJobRecord cancel(@PathVariable String id) {
+        DecisionJob job = this.findJob(id);
+        job.cancel();
+        logger.info("Cancelled the decision job {}", id);
+        return job.toRecord();
+    }
+
+    /**
+     * Find the given job
+     * @param id the id of the job
+     * @return the job
+     * @throws ResponseStatusException with 404 when the job is not found
+     */
+    protected DecisionJob findJob(String id) {
+        DecisionJob job = this.jobs.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "The decision job " + id + " not found");
+        }
+
+        return job;
+    }
+}
@@ -0,0 +1,23 @@
+package api;
+
+import game.DecisionRecord;
+import game.IterationRecord;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Record of the state of a decision job
+ * @param id the id of the job
+ * @param status the status of the job
+ * @param iterations the iterations completed so far
+ * @param decision the decision if the job is done, or null
+ * @param error the message of the failure if the job failed, or null
+ */
+public record DecisionJobRecord(
+        String id,
+        DecisionJob.Status status,
+        List<IterationRecord> iterations,
+        @Nullable DecisionRecord decision,
+        @Nullable String error
+) {}
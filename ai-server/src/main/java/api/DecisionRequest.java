@@ -0,0 +1,32 @@
+package api;
+
+import game.BoardFormat;
+import game.MoveOrdering;
+import game.SearchFeature;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Set;
+
+/**
+ * The request of a decision
+ * @param intelligenceLevel the intelligence level of the AI. Must be at least 0
+ * @param board the board
+ * @param boardFormat the format of the board, or null for UNICODE. The board of the result is in the same format
+ * @param timeLimit the time limit the bot can think in seconds, or null for no limit. Must be at least 5 and at most
+ *                  the maximum search time
+ * @param numThreads the number of threads searching for the decision, or null for the default. Must be between 1 and
+ *                   the maximum number of threads per request
+ * @param moveOrdering the order in which the bot searches the actions, or null for HEURISTIC
+ * @param searchFeatures the forward pruning features the bot searches with, or null for none
+ * @param nodeBudget the number of nodes the search can expand before it stops, or null for no limit. Must be positive
+ */
+public record DecisionRequest(
+        int intelligenceLevel,
+        String board,
+        @Nullable BoardFormat boardFormat,
+        @Nullable Integer timeLimit,
+        @Nullable Integer numThreads,
+        @Nullable MoveOrdering moveOrdering,
+        @Nullable Set<SearchFeature> searchFeatures,
+        @Nullable Long nodeBudget
+) {}
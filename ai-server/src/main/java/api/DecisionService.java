@@ -0,0 +1,341 @@
+package api;
+
+import game.BoardFormat;
+import game.Bot;
+import game.DecisionRecord;
+import game.IterationRecord;
+import game.Move;
+import game.MoveOrdering;
+import game.OpeningBook;
+import game.PawnHashTable;
+import game.SearchControl;
+import game.SearchFeature;
+import game.State;
+import game.Tablebase;
+import game.TranspositionTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Validate the requests of the decisions and search them on the search executor. While many decisions are waiting,
+ * the new ones are searched at most at the degraded level, and when the queue is full they are rejected with 503.
+ * The decisions are cached, so a request satisfied by a decision searched before is answered without searching.
+ */
+@Service
+public class DecisionService {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The counter of the searches stopped by their search controls, tagged by the reason
+     */
+    public static final String STOPPED_SEARCHES_METRIC = "ai.search.stopped";
+
+    /**
+     * The counter of the decisions rejected because too many decisions were waiting
+     */
+    public static final String REJECTED_SEARCHES_METRIC = "ai.search.rejected";
+
+    /**
+     * The counter of the decisions searched at the degraded level because the search executor was congested
+     */
+    public static final String DEGRADED_SEARCHES_METRIC = "ai.search.degraded";
+
+    protected final TranspositionTable transpositionTable;
+
+    protected final PawnHashTable pawnHashTable;
+
+    protected final MeterRegistry meterRegistry;
+
+    protected final SearchExecutor searchExecutor;
+
+    protected final SearchMetrics searchMetrics;
+
+    protected final OpeningBook openingBook;
+
+    protected final Tablebase tablebase;
+
+    protected final DecisionCache decisionCache;
+
+    /**
+     * The number of threads searching for a decision when the request doesn't give one
+     */
+    protected final int defaultNumThreads;
+
+    /**
+     * The hard deadline of every search in milliseconds, after which the search stops even in the middle of an
+     * iteration
+     */
+    protected final long maxSearchTimeMillis;
+
+    /**
+     * The number of threads a single decision can search with
+     */
+    protected final int maxThreadsPerRequest;
+
+    /**
+     * The intelligence level the decisions are capped at while the search executor is congested
+     */
+    protected final int degradedIntelligenceLevel;
+
+    public DecisionService(TranspositionTable transpositionTable, PawnHashTable pawnHashTable,
+                           MeterRegistry meterRegistry, SearchExecutor searchExecutor, SearchMetrics searchMetrics,
+                           OpeningBook openingBook, Tablebase tablebase, DecisionCache decisionCache,
+                           @Value("${ai.search.threads}") int defaultNumThreads,
+                           @Value("${ai.search.max-time-ms}") long maxSearchTimeMillis,
+                           @Value("${ai.search.max-threads-per-request}") int maxThreadsPerRequest,
+                           @Value("${ai.search.degraded-level}") int degradedIntelligenceLevel) {
+        this.transpositionTable = transpositionTable;
+        this.pawnHashTable = pawnHashTable;
+        this.meterRegistry = meterRegistry;
+        this.searchExecutor = searchExecutor;
+        this.searchMetrics = searchMetrics;
+        this.openingBook = openingBook;
+        this.tablebase = tablebase;
+        this.decisionCache = decisionCache;
+        this.defaultNumThreads = defaultNumThreads;
+        this.maxSearchTimeMillis = maxSearchTimeMillis;
+        this.maxThreadsPerRequest = maxThreadsPerRequest;
+        this.degradedIntelligenceLevel = degradedIntelligenceLevel;
+    }
+
+    /**
+     * Get the hard deadline of every search
+     * @return the deadline in milliseconds
+     */
+    public long getMaxSearchTimeMillis() {
+        return this.maxSearchTimeMillis;
+    }
+
+    /**
+     * Check the given request
+     * @param request the request
+     * @throws ResponseStatusException when the request is not valid
+     */
+    public void validate(DecisionRequest request) {
+        int threads = request.numThreads() == null ? this.defaultNumThreads : request.numThreads();
+        int maxThreads = this.maxThreadsPerRequest;
+
+        if (request.intelligenceLevel() < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "intelligenceLevel cannot be less than 0. Given: " + request.intelligenceLevel());
+        } else if (request.timeLimit() != null && request.timeLimit() < 5) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "timeLimit cannot be less than 5. Given: " + request.timeLimit());
+        } else if (request.timeLimit() != null && request.timeLimit() * 1000L > this.maxSearchTimeMillis) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "timeLimit cannot be more than " + this.maxSearchTimeMillis / 1000 + ". Given: " + request.timeLimit());
+        } else if (threads < 1 || threads > maxThreads) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "numThreads must be between 1 and " + maxThreads + ". Given: " + threads);
+        } else if (request.nodeBudget() != null && request.nodeBudget() <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "nodeBudget must be positive. Given: " + request.nodeBudget());
+        }
+    }
+
+    /**
+     * Create the search control of the given request, starting the hard deadline now
+     * @param request the request
+     * @return the search control
+     */
+    public SearchControl createSearchControl(DecisionRequest request) {
+        return new SearchControl(Duration.ofMillis(this.maxSearchTimeMillis),
+                request.nodeBudget() == null ? Long.MAX_VALUE : request.nodeBudget());
+    }
+
+    /**
+     * Validate the given request and search its decision on the search executor
+     * @param request the request
+     * @param searchControl the search control of the search
+     * @param iterationListener called with each iteration completed by the search, or null
+     * @return the future of the decision. It fails with ResponseStatusException if the search finds no move
+     * @throws ResponseStatusException when the request is not valid, or with 503 when too many decisions are waiting
+     */
+    public CompletableFuture<DecisionRecord> submit(DecisionRequest request, SearchControl searchControl,
+                                                    @Nullable Consumer<IterationRecord> iterationListener) {
+        return this.submit(request, searchControl, iterationListener, true);
+    }
+
+    /**
+     * Validate the given request and search its decision on the search executor
+     * @param request the request
+     * @param searchControl the search control of the search
+     * @param iterationListener called with each iteration completed by the search, or null
+     * @param isVerbose true to log the request and the decision, false to log them only at the debug level, as the
+     *                  decisions of a batch are too many to log
+     * @return the future of the decision. It fails with ResponseStatusException if the search finds no move
+     * @throws ResponseStatusException when the request is not valid, or with 503 when too many decisions are waiting
+     */
+    public CompletableFuture<DecisionRecord> submit(DecisionRequest request, SearchControl searchControl,
+                                                    @Nullable Consumer<IterationRecord> iterationListener,
+                                                    boolean isVerbose) {
+        this.validate(request);
+
+        State state = BoardParser.parse(request.board(), request.boardFormat(), true);
+
+        if (isVerbose) {
+            this.logRequest(request, state);
+        } else {
+            logger.debug("Received intelligenceLevel: {}, timeLimit: {}, nodeBudget: {}, board: {}",
+                    request.intelligenceLevel(), request.timeLimit(), request.nodeBudget(), request.board());
+        }
+
+        Duration timeLimit = request.timeLimit() == null ? null : Duration.ofSeconds(request.timeLimit());
+        Set<SearchFeature> searchFeatures = request.searchFeatures() == null
+                ? EnumSet.noneOf(SearchFeature.class)
+                : request.searchFeatures();
+
+        DecisionRecord cachedDecision = this.decisionCache.get(state, request.intelligenceLevel(), timeLimit,
+                searchFeatures);
+        if (cachedDecision != null) {
+            logger.debug("Found the decision in the decision cache at depth {}", cachedDecision.depthReached());
+            return CompletableFuture.completedFuture(this.respond(request, cachedDecision, isVerbose));
+        }
+
+        int level = request.intelligenceLevel();
+        if (level > this.degradedIntelligenceLevel && this.searchExecutor.isCongested()) {
+            logger.info("Degrading intelligenceLevel to {}, as the search executor is congested", this.degradedIntelligenceLevel);
+            this.meterRegistry.counter(DEGRADED_SEARCHES_METRIC).increment();
+            level = this.degradedIntelligenceLevel;
+        }
+
+        Bot bot = Bot.builder(level)
+                .transpositionTable(this.transpositionTable)
+                .pawnHashTable(this.pawnHashTable)
+                .numThreads(request.numThreads() == null ? this.defaultNumThreads : request.numThreads())
+                .moveOrdering(request.moveOrdering() == null ? MoveOrdering.HEURISTIC : request.moveOrdering())
+                .searchFeatures(searchFeatures)
+                .helperExecutor(this.searchExecutor.getHelperExecutor())
+                .tablebase(this.tablebase)
+                .build();
+        int searchedLevel = level;
+
+        // the moves of the book and the tablebase are selected once here, and answered without waiting for a search
+        // thread. A state without them is searched on the search executor, even if it is in the tablebase.
+        Instant startTime = Instant.now();
+        int bookMove = this.openingBook.selectMove(state);
+        int tablebaseMove = bookMove == Move.NONE ? this.tablebase.selectMove(state) : Move.NONE;
+
+        CompletableFuture<DecisionRecord> search;
+        if (bookMove != Move.NONE) {
+            search = CompletableFuture.completedFuture(bot.bookDecision(state, bookMove, startTime));
+        } else if (tablebaseMove != Move.NONE) {
+            search = CompletableFuture.completedFuture(bot.tablebaseDecision(state, tablebaseMove, startTime));
+        } else {
+            try {
+                search = this.searchExecutor.submit(() -> bot.decideBySearch(state, timeLimit, searchControl, iterationListener));
+            } catch (RejectedExecutionException e) {
+                this.meterRegistry.counter(REJECTED_SEARCHES_METRIC).increment();
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many decisions are waiting. Try again later");
+            }
+        }
+
+        return search.thenApply(decisionRecord -> {
+            this.countStop(searchControl);
+
+            if (decisionRecord == null) {
+                throw searchControl.getStopReason() != null
+                        ? new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "The search was stopped before finding a move: " + searchControl.getStopReason())
+                        : new ResponseStatusException(HttpStatus.BAD_REQUEST, "The bot has no move on the given board");
+            }
+
+            this.searchMetrics.record(decisionRecord);
+            this.decisionCache.put(state, searchedLevel, timeLimit, searchFeatures, decisionRecord);
+            return this.respond(request, decisionRecord, isVerbose);
+        }).whenComplete((decisionRecord, e) -> {
+            if (e != null && !(unwrap(e) instanceof ResponseStatusException)) {
+                logger.error("The search failed", e);
+            }
+        });
+    }
+
+    /**
+     * Format the board of the result of the given decision as the given request asks and log the decision
+     * @param request the request
+     * @param decisionRecord the decision, with the board of the result in the unicode format
+     * @param isVerbose true to log the decision, false to log it only at the debug level
+     * @return the decision
+     */
+    protected DecisionRecord respond(DecisionRequest request, DecisionRecord decisionRecord, boolean isVerbose) {
+        if (request.boardFormat() != null && request.boardFormat() != BoardFormat.UNICODE) {
+            State nextState = State.parse(decisionRecord.result().get("board").asText(), false);
+            decisionRecord.result().put("board", request.boardFormat().format(nextState));
+        }
+
+        if (isVerbose) {
+            this.logDecision(decisionRecord);
+        } else {
+            logger.debug("Moved {} to {} with Minimax value: {}", decisionRecord.actionTaken().piece(),
+                    decisionRecord.actionTaken(), decisionRecord.minimaxValue());
+        }
+        return decisionRecord;
+    }
+
+    /**
+     * Get the exception a future failed with, unwrapped from the CompletionException of the dependent stages
+     * @param e the exception
+     * @return the cause
+     */
+    public static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    /**
+     * Count the search if the search control stopped it
+     * @param searchControl the search control of the search
+     */
+    protected void countStop(SearchControl searchControl) {
+        SearchControl.StopReason stopReason = searchControl.getStopReason();
+        if (stopReason != null) {
+            logger.info("The search was stopped: {}", stopReason);
+            this.meterRegistry.counter(STOPPED_SEARCHES_METRIC, "reason", stopReason.name().toLowerCase()).increment();
+        }
+    }
+
+    /**
+     * Log the given request
+     * @param request the request
+     * @param state the state parsed from its board
+     */
+    protected void logRequest(DecisionRequest request, State state) {
+        logger.info("Received intelligenceLevel: {}", request.intelligenceLevel());
+        logger.info("Received timeLimit: {}", request.timeLimit());
+        logger.info("Received numThreads: {}", request.numThreads());
+        logger.info("Received moveOrdering: {}", request.moveOrdering());
+        logger.info("Received searchFeatures: {}", request.searchFeatures());
+        logger.info("Received nodeBudget: {}", request.nodeBudget());
+        logger.info("Received state:\n{}", state);
+        logger.info("Thinking...");
+    }
+
+    /**
+     * Log the given decision
+     * @param decisionRecord the decision
+     */
+    protected void logDecision(DecisionRecord decisionRecord) {
+        logger.info("Moved {} to {} with Minimax value: {} after {} seconds, expanding {} nodes and {} quiescence nodes.",
+                decisionRecord.actionTaken().piece().toString(), decisionRecord.actionTaken(), decisionRecord.minimaxValue(),
+                (decisionRecord.timeTaken().toMillis() / 1000.0), decisionRecord.numNodesExpanded(),
+                decisionRecord.numQuiescenceNodesExpanded());
+
+        logger.info("Principal variation: {} after {} re-searches.", decisionRecord.principalVariation(),
+                decisionRecord.numReSearches());
+        logger.info("Statistics: {}", decisionRecord.statistics());
+        decisionRecord.searchFeatures().forEach((feature, record) ->
+                logger.info("{}: {} searches, {} cutoffs, {} nodes in {} seconds.", feature, record.numSearches(),
+                        record.numCutoffs(), record.numNodesExpanded(), record.timeTaken().toMillis() / 1000.0));
+
+        logger.info("Result:{}", decisionRecord.result());
+    }
+}
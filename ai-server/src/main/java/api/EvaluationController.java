@@ -1,11 +1,15 @@
 package api;
 
+import game.BoardFormat;
 import game.Game;
 import game.State;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Optional;
+
 @RequestMapping("api/evaluation")
 @RestController
 @CrossOrigin
@@ -16,8 +20,20 @@ public class EvaluationController {
     protected static final Game game = new Game();
 
     @GetMapping
-    public double evaluation(@RequestParam String board) {
+    public double evaluation(@RequestParam String board, @RequestParam Optional<BoardFormat> boardFormat) {
         logger.info("Received Data: {}", board);
-        return game.evaluate(State.parse(board, false));
+        return game.evaluate(BoardParser.parse(board, boardFormat.orElse(null), false));
+    }
+
+    /**
+     * Return the evaluations of the given boards
+     * @param boards the boards
+     * @param boardFormat the format of the boards. UNICODE if not given
+     * @return the evaluation of each board, in the given order
+     */
+    @PostMapping("batch")
+    public List<Double> evaluations(@RequestBody List<String> boards, @RequestParam Optional<BoardFormat> boardFormat) {
+        logger.info("Received a batch of {} boards", boards.size());
+        return boards.stream().map(board -> game.evaluate(BoardParser.parse(board, boardFormat.orElse(null), false))).toList();
     }
 }
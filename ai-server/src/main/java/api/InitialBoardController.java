@@ -1,11 +1,15 @@
 package api;
 
+import game.BoardFormat;
 import game.Game;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Optional;
+
 @CrossOrigin
 @RequestMapping("api/initial-board")
 @RestController
@@ -13,8 +17,13 @@ public class InitialBoardController {
 
     protected static final Game game = new Game();
 
+    /**
+     * Return the initial board
+     * @param boardFormat the format of the board. UNICODE if not given
+     * @return the board
+     */
     @GetMapping
-    public String initialBoard() {
-        return game.getInitialState().toString();
+    public String initialBoard(@RequestParam Optional<BoardFormat> boardFormat) {
+        return boardFormat.orElse(BoardFormat.UNICODE).format(game.getInitialState());
     }
 }
@@ -5,16 +5,23 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import game.Action;
+import game.BoardCodec;
+import game.BoardFormat;
 import game.Game;
 import game.State;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import piece.Piece;
+import piece.PieceType;
 import util.Position;
 
+import java.util.Arrays;
+
 @RequestMapping("api/result")
 @RestController
 @CrossOrigin
@@ -24,9 +31,28 @@ public class ResultController {
 
     protected static final Game game = new Game();
 
+    /**
+     * The number of bytes of the action in a packed request: x, y, new x and new y
+     */
+    protected static final int PACKED_ACTION_SIZE = 4;
+
+    /**
+     * The promotion byte of a packed request meaning no promotion
+     */
+    protected static final int NO_PROMOTION = 0xFF;
+
+    /**
+     * The outcome bytes of a packed response
+     */
+    protected static final byte ONGOING = 0;
+    protected static final byte BLACK_WINS = 1;
+    protected static final byte WHITE_WINS = 2;
+    protected static final byte DRAW = 3;
+
     /**
      * Return the result of the action applied to the board
-     * @param json the json containing the board and the action
+     * @param json the json containing the board, the action and optionally the boardFormat of the board, which the
+     *             result board is returned in too. UNICODE if not given
      * @return the result board
      * @throws JsonProcessingException when the given request body is not a valid json
      */
@@ -40,8 +66,11 @@ public class ResultController {
         JsonNode actionNode = jsonNode.get("action");
         JsonNode pieceNode = actionNode.get("piece");
 
+        BoardFormat boardFormat = jsonNode.hasNonNull("boardFormat")
+                ? mapper.convertValue(jsonNode.get("boardFormat"), BoardFormat.class)
+                : BoardFormat.UNICODE;
         String board = mapper.convertValue(jsonNode.get("board"), String.class);
-        State state = State.parse(board, false);
+        State state = BoardParser.parse(board, boardFormat, false);
 
         int x = mapper.convertValue(pieceNode.get("x"), int.class);
         int y = mapper.convertValue(pieceNode.get("y"), int.class);
@@ -52,12 +81,81 @@ public class ResultController {
 
         Character promotingIcon = mapper.convertValue(jsonNode.get("promotingIcon"), Character.class);
 
+        return this.result(state, oldPosition, new Position(x, y), promotingIcon).toJSON(boardFormat);
+    }
+
+    /**
+     * Return the result of the action applied to the packed board, without the json
+     * @param body the 32 bytes of the packed board, followed by the x and y of the piece, the new x and y, and
+     *             optionally the ordinal of the piece type the pawns are promoted to, or 255 for no promotion
+     * @return the 32 bytes of the packed result board, followed by 0 if the game goes on, 1 if black wins, 2 if
+     *         white wins or 3 if it is a draw
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE, produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public byte[] packedResult(@RequestBody byte[] body) {
+        int actionOffset = BoardCodec.PACKED_SIZE;
+        if (body.length != actionOffset + PACKED_ACTION_SIZE && body.length != actionOffset + PACKED_ACTION_SIZE + 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The packed request must have "
+                    + (actionOffset + PACKED_ACTION_SIZE) + " or " + (actionOffset + PACKED_ACTION_SIZE + 1) + " bytes. Given: " + body.length);
+        }
+
+        State state;
+        try {
+            state = BoardCodec.unpack(Arrays.copyOf(body, BoardCodec.PACKED_SIZE), false);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The board is not valid: " + e.getMessage());
+        }
+        Position oldPosition = new Position(body[actionOffset], body[actionOffset + 1]);
+        Position newPosition = new Position(body[actionOffset + 2], body[actionOffset + 3]);
+        if (!Position.isWithinBound(oldPosition) || !Position.isWithinBound(newPosition)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(
+                    "The positions of the action must be on the board. Given: (%s) -> (%s)", oldPosition, newPosition));
+        }
+
+        Character promotingIcon = null;
+        if (body.length > actionOffset + PACKED_ACTION_SIZE) {
+            int ordinal = Byte.toUnsignedInt(body[actionOffset + PACKED_ACTION_SIZE]);
+            if (ordinal != NO_PROMOTION) {
+                if (ordinal >= PieceType.VALUES.length) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The promotion must be a piece type or " + NO_PROMOTION + ". Given: " + ordinal);
+                }
+                promotingIcon = PieceType.VALUES[ordinal].getIcon(false);
+            }
+        }
+
+        State result = this.result(state, oldPosition, newPosition, promotingIcon);
+
+        byte[] response = Arrays.copyOf(BoardCodec.pack(result), BoardCodec.PACKED_SIZE + 1);
+        if (result.isTerminal()) {
+            response[BoardCodec.PACKED_SIZE] = result.getWinner().map(winner -> winner.isBot() ? BLACK_WINS : WHITE_WINS).orElse(DRAW);
+        } else {
+            response[BoardCodec.PACKED_SIZE] = ONGOING;
+        }
+
+        return response;
+    }
+
+    /**
+     * Apply the action of the human piece at the given position
+     * @param state the state
+     * @param oldPosition the position of the piece
+     * @param newPosition the new position of the piece
+     * @param promotingIcon the icon of the piece as a replacement of a pawn, or null
+     * @return the result state
+     * @throws ResponseStatusException with 404 when the piece is not found, or with 400 when the new position is off
+     * the board or occupied by a piece of the human
+     */
+    protected State result(State state, Position oldPosition, Position newPosition, @Nullable Character promotingIcon) {
         Piece piece = state.getHumanPlayer().findPieceAt(oldPosition)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
                         String.format("A piece at %s not found on the given board.", oldPosition)));
 
-        Action action = new Action(piece, new Position(x, y));
+        Action action = new Action(piece, newPosition);
 
-        return game.result(state, action, promotingIcon).toJSON();
+        try {
+            return game.result(state, action, promotingIcon);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 }
@@ -0,0 +1,147 @@
+package api;
+
+import game.OpeningBook;
+import game.PawnHashTable;
+import game.Tablebase;
+import game.TranspositionTable;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class SearchConfiguration {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The transposition table shared by all searches of the server, so a search starts with the values found by the
+     * previous searches
+     * @param sizeInMegabytes the size of the table in megabytes
+     * @return the table
+     */
+    @Bean
+    public TranspositionTable transpositionTable(@Value("${ai.transposition-table.size-mb}") int sizeInMegabytes) {
+        TranspositionTable table = TranspositionTable.ofMegabytes(sizeInMegabytes,
+                TranspositionTable.ReplacementPolicy.AGED_DEPTH_PREFERRED);
+        logger.info("Allocated the transposition table of {} entries", table.getCapacity());
+        return table;
+    }
+
+    /**
+     * The cache of the pawn structure term of the evaluation shared by all searches of the server, so a search starts
+     * with the pawn structures evaluated by the previous searches
+     * @param capacity the number of entries of the cache
+     * @return the cache
+     */
+    @Bean
+    public PawnHashTable pawnHashTable(@Value("${ai.pawn-hash-table.capacity}") int capacity) {
+        PawnHashTable table = new PawnHashTable(capacity);
+        logger.info("Allocated the pawn hash table of {} entries", table.getCapacity());
+        return table;
+    }
+
+    /**
+     * The opening book consulted before every search, mapped into memory once and shared by all searches
+     * @param path the path of the book file built by OpeningBookBuilder, or empty for no book
+     * @return the book
+     * @throws IOException when the book cannot be read
+     */
+    @Bean
+    public OpeningBook openingBook(@Value("${ai.opening-book.path:}") String path) throws IOException {
+        if (path.isBlank()) {
+            logger.info("Searching without an opening book");
+            return OpeningBook.empty();
+        }
+
+        OpeningBook book = OpeningBook.open(Path.of(path));
+        logger.info("Mapped the opening book {} of {} entries", path, book.size());
+        return book;
+    }
+
+    /**
+     * The endgame tablebase consulted by every search, mapped into memory once and shared by all searches
+     * @param path the directory of the table files generated by TablebaseGenerator, or empty for no tablebase
+     * @return the tablebase
+     * @throws IOException when a table cannot be read
+     */
+    @Bean
+    public Tablebase tablebase(@Value("${ai.tablebase.path:}") String path) throws IOException {
+        if (path.isBlank()) {
+            logger.info("Searching without a tablebase");
+            return Tablebase.empty();
+        }
+
+        Tablebase tablebase = Tablebase.open(Path.of(path));
+        logger.info("Mapped the tablebase {} of {} tables of up to {} pieces", path, tablebase.size(),
+                tablebase.getMaxNumPieces());
+        return tablebase;
+    }
+
+    /**
+     * The executor of the searches of the decisions, apart from the common pool used by the rest of the server.
+     * Spring shuts it down with the context.
+     * @param numSearchThreads the number of decisions searched at the same time
+     * @param queueCapacity the number of decisions that can wait for a search thread
+     * @param congestedQueueSize the number of waiting decisions from which the new ones are searched less deeply
+     * @param numHelperThreads the number of helpers of all decisions that can search at the same time
+     * @param meterRegistry the registry of the gauges of the executor
+     * @return the executor
+     */
+    @Bean
+    public SearchExecutor searchExecutor(@Value("${ai.search.executor.threads}") int numSearchThreads,
+                                         @Value("${ai.search.executor.queue-capacity}") int queueCapacity,
+                                         @Value("${ai.search.executor.congested-queue-size}") int congestedQueueSize,
+                                         @Value("${ai.search.executor.helper-threads}") int numHelperThreads,
+                                         MeterRegistry meterRegistry) {
+        return new SearchExecutor(numSearchThreads, queueCapacity, congestedQueueSize, numHelperThreads,
+                meterRegistry);
+    }
+
+    /**
+     * The executor the events of the decision jobs and batches are sent on, so a slow client of an event stream holds up only
+     * the events and never a search thread. Spring shuts it down with the context.
+     * @param numEventThreads the number of event streams that can be sent to at the same time
+     * @return the executor
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService eventExecutor(@Value("${ai.search.jobs.event-threads}") int numEventThreads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(numEventThreads, numEventThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), SearchExecutor.threadFactory("search-event-"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * The cache of the decisions of all requests, loaded from its file if it has one. Spring saves it to the file when
+     * the context is closed.
+     * @param maxEntries the number of decisions the cache can hold, or 0 for no cache
+     * @param path the file the cache is saved to and loaded from, or empty to keep it only in memory
+     * @param meterRegistry the registry of the metrics of the cache
+     * @return the cache
+     */
+    @Bean
+    public DecisionCache decisionCache(@Value("${ai.decision-cache.max-entries}") int maxEntries,
+                                       @Value("${ai.decision-cache.path:}") String path,
+                                       MeterRegistry meterRegistry) {
+        DecisionCache cache = new DecisionCache(maxEntries, path.isBlank() ? null : Path.of(path), meterRegistry);
+        try {
+            int numLoaded = cache.load();
+            if (numLoaded > 0) {
+                logger.info("Loaded {} decisions from the decision cache {}", numLoaded, path);
+            }
+        } catch (IOException e) {
+            logger.warn("The decision cache cannot be loaded from " + path + ", starting empty", e);
+        }
+        return cache;
+    }
+}
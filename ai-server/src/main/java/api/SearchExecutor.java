@@ -0,0 +1,149 @@
+package api;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The threads the decisions are searched on, apart from the common pool used by the rest of the server.
+ * A decision waits in a bounded queue for a search thread, and its helpers run on a separate pool of a fixed size,
+ * so a helper never waits behind the decision that is waiting for it. A decision is rejected when the queue is full,
+ * and a helper is not started when all helper threads are busy.
+ */
+public class SearchExecutor {
+
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The gauge of the number of decisions waiting for a search thread
+     */
+    public static final String QUEUE_SIZE_METRIC = "ai.search.queue.size";
+
+    /**
+     * The timer of the time the decisions waited for a search thread
+     */
+    public static final String QUEUE_WAIT_METRIC = "ai.search.queue.wait";
+
+    /**
+     * The gauge of the number of decisions being searched
+     */
+    public static final String ACTIVE_SEARCHES_METRIC = "ai.search.active";
+
+    /**
+     * The gauge of the number of helpers searching for the decisions
+     */
+    public static final String ACTIVE_HELPERS_METRIC = "ai.search.helpers.active";
+
+    protected final ThreadPoolExecutor searchPool;
+
+    protected final ThreadPoolExecutor helperPool;
+
+    /**
+     * The number of waiting decisions from which the executor is congested
+     */
+    protected final int congestedQueueSize;
+
+    protected final Timer queueWaitTimer;
+
+    /**
+     * Create the executor
+     * @param numSearchThreads the number of decisions searched at the same time. Must be positive
+     * @param queueCapacity the number of decisions that can wait for a search thread. Must be positive
+     * @param congestedQueueSize the number of waiting decisions from which the executor is congested. Must be between
+     *                           1 and the queue capacity
+     * @param numHelperThreads the number of helpers of all decisions that can search at the same time. Must be
+     *                         positive
+     * @param meterRegistry the registry of the gauges of the executor
+     */
+    public SearchExecutor(int numSearchThreads, int queueCapacity, int congestedQueueSize, int numHelperThreads,
+                          MeterRegistry meterRegistry) {
+        if (numSearchThreads <= 0) {
+            throw new IllegalArgumentException("numSearchThreads must be positive. Given: " + numSearchThreads);
+        } else if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be positive. Given: " + queueCapacity);
+        } else if (congestedQueueSize < 1 || congestedQueueSize > queueCapacity) {
+            throw new IllegalArgumentException("congestedQueueSize must be between 1 and " + queueCapacity + ". Given: " + congestedQueueSize);
+        } else if (numHelperThreads <= 0) {
+            throw new IllegalArgumentException("numHelperThreads must be positive. Given: " + numHelperThreads);
+        }
+
+        this.searchPool = new ThreadPoolExecutor(numSearchThreads, numSearchThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory("search-"));
+        this.helperPool = new ThreadPoolExecutor(numHelperThreads, numHelperThreads, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), threadFactory("search-helper-"));
+        this.congestedQueueSize = congestedQueueSize;
+
+        this.queueWaitTimer = meterRegistry.timer(QUEUE_WAIT_METRIC);
+        meterRegistry.gauge(QUEUE_SIZE_METRIC, this.searchPool, pool -> pool.getQueue().size());
+        meterRegistry.gauge(ACTIVE_SEARCHES_METRIC, this.searchPool, ThreadPoolExecutor::getActiveCount);
+        meterRegistry.gauge(ACTIVE_HELPERS_METRIC, this.helperPool, ThreadPoolExecutor::getActiveCount);
+
+        logger.info("Searching {} decisions at a time with {} helper threads, queueing up to {} decisions",
+                numSearchThreads, numHelperThreads, queueCapacity);
+    }
+
+    /**
+     * Create the factory of the daemon threads of the given name
+     * @param namePrefix the prefix of the names of the threads, followed by their numbers
+     * @return the factory
+     */
+    protected static ThreadFactory threadFactory(String namePrefix) {
+        AtomicInteger numThreads = new AtomicInteger(0);
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + numThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Check if so many decisions are waiting that the new ones should be searched less deeply
+     * @return true if it is, false otherwise
+     */
+    public boolean isCongested() {
+        return this.searchPool.getQueue().size() >= this.congestedQueueSize;
+    }
+
+    /**
+     * Search a decision on a search thread
+     * @param search the search
+     * @return the future of the decision
+     * @param <T> the type of the decision
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> search) {
+        long submitNanos = System.nanoTime();
+        return CompletableFuture.supplyAsync(() -> {
+            this.queueWaitTimer.record(System.nanoTime() - submitNanos, TimeUnit.NANOSECONDS);
+            return search.get();
+        }, this.searchPool);
+    }
+
+    /**
+     * Get the executor the helpers of the decisions run on
+     * @return the executor
+     */
+    public Executor getHelperExecutor() {
+        return this.helperPool;
+    }
+
+    /**
+     * Stop the threads of the executor
+     */
+    public void shutdown() {
+        this.searchPool.shutdownNow();
+        this.helperPool.shutdownNow();
+    }
+}
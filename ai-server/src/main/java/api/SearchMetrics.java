@@ -0,0 +1,121 @@
+package api;
+
+import game.DecisionRecord;
+import game.PawnHashTable;
+import game.SearchStatisticsRecord;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publish the statistics of each decision as meters, so where the searches spend their time can be watched on the
+ * live traffic through the metrics and the Prometheus endpoints of the actuator
+ */
+@Component
+public class SearchMetrics {
+
+    /**
+     * The counter of the nodes searched, tagged by the kind: interior, leaf or quiescence
+     */
+    public static final String NODES_METRIC = "ai.search.nodes";
+
+    /**
+     * The counters of the probes of the transposition table and of the probes that found the state
+     */
+    public static final String TRANSPOSITION_PROBES_METRIC = "ai.search.transposition.probes";
+    public static final String TRANSPOSITION_HITS_METRIC = "ai.search.transposition.hits";
+
+    /**
+     * The counter of the cutoffs, tagged by whether the first move made it or another one
+     */
+    public static final String CUTOFFS_METRIC = "ai.search.cutoffs";
+
+    /**
+     * The distribution of the nodes per second of each decision
+     */
+    public static final String NODES_PER_SECOND_METRIC = "ai.search.nodes.per.second";
+
+    /**
+     * The distribution of the effective branching factor of each decision
+     */
+    public static final String BRANCHING_FACTOR_METRIC = "ai.search.branching.factor";
+
+    /**
+     * The distribution of the depth of each decision, tagged by the kind: completed for the depth of the last
+     * completed iteration, or selective for the deepest depth including the quiescence search
+     */
+    public static final String DEPTH_METRIC = "ai.search.depth";
+
+    /**
+     * The timer of the searches, tagged by the phase: evaluation, move generation or the whole search
+     */
+    public static final String TIME_METRIC = "ai.search.time";
+
+    /**
+     * The counter of the decisions answered from the opening book without searching
+     */
+    public static final String BOOK_MOVES_METRIC = "ai.search.book.moves";
+
+    /**
+     * The counter of the decisions answered from the tablebase without searching
+     */
+    public static final String TABLEBASE_MOVES_METRIC = "ai.search.tablebase.moves";
+
+    /**
+     * The counter of the states scored by the tablebase during the searches
+     */
+    public static final String TABLEBASE_HITS_METRIC = "ai.search.tablebase.hits";
+
+    /**
+     * The gauge of the ratio of the probes of the shared pawn hash table that found the pawn structure
+     */
+    public static final String PAWN_HASH_HIT_RATE_METRIC = "ai.search.pawn.hash.hit.rate";
+
+    protected final MeterRegistry meterRegistry;
+
+    public SearchMetrics(MeterRegistry meterRegistry, PawnHashTable pawnHashTable) {
+        this.meterRegistry = meterRegistry;
+        meterRegistry.gauge(PAWN_HASH_HIT_RATE_METRIC, pawnHashTable, PawnHashTable::getHitRate);
+    }
+
+    /**
+     * Publish the statistics of the given decision
+     * @param decisionRecord the decision
+     */
+    public void record(DecisionRecord decisionRecord) {
+        if (decisionRecord.isFromOpeningBook()) {
+            this.meterRegistry.counter(BOOK_MOVES_METRIC).increment();
+            return;
+        } else if (decisionRecord.isFromTablebase()) {
+            this.meterRegistry.counter(TABLEBASE_MOVES_METRIC).increment();
+            return;
+        } else if (decisionRecord.isFromCache()) {
+            // the hits are counted by the cache, and the time of a lookup is not a search time
+            return;
+        }
+
+        SearchStatisticsRecord statistics = decisionRecord.statistics();
+
+        this.meterRegistry.counter(NODES_METRIC, "kind", "interior").increment(statistics.numInteriorNodes());
+        this.meterRegistry.counter(NODES_METRIC, "kind", "leaf").increment(statistics.numLeafNodes());
+        this.meterRegistry.counter(NODES_METRIC, "kind", "quiescence").increment(statistics.numQuiescenceNodes());
+
+        this.meterRegistry.counter(TRANSPOSITION_PROBES_METRIC).increment(statistics.numTranspositionProbes());
+        this.meterRegistry.counter(TRANSPOSITION_HITS_METRIC).increment(statistics.numTranspositionHits());
+        this.meterRegistry.counter(TABLEBASE_HITS_METRIC).increment(statistics.numTablebaseHits());
+
+        this.meterRegistry.counter(CUTOFFS_METRIC, "move", "first").increment(statistics.numFirstMoveCutoffs());
+        this.meterRegistry.counter(CUTOFFS_METRIC, "move", "other")
+                .increment(statistics.numCutoffs() - statistics.numFirstMoveCutoffs());
+
+        this.meterRegistry.summary(NODES_PER_SECOND_METRIC).record(statistics.nodesPerSecond());
+        if (statistics.effectiveBranchingFactor() > 0) {
+            this.meterRegistry.summary(BRANCHING_FACTOR_METRIC).record(statistics.effectiveBranchingFactor());
+        }
+        this.meterRegistry.summary(DEPTH_METRIC, "kind", "completed").record(decisionRecord.depthReached());
+        this.meterRegistry.summary(DEPTH_METRIC, "kind", "selective").record(statistics.maxDepthReached());
+
+        this.meterRegistry.timer(TIME_METRIC, "phase", "evaluation").record(statistics.evaluationTime());
+        this.meterRegistry.timer(TIME_METRIC, "phase", "move-generation").record(statistics.moveGenerationTime());
+        this.meterRegistry.timer(TIME_METRIC, "phase", "search").record(decisionRecord.timeTaken());
+    }
+}
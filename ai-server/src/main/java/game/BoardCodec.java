@@ -0,0 +1,230 @@
+package game;
+
+import piece.PieceType;
+import util.Bitboard;
+
+/**
+ * Compact encodings of the board, faster to parse and write than the rows of the unicode icons.
+ * <p>
+ * The text form is like the piece placement of FEN: the rows from y = 0 to 7 separated by '/', each with the letters
+ * of its pieces and the digits of its runs of empty squares. The pieces of the bot are lowercase and those of the
+ * human are uppercase, as the bot plays black. It can be followed by a space and the player to move, b for the bot
+ * or w for the human.
+ * <p>
+ * The packed form is 32 bytes with a nibble per square, the low nibble first. A nibble is 0 for an empty square,
+ * 1 + the ordinal of the piece type for a piece of the bot and 9 + the ordinal for a piece of the human. The player to
+ * move is not packed.
+ */
+public final class BoardCodec {
+
+    /**
+     * The number of bytes of a packed board
+     */
+    public static final int PACKED_SIZE = Bitboard.NUM_SQUARES / 2;
+
+    /**
+     * The letters of the pieces of the bot indexed by the ordinal of the piece type
+     */
+    protected static final char[] LETTERS = {'p', 'n', 'b', 'r', 'q', 'k'};
+
+    /**
+     * The bit of the nibble of a piece of the human
+     */
+    protected static final int HUMAN_NIBBLE_BIT = 0x8;
+
+    protected static final int NIBBLE_MASK = 0xF;
+
+    private BoardCodec() {}
+
+    /**
+     * Write the given state in the text form
+     * @param state the state
+     * @param isTurnIncluded whether to write the player to move or not
+     * @return the text
+     */
+    public static String toText(State state, boolean isTurnIncluded) {
+        PieceType[] board = new PieceType[Bitboard.NUM_SQUARES];
+        long botOccupancy = state.getBotPlayer().getOccupancy();
+        fillSquares(state.getBotPlayer(), board);
+        fillSquares(state.getHumanPlayer(), board);
+
+        StringBuilder builder = new StringBuilder(Bitboard.NUM_SQUARES + Bitboard.BOARD_SIZE + 2);
+        for (int y = 0; y < Bitboard.BOARD_SIZE; y++) {
+            if (y > 0) {
+                builder.append('/');
+            }
+
+            int numEmpty = 0;
+            for (int x = 0; x < Bitboard.BOARD_SIZE; x++) {
+                int square = Bitboard.square(x, y);
+                PieceType type = board[square];
+                if (type == null) {
+                    numEmpty++;
+                    continue;
+                }
+
+                if (numEmpty > 0) {
+                    builder.append(numEmpty);
+                    numEmpty = 0;
+                }
+                char letter = LETTERS[type.ordinal()];
+                builder.append(Bitboard.contains(botOccupancy, square) ? letter : Character.toUpperCase(letter));
+            }
+
+            if (numEmpty > 0) {
+                builder.append(numEmpty);
+            }
+        }
+
+        if (isTurnIncluded) {
+            builder.append(' ').append(state.isBotTurn() ? 'b' : 'w');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Parse the given text form into the state
+     * @param text the text
+     * @param isBotTurn whether it is a bot turn or not, unless the text gives the player to move
+     * @return the state
+     * @throws IllegalArgumentException when the text is not valid
+     */
+    public static State fromText(String text, boolean isBotTurn) {
+        long[] botBitboards = new long[PieceType.VALUES.length];
+        long[] humanBitboards = new long[PieceType.VALUES.length];
+
+        int x = 0;
+        int y = 0;
+        int i = 0;
+        for (; i < text.length() && text.charAt(i) != ' '; i++) {
+            char letter = text.charAt(i);
+            if (letter == '/') {
+                if (x != Bitboard.BOARD_SIZE) {
+                    throw new IllegalArgumentException(String.format("The row %d must have 8 squares. Given: %s", y, text));
+                }
+                x = 0;
+                y++;
+            } else if ('1' <= letter && letter <= '8') {
+                x += letter - '0';
+            } else {
+                if (x >= Bitboard.BOARD_SIZE || y >= Bitboard.BOARD_SIZE) {
+                    throw new IllegalArgumentException("The board has more than 8 rows of 8 squares. Given: " + text);
+                }
+                long[] bitboards = Character.isLowerCase(letter) ? botBitboards : humanBitboards;
+                bitboards[typeOf(letter).ordinal()] |= Bitboard.mask(Bitboard.square(x, y));
+                x++;
+            }
+
+            if (x > Bitboard.BOARD_SIZE || y >= Bitboard.BOARD_SIZE) {
+                throw new IllegalArgumentException("The board has more than 8 rows of 8 squares. Given: " + text);
+            }
+        }
+
+        if (x != Bitboard.BOARD_SIZE || y != Bitboard.BOARD_SIZE - 1) {
+            throw new IllegalArgumentException("The board must have 8 rows of 8 squares. Given: " + text);
+        }
+
+        String turn = text.substring(i).trim();
+        if (!turn.isEmpty()) {
+            isBotTurn = switch (turn) {
+                case "b" -> true;
+                case "w" -> false;
+                default -> throw new IllegalArgumentException("The player to move must be either b or w. Given: " + turn);
+            };
+        }
+
+        return new State(new Player(true, botBitboards), new Player(false, humanBitboards), isBotTurn);
+    }
+
+    /**
+     * Pack the given state
+     * @param state the state
+     * @return the 32 bytes
+     */
+    public static byte[] pack(State state) {
+        byte[] bytes = new byte[PACKED_SIZE];
+        packSquares(state.getBotPlayer(), 0, bytes);
+        packSquares(state.getHumanPlayer(), HUMAN_NIBBLE_BIT, bytes);
+        return bytes;
+    }
+
+    /**
+     * Unpack the given bytes into the state
+     * @param bytes the 32 bytes
+     * @param isBotTurn whether it is a bot turn or not
+     * @return the state
+     * @throws IllegalArgumentException when the bytes are not a valid packed board
+     */
+    public static State unpack(byte[] bytes, boolean isBotTurn) {
+        if (bytes.length != PACKED_SIZE) {
+            throw new IllegalArgumentException("The packed board must have " + PACKED_SIZE + " bytes. Given: " + bytes.length);
+        }
+
+        long[] botBitboards = new long[PieceType.VALUES.length];
+        long[] humanBitboards = new long[PieceType.VALUES.length];
+
+        for (int square = 0; square < Bitboard.NUM_SQUARES; square++) {
+            int nibble = (bytes[square >> 1] >> ((square & 1) << 2)) & NIBBLE_MASK;
+            if (nibble == 0) {
+                continue;
+            }
+
+            int ordinal = (nibble & ~HUMAN_NIBBLE_BIT) - 1;
+            if (ordinal < 0 || ordinal >= PieceType.VALUES.length) {
+                throw new IllegalArgumentException(String.format("The square %d has the invalid nibble %d", square, nibble));
+            }
+
+            long[] bitboards = (nibble & HUMAN_NIBBLE_BIT) == 0 ? botBitboards : humanBitboards;
+            bitboards[ordinal] |= Bitboard.mask(square);
+        }
+
+        return new State(new Player(true, botBitboards), new Player(false, humanBitboards), isBotTurn);
+    }
+
+    /**
+     * Put the types of the pieces of the given player to their squares
+     * @param player the player
+     * @param board the types indexed by the square
+     */
+    protected static void fillSquares(Player player, PieceType[] board) {
+        for (PieceType type : PieceType.VALUES) {
+            for (long bitboard = player.getBitboard(type); bitboard != 0; bitboard = Bitboard.withoutFirstSquare(bitboard)) {
+                board[Bitboard.firstSquare(bitboard)] = type;
+            }
+        }
+    }
+
+    /**
+     * Put the nibbles of the pieces of the given player to the given bytes
+     * @param player the player
+     * @param playerBit the bit of the player in the nibble
+     * @param bytes the bytes
+     */
+    protected static void packSquares(Player player, int playerBit, byte[] bytes) {
+        for (PieceType type : PieceType.VALUES) {
+            int nibble = playerBit | (type.ordinal() + 1);
+            for (long bitboard = player.getBitboard(type); bitboard != 0; bitboard = Bitboard.withoutFirstSquare(bitboard)) {
+                int square = Bitboard.firstSquare(bitboard);
+                bytes[square >> 1] |= (byte) (nibble << ((square & 1) << 2));
+            }
+        }
+    }
+
+    /**
+     * Find the type that the given letter indicates
+     * @param letter the letter of the piece. It can be either lowercase or uppercase
+     * @return the type
+     */
+    protected static PieceType typeOf(char letter) {
+        return switch (Character.toLowerCase(letter)) {
+            case 'p' -> PieceType.PAWN;
+            case 'n' -> PieceType.KNIGHT;
+            case 'b' -> PieceType.BISHOP;
+            case 'r' -> PieceType.ROOK;
+            case 'q' -> PieceType.QUEEN;
+            case 'k' -> PieceType.KING;
+            default -> throw new IllegalArgumentException(String.format("The letter %s is invalid", letter));
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package game;
+
+import java.util.Base64;
+
+/**
+ * The formats a board can be given and returned in
+ */
+public enum BoardFormat {
+    /**
+     * The rows of the unicode icons separated by newlines, with □ for an empty square
+     */
+    UNICODE,
+    /**
+     * The FEN-like text form of BoardCodec
+     */
+    FEN,
+    /**
+     * The packed form of BoardCodec in unpadded base64url, so it fits in a query parameter
+     */
+    PACKED;
+
+    /**
+     * Parse the given board of this format into the state
+     * @param board the board
+     * @param isBotTurn whether it is a bot turn or not, unless the board gives the player to move
+     * @return the state
+     * @throws IllegalArgumentException when the board is not valid
+     */
+    public State parse(String board, boolean isBotTurn) {
+        return switch (this) {
+            case UNICODE -> State.parse(board, isBotTurn);
+            case FEN -> BoardCodec.fromText(board, isBotTurn);
+            case PACKED -> BoardCodec.unpack(Base64.getUrlDecoder().decode(board.trim()), isBotTurn);
+        };
+    }
+
+    /**
+     * Write the board of the given state in this format
+     * @param state the state
+     * @return the board
+     */
+    public String format(State state) {
+        return switch (this) {
+            case UNICODE -> state.toString();
+            case FEN -> BoardCodec.toText(state, false);
+            case PACKED -> Base64.getUrlEncoder().withoutPadding().encodeToString(BoardCodec.pack(state));
+        };
+    }
+}
@@ -1,157 +1,1565 @@
 package game;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+import piece.PieceType;
 import piece.Queen;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class Bot {
 
+    private static final Logger logger = LogManager.getLogger();
+
+    /**
+     * The deadline is checked each time this many nodes are expanded. Must be a power of two.
+     */
+    protected static final int NODES_PER_DEADLINE_CHECK = 128;
+
+    /**
+     * The size of the move buffers, enough for all moves of the initial pieces
+     */
+    protected static final int INITIAL_MOVE_BUFFER_SIZE = 16 * Player.MAX_MOVES_PER_PIECE;
+
+    /**
+     * The number of plies the quiescence search can extend a leaf at most
+     */
+    protected static final int MAX_QUIESCENCE_DEPTH = 16;
+
+    /**
+     * The margin added to the value of a capture before it is pruned by the delta pruning, for the positional terms
+     * the capture can change
+     */
+    protected static final double DELTA_MARGIN = 2.0;
+
+    /**
+     * The half width of the first window the root is searched with around the value of the last iteration
+     */
+    protected static final double ASPIRATION_WINDOW = 1.0;
+
+    /**
+     * The factor the half width of the window grows by each time the root value falls outside of it
+     */
+    protected static final double ASPIRATION_WINDOW_GROWTH = 4.0;
+
+    /**
+     * The number of plies the search after a null move is shallower than the search of the moves
+     */
+    protected static final int NULL_MOVE_REDUCTION = 2;
+
+    /**
+     * The number of plies a late move is reduced by
+     */
+    protected static final int LATE_MOVE_REDUCTION = 1;
+
+    /**
+     * The number of moves of a state searched to the full depth before the quiet moves are reduced
+     */
+    protected static final int NUM_FULL_DEPTH_MOVES = 3;
+
+    /**
+     * The number of plies that must remain below a state for its late moves to be reduced
+     */
+    protected static final int MIN_LATE_MOVE_REDUCTION_DEPTH = 3;
+
     protected final Game game;
 
     protected final int intelligenceLevel;
 
-    protected Map<State, Double> transpositionTable;
+    protected final TranspositionTable transpositionTable;
 
     protected int numNodesExpanded;
 
+    protected int numQuiescenceNodesExpanded;
+
+    /**
+     * The number of times a state was searched again with a wider window, after the null window search of a late
+     * move or the aspiration window of the root failed
+     */
+    protected int numReSearches;
+
+    /**
+     * The depth limit of the current iteration of the iterative deepening
+     */
+    protected int depthLimit;
+
+    /**
+     * The time in System.nanoTime() after which the search stops, or null if it has no time limit
+     */
+    @Nullable
+    protected Long deadline;
+
+    /**
+     * The principal variations found below each depth of the current iteration, as moves packed by Move
+     */
+    protected int[][] principalVariations;
+
+    protected int[] principalVariationLengths;
+
+    /**
+     * The principal variation of the last completed iteration
+     */
+    protected int[] previousPrincipalVariation;
+
+    protected int previousPrincipalVariationLength;
+
+    /**
+     * Whether the current node is on the principal variation of the last completed iteration
+     */
+    protected boolean isFollowingPrincipalVariation;
+
+    /**
+     * The number of threads searching for a decision, including the thread that called decide
+     */
+    protected final int numThreads;
+
+    /**
+     * The index of this bot among the helpers of a decision, or 0 if this bot makes the decision
+     */
+    protected int helperIndex;
+
+    /**
+     * Set when the helpers of a decision should stop, or null if this bot is not a helper
+     */
+    @Nullable
+    protected AtomicBoolean stopSignal;
+
+    /**
+     * The executor the helpers of a decision run on
+     */
+    protected final Executor helperExecutor;
+
+    protected final OpeningBook openingBook;
+
+    /**
+     * The tablebase that scores the states with few pieces exactly, consulted at the root and at every node
+     */
+    protected final Tablebase tablebase;
+
+    /**
+     * The hard limits of the current decision, shared with the helpers and the caller
+     */
+    protected SearchControl searchControl;
+
+    /**
+     * Called with each iteration completed by the current decision, or null if nobody listens to them
+     */
+    @Nullable
+    protected Consumer<IterationRecord> iterationListener;
+
+    /**
+     * The buffer of the generated moves of each depth, reused by all nodes of the depth
+     */
+    protected int[][] moveBuffers;
+
+    protected final MoveOrdering moveOrdering;
+
+    protected final MoveOrderer moveOrderer;
+
+    protected final Set<SearchFeature> searchFeatures;
+
+    /**
+     * The key of the search features mixed into the hashes of the transposition table, so the values pruned by the
+     * features are not used by the searches without them
+     */
+    protected final long searchFeaturesKey;
+
+    /**
+     * The counters of the searches of each feature, indexed by the ordinal of the feature
+     */
+    protected final FeatureCounter[] featureCounters;
+
+    /**
+     * Whether the current node is below a null move, so another null move is not tried
+     */
+    protected boolean isSearchingNullMove;
+
+    /**
+     * The counts of what the current search did, for the metrics of the decision
+     */
+    protected final SearchStatistics statistics;
+
+    /**
+     * The best move found by the last completed iteration
+     */
+    protected int bestMove;
+
+    /**
+     * The minimax value found by the last completed iteration
+     */
+    protected double minimaxValue;
+
+    /**
+     * The depth limit of the last completed iteration
+     */
+    protected int depthReached;
+
     public Bot(int intelligenceLevel) {
-        this.game = new Game();
+        this(builder(intelligenceLevel));
+    }
+
+    /**
+     * Create the bot with the options of the given builder
+     * @param builder the builder
+     */
+    protected Bot(Builder builder) {
+        int intelligenceLevel = builder.intelligenceLevel;
+        if (builder.numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be at least 1. Given: " + builder.numThreads);
+        }
+
+        this.game = builder.game != null
+                ? builder.game
+                : new Game(builder.pawnHashTable == null ? new PawnHashTable() : builder.pawnHashTable);
+        this.numThreads = builder.numThreads;
+        this.helperIndex = 0;
+        this.stopSignal = null;
+        this.helperExecutor = builder.helperExecutor;
+        this.openingBook = builder.openingBook;
+        this.tablebase = builder.tablebase;
+        this.searchControl = new SearchControl();
+        this.iterationListener = null;
+        this.bestMove = Move.NONE;
+        this.minimaxValue = Double.NEGATIVE_INFINITY;
+        this.depthReached = 0;
         this.intelligenceLevel = intelligenceLevel;
-        this.transpositionTable = new HashMap<>();
+        this.transpositionTable = builder.transpositionTable == null
+                ? new TranspositionTable()
+                : builder.transpositionTable;
         this.numNodesExpanded = 0;
+        this.depthLimit = intelligenceLevel;
+
+        int maxDepth = intelligenceLevel + 2;
+        this.principalVariations = new int[maxDepth][maxDepth];
+        this.principalVariationLengths = new int[maxDepth];
+        this.previousPrincipalVariation = new int[maxDepth];
+        this.previousPrincipalVariationLength = 0;
+        this.numQuiescenceNodesExpanded = 0;
+        this.moveBuffers = new int[maxDepth + MAX_QUIESCENCE_DEPTH][INITIAL_MOVE_BUFFER_SIZE];
+        this.moveOrdering = builder.moveOrdering;
+        this.moveOrderer = this.moveOrdering.create(maxDepth + MAX_QUIESCENCE_DEPTH);
+
+        this.searchFeatures = builder.searchFeatures.isEmpty()
+                ? EnumSet.noneOf(SearchFeature.class)
+                : EnumSet.copyOf(builder.searchFeatures);
+        this.searchFeaturesKey = Zobrist.featuresKey(this.searchFeatures);
+        this.featureCounters = new FeatureCounter[SearchFeature.values().length];
+        for (int i = 0; i < this.featureCounters.length; i++) {
+            this.featureCounters[i] = new FeatureCounter();
+        }
+        this.isSearchingNullMove = false;
+        this.statistics = new SearchStatistics();
+    }
+
+    /**
+     * Start building a bot. The bot searches on a single thread with its own transposition table, orders the moves by
+     * the heuristics and has no search features, opening book or tablebase unless the builder is given them.
+     * @param intelligenceLevel the intelligence level
+     * @return the builder
+     */
+    public static Builder builder(int intelligenceLevel) {
+        return new Builder(intelligenceLevel);
+    }
+
+    /**
+     * Check if the given depth exceeded the depth limit of the game
+     * @param depth the depth to check
+     * @return true if it should, false otherwise
+     */
+    protected boolean shouldCutOff(int depth) {
+        return depth > this.depthLimit;
+    }
+
+    /**
+     * Get the number of plies left to search below the given depth
+     * @param depth the current depth
+     * @return the number of plies
+     */
+    protected int remainingDepth(int depth) {
+        return this.depthLimit - depth + 1;
+    }
+
+    /**
+     * Check if the value of the given entry can be returned for the given window
+     * @param entry the entry of the transposition table
+     * @param maxBest the best value for the max
+     * @param minBest the best value for the min
+     * @return true if it can, false otherwise
+     */
+    protected boolean isUsable(TranspositionTable.Entry entry, double maxBest, double minBest) {
+        return switch (entry.bound()) {
+            case EXACT -> true;
+            case LOWER -> entry.value() >= minBest;
+            case UPPER -> entry.value() <= maxBest;
+        };
+    }
+
+    /**
+     * Count the expanded node and stop the search if the deadline has passed or the search is stopped
+     * @throws SearchAbortedException when the deadline has passed or the search is stopped
+     */
+    protected void expandNode() {
+        this.numNodesExpanded++;
+
+        if ((this.numNodesExpanded & (NODES_PER_DEADLINE_CHECK - 1)) == 0) {
+            this.checkAbort();
+        }
+    }
+
+    /**
+     * Count the node expanded by the quiescence search and stop the search if the deadline has passed or the search
+     * is stopped
+     * @throws SearchAbortedException when the deadline has passed or the search is stopped
+     */
+    protected void expandQuiescenceNode() {
+        this.numQuiescenceNodesExpanded++;
+
+        if ((this.numQuiescenceNodesExpanded & (NODES_PER_DEADLINE_CHECK - 1)) == 0) {
+            this.checkAbort();
+        }
+    }
+
+    /**
+     * Stop the search if the deadline has passed, the search is stopped or the search control stops it. Each check
+     * reports NODES_PER_DEADLINE_CHECK nodes to the search control.
+     * @throws SearchAbortedException when the deadline has passed or the search is stopped
+     */
+    protected void checkAbort() {
+        if ((this.deadline != null && System.nanoTime() - this.deadline > 0)
+                || (this.stopSignal != null && this.stopSignal.get())
+                || this.searchControl.shouldStop(NODES_PER_DEADLINE_CHECK)) {
+            throw SearchAbortedException.INSTANCE;
+        }
+    }
+
+    /**
+     * Generate the moves of the current player of the given state into the move buffer of the given depth
+     * @param state the state
+     * @param depth the current depth
+     * @return the number of moves
+     */
+    protected int generateMoves(State state, int depth) {
+        return this.generateMoves(state, depth, false);
+    }
+
+    /**
+     * Generate the moves of the current player of the given state into the move buffer of the given depth
+     * @param state the state
+     * @param depth the current depth
+     * @param isTacticalOnly whether to generate only the moves that capture a piece or promote a pawn
+     * @return the number of moves
+     */
+    protected int generateMoves(State state, int depth, boolean isTacticalOnly) {
+        Player player = state.isBotTurn() ? state.getBotPlayer() : state.getHumanPlayer();
+        Player opponent = state.isBotTurn() ? state.getHumanPlayer() : state.getBotPlayer();
+
+        int maxNumMoves = player.getMaxNumMoves();
+        if (this.moveBuffers[depth].length < maxNumMoves) {
+            this.moveBuffers[depth] = new int[maxNumMoves];
+        }
+
+        if (!this.statistics.countMoveGeneration()) {
+            return isTacticalOnly
+                    ? player.generateTacticalMoves(opponent, this.moveBuffers[depth])
+                    : player.generateMoves(opponent, this.moveBuffers[depth]);
+        }
+
+        long startNanos = System.nanoTime();
+        int numMoves = isTacticalOnly
+                ? player.generateTacticalMoves(opponent, this.moveBuffers[depth])
+                : player.generateMoves(opponent, this.moveBuffers[depth]);
+        this.statistics.addMoveGenerationTime(System.nanoTime() - startNanos);
+
+        return numMoves;
+    }
+
+    /**
+     * Evaluate the given state
+     * @param state the state
+     * @return the value
+     */
+    protected double evaluate(State state) {
+        if (!this.statistics.countEvaluation()) {
+            return this.game.evaluate(state);
+        }
+
+        long startNanos = System.nanoTime();
+        double value = this.game.evaluate(state);
+        this.statistics.addEvaluationTime(System.nanoTime() - startNanos);
+
+        return value;
+    }
+
+    /**
+     * Order the given moves, so the move of the principal variation of the last iteration is searched first,
+     * or else the best move stored in the transposition table, followed by the order of the move orderer
+     * @param state the state
+     * @param moves the buffer of the moves
+     * @param numMoves the number of moves in the buffer
+     * @param entry the entry of the state in the transposition table, or null
+     * @param depth the current depth
+     */
+    protected void orderMoves(State state, int[] moves, int numMoves, @Nullable TranspositionTable.Entry entry,
+                              int depth) {
+        int hashMove = entry == null ? Move.NONE : entry.bestMove();
+        if (this.isFollowingPrincipalVariation && depth < this.previousPrincipalVariationLength) {
+            hashMove = this.previousPrincipalVariation[depth];
+        }
+
+        this.moveOrderer.order(state, moves, numMoves, hashMove, depth);
+
+        if (this.isFollowingPrincipalVariation
+                && (depth >= this.previousPrincipalVariationLength || numMoves == 0 || moves[0] != hashMove)) {
+            this.isFollowingPrincipalVariation = false;
+        }
+    }
+
+    /**
+     * Record the given move as the best one found at the given depth, followed by the principal variation below it
+     * @param move the move
+     * @param depth the current depth
+     */
+    protected void updatePrincipalVariation(int move, int depth) {
+        int[] principalVariation = this.principalVariations[depth];
+        principalVariation[depth] = move;
+
+        int childLength = this.principalVariationLengths[depth + 1];
+        System.arraycopy(this.principalVariations[depth + 1], depth + 1, principalVariation, depth + 1,
+                childLength - depth - 1);
+        this.principalVariationLengths[depth] = childLength;
+    }
+
+    /**
+     * Decide the next action from the given state
+     * @param state the state
+     * @return the decision
+     */
+    public DecisionRecord decide(State state) {
+        return this.decide(state, null);
+    }
+
+    /**
+     * Decide the next action from the given state by searching one more ply per iteration until the intelligence
+     * level is reached or the time runs out. When the bot has more than one thread, the helper threads search the same
+     * state at the same time and share what they find through the transposition table.
+     * @param state the state
+     * @param timeLimit the time the bot can think, or null for no limit. When the time runs out, the decision of the
+     *                  last completed iteration is returned
+     * @return the decision
+     */
+    public DecisionRecord decide(State state, @Nullable Duration timeLimit) {
+        return this.decide(state, timeLimit, new SearchControl());
+    }
+
+    /**
+     * Decide the next action from the given state within the hard limits of the given search control. The search
+     * stops as soon as the control stops it, even in the middle of the first iteration.
+     * @param state the state
+     * @param timeLimit the time the bot can think, or null for no limit. When the time runs out, the decision of the
+     *                  last completed iteration is returned
+     * @param searchControl the hard limits of the search. It can be cancelled from another thread
+     * @return the decision of the last completed iteration, or null if the bot has no move or the search was stopped
+     * before the first iteration completed
+     */
+    @Nullable
+    public DecisionRecord decide(State state, @Nullable Duration timeLimit, SearchControl searchControl) {
+        return this.decide(state, timeLimit, searchControl, null);
+    }
+
+    /**
+     * Decide the next action from the given state within the hard limits of the given search control, and report
+     * each iteration as it completes
+     * @param state the state
+     * @param timeLimit the time the bot can think, or null for no limit. When the time runs out, the decision of the
+     *                  last completed iteration is returned
+     * @param searchControl the hard limits of the search. It can be cancelled from another thread
+     * @param iterationListener called on the searching thread with each iteration completed, or null
+     * @return the decision of the last completed iteration, or null if the bot has no move or the search was stopped
+     * before the first iteration completed
+     */
+    @Nullable
+    public DecisionRecord decide(State state, @Nullable Duration timeLimit, SearchControl searchControl,
+                                 @Nullable Consumer<IterationRecord> iterationListener) {
+        Instant startTime = Instant.now();
+
+        int bookMove = this.openingBook.selectMove(state);
+        if (bookMove != Move.NONE) {
+            return this.bookDecision(state, bookMove, startTime);
+        }
+
+        int tablebaseMove = this.tablebase.selectMove(state);
+        if (tablebaseMove != Move.NONE) {
+            return this.tablebaseDecision(state, tablebaseMove, startTime);
+        }
+
+        return this.decideBySearch(state, timeLimit, searchControl, iterationListener);
+    }
+
+    /**
+     * Decide the next action from the given state by searching, without consulting the opening book or the tablebase
+     * for the move of the state. The tablebase still scores the states met by the search.
+     * @param state the state
+     * @param timeLimit the time the bot can think, or null for no limit. When the time runs out, the decision of the
+     *                  last completed iteration is returned
+     * @param searchControl the hard limits of the search. It can be cancelled from another thread
+     * @param iterationListener called on the searching thread with each iteration completed, or null
+     * @return the decision of the last completed iteration, or null if the bot has no move or the search was stopped
+     * before the first iteration completed
+     */
+    @Nullable
+    public DecisionRecord decideBySearch(State state, @Nullable Duration timeLimit, SearchControl searchControl,
+                                         @Nullable Consumer<IterationRecord> iterationListener) {
+        Instant startTime = Instant.now();
+
+        this.transpositionTable.newSearch();
+        this.searchControl = searchControl;
+        this.iterationListener = iterationListener;
+
+        AtomicBoolean stopSignal = new AtomicBoolean(false);
+        List<Bot> helpers = new ArrayList<>();
+        List<CompletableFuture<Void>> helperSearches = new ArrayList<>();
+        for (int i = 1; i < this.numThreads; i++) {
+            Bot helper = builder(this.intelligenceLevel)
+                    .game(this.game)
+                    .transpositionTable(this.transpositionTable)
+                    .moveOrdering(this.moveOrdering)
+                    .searchFeatures(this.searchFeatures)
+                    .helperExecutor(this.helperExecutor)
+                    .openingBook(this.openingBook)
+                    .tablebase(this.tablebase)
+                    .build();
+            helper.helperIndex = i;
+            helper.stopSignal = stopSignal;
+            helper.searchControl = searchControl;
+
+            CompletableFuture<Void> helperSearch;
+            try {
+                helperSearch = CompletableFuture.runAsync(() -> helper.search(state, null), this.helperExecutor);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Searching with {} of {} threads, as the helper executor is full", i, this.numThreads);
+                break;
+            }
+
+            helpers.add(helper);
+            helperSearches.add(helperSearch.exceptionally(e -> {
+                logger.error("A helper search failed", e);
+                return null;
+            }));
+        }
+
+        try {
+            this.search(state, timeLimit);
+        } finally {
+            stopSignal.set(true);
+            helperSearches.forEach(CompletableFuture::join);
+        }
+
+        if (this.bestMove == Move.NONE) {
+            return null;
+        }
+
+        Action bestAction = this.findAction(state, this.bestMove);
+        State nextState = this.game.result(state, bestAction, Queen.BLACK_ICON);
+
+        int numNodesExpanded = this.numNodesExpanded;
+        int numQuiescenceNodesExpanded = this.numQuiescenceNodesExpanded;
+        int numReSearches = this.numReSearches;
+        for (Bot helper : helpers) {
+            numNodesExpanded += helper.numNodesExpanded;
+            numQuiescenceNodesExpanded += helper.numQuiescenceNodesExpanded;
+            numReSearches += helper.numReSearches;
+            this.statistics.add(helper.statistics);
+        }
+
+        Instant endTime = Instant.now();
+        Duration timeTaken = Duration.between(startTime, endTime);
+
+        List<Bot> bots = new ArrayList<>(helpers);
+        bots.add(this);
+
+        return new DecisionRecord(timeTaken, this.minimaxValue, bestAction, nextState.toJSON(),
+                this.principalVariationActions(state), this.depthReached, numNodesExpanded, numQuiescenceNodesExpanded, numReSearches,
+                this.featureRecords(bots), this.statistics.toRecord(timeTaken, numNodesExpanded, numQuiescenceNodesExpanded),
+                false, false, false, searchControl.getStopReason());
+    }
+
+    /**
+     * Make the decision of the given move of the opening book without searching. The value is the evaluation of the
+     * state after it.
+     * @param state the state
+     * @param move the move selected by the book
+     * @param startTime the time the decision started
+     * @return the decision
+     */
+    public DecisionRecord bookDecision(State state, int move, Instant startTime) {
+        Action action = this.findAction(state, move);
+        State nextState = this.game.result(state, action, Queen.BLACK_ICON);
+        double value = this.game.isTerminal(nextState) ? this.game.utility(nextState) : this.game.evaluate(nextState);
+        Duration timeTaken = Duration.between(startTime, Instant.now());
+
+        this.statistics.reset();
+        return new DecisionRecord(timeTaken, value, action, nextState.toJSON(), List.of(action), 0, 0, 0, 0,
+                Map.of(), this.statistics.toRecord(timeTaken, 0, 0), true, false, false, null);
+    }
+
+    /**
+     * Make the decision of the given best move of the tablebase without searching. The value is the exact value of
+     * the state.
+     * @param state the state
+     * @param move the move selected by the tablebase
+     * @param startTime the time the decision started
+     * @return the decision
+     */
+    public DecisionRecord tablebaseDecision(State state, int move, Instant startTime) {
+        Action action = this.findAction(state, move);
+        State nextState = this.game.result(state, action, Queen.BLACK_ICON);
+        double value = this.tablebase.probe(state);
+        Duration timeTaken = Duration.between(startTime, Instant.now());
+
+        this.statistics.reset();
+        return new DecisionRecord(timeTaken, value, action, nextState.toJSON(), List.of(action), 0, 0, 0, 0,
+                Map.of(), this.statistics.toRecord(timeTaken, 0, 0), false, true, false, null);
+    }
+
+    /**
+     * Sum up the counters of the enabled features of the given bots
+     * @param bots the bots that searched for the decision
+     * @return the record of each enabled feature
+     */
+    protected Map<SearchFeature, SearchFeatureRecord> featureRecords(List<Bot> bots) {
+        Map<SearchFeature, SearchFeatureRecord> featureRecords = new EnumMap<>(SearchFeature.class);
+        for (SearchFeature feature : this.searchFeatures) {
+            int numSearches = 0;
+            int numCutoffs = 0;
+            int numNodesExpanded = 0;
+            long numNanos = 0;
+            for (Bot bot : bots) {
+                FeatureCounter counter = bot.featureCounters[feature.ordinal()];
+                numSearches += counter.numSearches;
+                numCutoffs += counter.numCutoffs;
+                numNodesExpanded += counter.numNodesExpanded;
+                numNanos += counter.numNanos;
+            }
+
+            featureRecords.put(feature,
+                    new SearchFeatureRecord(numSearches, numCutoffs, numNodesExpanded, Duration.ofNanos(numNanos)));
+        }
+
+        return featureRecords;
+    }
+
+    /**
+     * Get the actions of the principal variation of the last completed iteration
+     * @param state the state the search started from
+     * @return the actions, starting with the action of the bot
+     */
+    protected List<Action> principalVariationActions(State state) {
+        State variationState = state.clone();
+        List<Action> actions = new ArrayList<>(this.previousPrincipalVariationLength);
+        for (int i = 0; i < this.previousPrincipalVariationLength; i++) {
+            int move = this.previousPrincipalVariation[i];
+            actions.add(this.findAction(variationState, move));
+            variationState.makeMove(move);
+        }
+
+        return actions;
+    }
+
+    /**
+     * Search the given state by searching one more ply per iteration until the intelligence level is reached, the
+     * time runs out or the search is stopped, and keep the best move of the last completed iteration
+     * @param state the state
+     * @param timeLimit the time the bot can think, or null for no limit
+     */
+    protected void search(State state, @Nullable Duration timeLimit) {
+        long startNanos = System.nanoTime();
+
+        this.numNodesExpanded = 0;
+        this.numQuiescenceNodesExpanded = 0;
+        this.numReSearches = 0;
+        for (FeatureCounter counter : this.featureCounters) {
+            counter.reset();
+        }
+        this.statistics.reset();
+        this.previousPrincipalVariationLength = 0;
+        this.deadline = null;
+        this.bestMove = Move.NONE;
+        this.minimaxValue = Double.NEGATIVE_INFINITY;
+        this.depthReached = 0;
+
+        // the odd helpers search one ply deeper than the main thread, so the threads don't all finish the same depth
+        int firstDepthLimit = this.helperIndex % 2;
+
+        for (int depthLimit = firstDepthLimit; depthLimit <= this.intelligenceLevel; depthLimit++) {
+            this.depthLimit = depthLimit;
+
+            // the search makes and unmakes the moves on this copy instead of creating a new state per node
+            State searchState = state.clone();
+            this.isSearchingNullMove = false;
+            for (FeatureCounter counter : this.featureCounters) {
+                counter.nesting = 0;
+            }
+
+            int iterationStartNodes = this.countAllNodesExpanded();
+            double value;
+            try {
+                value = this.searchAspirationWindow(searchState);
+            } catch (SearchAbortedException e) {
+                // the copy is left in the middle of the aborted search, so it is discarded with the iteration
+                break;
+            }
+
+            if (this.principalVariationLengths[0] == 0) {
+                return;
+            }
+
+            this.minimaxValue = value;
+            this.depthReached = depthLimit;
+            this.statistics.completeIteration(this.countAllNodesExpanded() - iterationStartNodes);
+            this.bestMove = this.principalVariations[0][0];
+
+            this.previousPrincipalVariationLength = this.principalVariationLengths[0];
+            System.arraycopy(this.principalVariations[0], 0, this.previousPrincipalVariation, 0,
+                    this.previousPrincipalVariationLength);
+
+            if (this.iterationListener != null) {
+                this.reportIteration(state, Duration.ofNanos(System.nanoTime() - startNanos));
+            }
+
+            // the first iteration always completes, so there is a decision even if the time runs out
+            if (timeLimit != null) {
+                this.deadline = startNanos + timeLimit.toNanos();
+            }
+        }
+    }
+
+    /**
+     * Report the last completed iteration to the iteration listener. A listener that fails doesn't stop the search.
+     * @param state the state the search started from
+     * @param timeTaken the time taken since the search started
+     */
+    protected void reportIteration(State state, Duration timeTaken) {
+        IterationRecord iterationRecord = new IterationRecord(this.depthReached, this.minimaxValue,
+                this.findAction(state, this.bestMove), this.principalVariationActions(state),
+                this.searchControl.getNumNodesExpanded(), timeTaken);
+
+        try {
+            this.iterationListener.accept(iterationRecord);
+        } catch (RuntimeException e) {
+            logger.warn("The iteration listener failed", e);
+        }
     }
 
     /**
-     * Check if the given depth exceeded the depth limit of the game
-     * @param depth the depth to check
-     * @return true if it should, false otherwise
+     * Find the action of the given move in the given state
+     * @param state the state
+     * @param move the move
+     * @return the action
      */
-    protected boolean shouldCutOff(int depth) {
-        return depth > this.intelligenceLevel;
+    protected Action findAction(State state, int move) {
+        Player player = state.isBotTurn() ? state.getBotPlayer() : state.getHumanPlayer();
+        return player.toAction(move);
     }
 
     /**
-     * Decide the next action from the given state
-     * @param state the state
-     * @return the decision
+     * Search the given state to the current depth limit with a window around the value of the last iteration, and
+     * search again with a wider window each time the value falls outside of it
+     * @param state the state. The moves are made and unmade on it in place
+     * @return the minimax value of the state
      */
-    public DecisionRecord decide(State state) {
-        Instant startTime = Instant.now();
+    protected double searchAspirationWindow(State state) {
+        if (this.previousPrincipalVariationLength == 0) {
+            return this.searchRoot(state, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+        }
 
-        this.transpositionTable.clear();
-        this.numNodesExpanded = 0;
+        double window = ASPIRATION_WINDOW;
+        double botBest = this.minimaxValue - window;
+        double humanBest = this.minimaxValue + window;
+
+        while (true) {
+            double value = this.searchRoot(state, botBest, humanBest);
+
+            // a bound of an open window is the value itself, so only a finite bound needs widening
+            if (value <= botBest && botBest != Double.NEGATIVE_INFINITY) {
+                window *= ASPIRATION_WINDOW_GROWTH;
+                botBest = value - window;
+            } else if (value >= humanBest && humanBest != Double.POSITIVE_INFINITY) {
+                window *= ASPIRATION_WINDOW_GROWTH;
+                humanBest = value + window;
+            } else {
+                return value;
+            }
+
+            this.numReSearches++;
+        }
+    }
+
+    /**
+     * Search the moves of the bot from the given state to the current depth limit. The first move is searched with
+     * the given window and the others with a null window, which only proves they are not better than the best one so
+     * far, unless they are.
+     * @param state the state. The moves are made and unmade on it in place
+     * @param botBest the best value for the bot
+     * @param humanBest the best value for the human
+     * @return the minimax value of the state if it is inside the window, or else a bound of it
+     */
+    protected double searchRoot(State state, double botBest, double humanBest) {
+        this.principalVariationLengths[0] = 0;
+        this.isFollowingPrincipalVariation = true;
 
         double minimaxValue = Double.NEGATIVE_INFINITY;
-        Action bestAction = null;
-        State nextState = null;
-        this.numNodesExpanded++;
+        this.expandNode();
 
-        double botBest = Double.NEGATIVE_INFINITY;
-        double humanBest = Double.POSITIVE_INFINITY;
+        int numMoves = this.generateMoves(state, 0);
+        int[] moves = this.moveBuffers[0];
+        this.orderMoves(state, moves, numMoves, null, 0);
+        if (this.helperIndex > 0 && numMoves > 2) {
+            // the helpers start with different moves after the principal one to fill the table with other subtrees
+            this.rotateMoves(moves, 1, numMoves, this.helperIndex);
+        }
 
-        for (Action action : this.game.actions(state)) {
-            State result = this.game.result(state, action, Queen.BLACK_ICON);
-            double value = this.minValue(result, botBest, humanBest, 1);
+        for (int i = 0; i < numMoves; i++) {
+            int move = moves[i];
+            state.makeMove(move);
+            double value = this.searchMinChild(state, botBest, humanBest, 1, i == 0, false);
+            state.unmakeMove();
+            this.isFollowingPrincipalVariation = false;
 
             if (value > minimaxValue) {
                 minimaxValue = value;
-                bestAction = action;
-                nextState = result;
+                this.updatePrincipalVariation(move, 0);
+            }
+
+            if (minimaxValue >= humanBest) {
+                return minimaxValue;
             }
 
             botBest = Math.max(botBest, minimaxValue);
         }
 
-        if (bestAction == null) {
-            return null;
+        return minimaxValue;
+    }
+
+    /**
+     * Rotate the given range of the moves to the right by the given distance
+     * @param moves the moves
+     * @param from the start of the range, inclusive
+     * @param to the end of the range, exclusive
+     * @param distance the distance
+     */
+    protected void rotateMoves(int[] moves, int from, int to, int distance) {
+        int length = to - from;
+        int[] rotated = new int[length];
+        for (int i = 0; i < length; i++) {
+            rotated[(i + distance) % length] = moves[from + i];
         }
 
-        Instant endTime = Instant.now();
-        Duration timeTaken = Duration.between(startTime, endTime);
+        System.arraycopy(rotated, 0, moves, from, length);
+    }
+
+    /**
+     * Get the min value of the child of a max node. A child other than the first is searched with a null window
+     * first, which is enough to prove that it is not better for the max than maxBest, and searched again with the
+     * full window only when it is. The null window is as narrow as the doubles allow but not empty, so a value equal
+     * to its bound is never mistaken for a cutoff on the other side.
+     * @param state the child state
+     * @param maxBest the best value for the max
+     * @param minBest the best value for the min
+     * @param depth the depth of the child
+     * @param isFirst whether the child is the first one searched
+     * @param isLate whether the move to the child is a late move, so the child is searched with fewer plies first
+     * @return the value
+     */
+    protected double searchMinChild(State state, double maxBest, double minBest, int depth, boolean isFirst,
+                                    boolean isLate) {
+        if (isFirst) {
+            return this.minValue(state, maxBest, minBest, depth);
+        }
+
+        if (isLate) {
+            double value = this.searchReduced(state, maxBest, minBest, depth);
+            if (value <= maxBest) {
+                return value;
+            }
+        }
+
+        double value = this.minValue(state, maxBest, Math.nextUp(maxBest), depth);
+        if (value > maxBest && value < minBest) {
+            this.numReSearches++;
+            value = this.minValue(state, maxBest, minBest, depth);
+        }
+
+        return value;
+    }
+
+    /**
+     * Get the max value of the child of a min node. A child other than the first is searched with a null window
+     * first, which is enough to prove that it is not better for the min than minBest, and searched again with the
+     * full window only when it is. The null window is as narrow as the doubles allow but not empty.
+     * @param state the child state
+     * @param maxBest the best value for the max
+     * @param minBest the best value for the min
+     * @param depth the depth of the child
+     * @param isFirst whether the child is the first one searched
+     * @param isLate whether the move to the child is a late move, so the child is searched with fewer plies first
+     * @return the value
+     */
+    protected double searchMaxChild(State state, double maxBest, double minBest, int depth, boolean isFirst,
+                                    boolean isLate) {
+        if (isFirst) {
+            return this.maxValue(state, maxBest, minBest, depth);
+        }
+
+        if (isLate) {
+            double value = this.searchReduced(state, maxBest, minBest, depth);
+            if (value >= minBest) {
+                return value;
+            }
+        }
+
+        double value = this.maxValue(state, Math.nextDown(minBest), minBest, depth);
+        if (value < minBest && value > maxBest) {
+            this.numReSearches++;
+            value = this.maxValue(state, maxBest, minBest, depth);
+        }
+
+        return value;
+    }
+
+    /**
+     * Check if the given move should be reduced by the late move reductions
+     * @param move the move
+     * @param index the index of the move in the searched order
+     * @param remainingDepth the number of plies to search below the state of the move
+     * @return true if it should, false otherwise
+     */
+    protected boolean isLateMove(int move, int index, int remainingDepth) {
+        return this.searchFeatures.contains(SearchFeature.LATE_MOVE_REDUCTIONS)
+                && index >= NUM_FULL_DEPTH_MOVES
+                && remainingDepth >= MIN_LATE_MOVE_REDUCTION_DEPTH
+                && !Move.isCapture(move) && !Move.isPromotion(move);
+    }
+
+    /**
+     * Search the given child of a late move with fewer plies and a null window, to prove that it is not better for
+     * the player who made the move than the best move so far
+     * @param state the child state
+     * @param maxBest the best value for the max
+     * @param minBest the best value for the min
+     * @param depth the depth of the child
+     * @return the value. It is at most maxBest for a min child or at least minBest for a max child if the proof holds
+     */
+    protected double searchReduced(State state, double maxBest, double minBest, int depth) {
+        boolean isMaxChild = state.isBotTurn();
+        FeatureCounter counter = this.featureCounters[SearchFeature.LATE_MOVE_REDUCTIONS.ordinal()];
+        counter.begin(this.countAllNodesExpanded());
+
+        double value;
+        this.depthLimit -= LATE_MOVE_REDUCTION;
+        try {
+            value = isMaxChild
+                    ? this.maxValue(state, Math.nextDown(minBest), minBest, depth)
+                    : this.minValue(state, maxBest, Math.nextUp(maxBest), depth);
+        } finally {
+            this.depthLimit += LATE_MOVE_REDUCTION;
+        }
+
+        counter.end(isMaxChild ? value >= minBest : value <= maxBest, this.countAllNodesExpanded());
+        return value;
+    }
+
+    /**
+     * Let the player to move in the given state pass, and search the state with fewer plies and a null window to
+     * prove that the player is still better than the window even without moving
+     * @param state the state. The turn is passed and given back on it in place
+     * @param maxBest the best value for the max
+     * @param minBest the best value for the min
+     * @param depth the current depth
+     * @param remainingDepth the number of plies to search below the state
+     * @return the value if the proof holds and the state can be pruned, or else NaN
+     */
+    protected double searchNullMove(State state, double maxBest, double minBest, int depth, int remainingDepth) {
+        boolean isMax = state.isBotTurn();
+        Player player = isMax ? state.getBotPlayer() : state.getHumanPlayer();
+
+        // passing can be the best move in a king and pawn ending, so the proof doesn't hold there
+        if (!this.searchFeatures.contains(SearchFeature.NULL_MOVE_PRUNING) || this.isSearchingNullMove
+                || this.isFollowingPrincipalVariation || remainingDepth <= NULL_MOVE_REDUCTION
+                || !player.hasNonPawnPieces()) {
+            return Double.NaN;
+        }
+
+        double value = this.evaluate(state);
+        if (isMax ? value < minBest : value > maxBest) {
+            return Double.NaN;
+        }
+
+        FeatureCounter counter = this.featureCounters[SearchFeature.NULL_MOVE_PRUNING.ordinal()];
+        counter.begin(this.countAllNodesExpanded());
+
+        this.isSearchingNullMove = true;
+        this.depthLimit -= NULL_MOVE_REDUCTION;
+        state.moveToNextPlayerTurn();
+        try {
+            value = isMax
+                    ? this.minValue(state, Math.nextDown(minBest), minBest, depth + 1)
+                    : this.maxValue(state, maxBest, Math.nextUp(maxBest), depth + 1);
+        } finally {
+            state.moveToNextPlayerTurn();
+            this.depthLimit += NULL_MOVE_REDUCTION;
+            this.isSearchingNullMove = false;
+        }
+
+        boolean isCutoff = isMax ? value >= minBest : value <= maxBest;
+        counter.end(isCutoff, this.countAllNodesExpanded());
+
+        return isCutoff ? value : Double.NaN;
+    }
+
+    /**
+     * Count the nodes expanded so far by both the search and the quiescence search
+     * @return the number of nodes
+     */
+    protected int countAllNodesExpanded() {
+        return this.numNodesExpanded + this.numQuiescenceNodesExpanded;
+    }
+
+    /**
+     * Score the given state by the tablebase
+     * @param state a non-terminal state
+     * @return the exact value of the state, or NaN if the state is not in the tablebase
+     */
+    protected double probeTablebase(State state) {
+        double value = this.tablebase.probe(state);
+        if (!Double.isNaN(value)) {
+            this.statistics.countTablebaseHit();
+        }
 
-        return new DecisionRecord(timeTaken, minimaxValue, bestAction, nextState.toJSON(), this.numNodesExpanded);
+        return value;
     }
 
     /**
      * Get the max value of the given state
-     * @param state the state
+     * @param state the state. The moves are made and unmade on it in place
      * @param maxBest the best value for the max
      * @param minBest the best value for the min
      * @param depth the current depth
      * @return the value
      */
     protected double maxValue(State state, double maxBest, double minBest, int depth) {
-        if (this.transpositionTable.containsKey(state)) {
-            return this.transpositionTable.get(state);
-        } else if (this.game.isTerminal(state)) {
+        this.principalVariationLengths[depth] = depth;
+
+        if (this.game.isTerminal(state)) {
+            this.statistics.countLeafNode(depth);
             return this.game.utility(state);
+        }
+
+        double tablebaseValue = this.probeTablebase(state);
+        if (!Double.isNaN(tablebaseValue)) {
+            this.statistics.countLeafNode(depth);
+            return tablebaseValue;
         } else if (this.shouldCutOff(depth)) {
-            return this.game.evaluate(state);
+            this.statistics.countLeafNode(depth);
+            return this.quiescenceMaxValue(state, maxBest, minBest, depth);
+        }
+
+        long key = state.getHash() ^ this.searchFeaturesKey;
+        int remainingDepth = this.remainingDepth(depth);
+        TranspositionTable.Entry entry = this.transpositionTable.probe(key);
+        this.statistics.countTranspositionProbe(entry != null);
+        if (entry != null && entry.depth() >= remainingDepth && this.isUsable(entry, maxBest, minBest)) {
+            return entry.value();
         }
 
+        double initialMaxBest = maxBest;
         double maxBestHere = Double.NEGATIVE_INFINITY;
-        this.numNodesExpanded++;
+        int bestMove = Move.NONE;
+        this.expandNode();
+
+        double nullMoveValue = this.searchNullMove(state, maxBest, minBest, depth, remainingDepth);
+        if (!Double.isNaN(nullMoveValue)) {
+            return nullMoveValue;
+        }
+
+        int numMoves = this.generateMoves(state, depth);
+        int[] moves = this.moveBuffers[depth];
+        this.orderMoves(state, moves, numMoves, entry, depth);
 
-        for (Action action : this.game.actions(state)) {
-            State result = this.game.result(state, action);
-            double value = this.minValue(result, maxBest, minBest, depth+1);
+        for (int i = 0; i < numMoves; i++) {
+            int move = moves[i];
+            state.makeMove(move);
+            double value = this.searchMinChild(state, maxBest, minBest, depth + 1, i == 0,
+                    this.isLateMove(move, i, remainingDepth));
+            state.unmakeMove();
+            this.isFollowingPrincipalVariation = false;
 
             if (value > maxBestHere) {
                 maxBestHere = value;
+                bestMove = move;
+                this.updatePrincipalVariation(move, depth);
             }
 
             if (maxBestHere >= minBest) {
+                this.statistics.countCutoff(i);
+                this.moveOrderer.recordCutoff(state, bestMove, depth, remainingDepth);
+                this.transpositionTable.store(key, remainingDepth, TranspositionTable.Bound.LOWER, maxBestHere, bestMove);
                 return maxBestHere;
             }
 
             maxBest = Math.max(maxBest, maxBestHere);
         }
 
-        this.transpositionTable.put(state, maxBestHere);
+        TranspositionTable.Bound bound = maxBestHere <= initialMaxBest ? TranspositionTable.Bound.UPPER : TranspositionTable.Bound.EXACT;
+        this.transpositionTable.store(key, remainingDepth, bound, maxBestHere, bestMove);
 
         return maxBestHere;
     }
 
     /**
      * Get the min value of the given state
-     * @param state the state
+     * @param state the state. The moves are made and unmade on it in place
      * @param maxBest the best value for the max
      * @param minBest the best value for the min
      * @param depth the current depth
      * @return the value
      */
     protected double minValue(State state, double maxBest, double minBest, int depth) {
-        if (this.transpositionTable.containsKey(state)) {
-            return this.transpositionTable.get(state);
-        } else if (this.game.isTerminal(state)) {
+        this.principalVariationLengths[depth] = depth;
+
+        if (this.game.isTerminal(state)) {
+            this.statistics.countLeafNode(depth);
             return this.game.utility(state);
+        }
+
+        double tablebaseValue = this.probeTablebase(state);
+        if (!Double.isNaN(tablebaseValue)) {
+            this.statistics.countLeafNode(depth);
+            return tablebaseValue;
         } else if (this.shouldCutOff(depth)) {
-            return this.game.evaluate(state);
+            this.statistics.countLeafNode(depth);
+            return this.quiescenceMinValue(state, maxBest, minBest, depth);
+        }
+
+        long key = state.getHash() ^ this.searchFeaturesKey;
+        int remainingDepth = this.remainingDepth(depth);
+        TranspositionTable.Entry entry = this.transpositionTable.probe(key);
+        this.statistics.countTranspositionProbe(entry != null);
+        if (entry != null && entry.depth() >= remainingDepth && this.isUsable(entry, maxBest, minBest)) {
+            return entry.value();
         }
 
+        double initialMinBest = minBest;
         double minBestHere = Double.POSITIVE_INFINITY;
-        this.numNodesExpanded++;
+        int bestMove = Move.NONE;
+        this.expandNode();
 
-        for (Action action : this.game.actions(state)) {
-            State result = this.game.result(state, action);
-            double value = this.maxValue(result, maxBest, minBest, depth+1);
+        double nullMoveValue = this.searchNullMove(state, maxBest, minBest, depth, remainingDepth);
+        if (!Double.isNaN(nullMoveValue)) {
+            return nullMoveValue;
+        }
+
+        int numMoves = this.generateMoves(state, depth);
+        int[] moves = this.moveBuffers[depth];
+        this.orderMoves(state, moves, numMoves, entry, depth);
+
+        for (int i = 0; i < numMoves; i++) {
+            int move = moves[i];
+            state.makeMove(move);
+            double value = this.searchMaxChild(state, maxBest, minBest, depth + 1, i == 0,
+                    this.isLateMove(move, i, remainingDepth));
+            state.unmakeMove();
+            this.isFollowingPrincipalVariation = false;
 
             if (value < minBestHere) {
                 minBestHere = value;
+                bestMove = move;
+                this.updatePrincipalVariation(move, depth);
             }
 
             if (minBestHere <= maxBest) {
+                this.statistics.countCutoff(i);
+                this.moveOrderer.recordCutoff(state, bestMove, depth, remainingDepth);
+                this.transpositionTable.store(key, remainingDepth, TranspositionTable.Bound.UPPER, minBestHere, bestMove);
                 return minBestHere;
             }
 
             minBest = Math.min(minBest, minBestHere);
         }
 
-        this.transpositionTable.put(state, minBestHere);
+        TranspositionTable.Bound bound = minBestHere >= initialMinBest ? TranspositionTable.Bound.LOWER : TranspositionTable.Bound.EXACT;
+        this.transpositionTable.store(key, remainingDepth, bound, minBestHere, bestMove);
+
+        return minBestHere;
+    }
+
+    /**
+     * Get the max value of the given state beyond the depth limit by searching only the captures and the promotions,
+     * so the leaf is not evaluated in the middle of an exchange. The max can stand pat on the evaluated value instead
+     * of making any of them.
+     * @param state the state. The moves are made and unmade on it in place
+     * @param maxBest the best value for the max
+     * @param minBest the best value for the min
+     * @param depth the current depth
+     * @return the value
+     */
+    protected double quiescenceMaxValue(State state, double maxBest, double minBest, int depth) {
+        if (this.game.isTerminal(state)) {
+            return this.game.utility(state);
+        }
+
+        double tablebaseValue = this.probeTablebase(state);
+        if (!Double.isNaN(tablebaseValue)) {
+            return tablebaseValue;
+        }
+
+        this.expandQuiescenceNode();
+        this.statistics.reachDepth(depth);
+
+        double standPat = this.evaluate(state);
+        if (standPat >= minBest || depth >= this.moveBuffers.length) {
+            return standPat;
+        }
+
+        double maxBestHere = standPat;
+        maxBest = Math.max(maxBest, standPat);
+
+        int numMoves = this.generateMoves(state, depth, true);
+        int[] moves = this.moveBuffers[depth];
+        this.moveOrderer.order(state, moves, numMoves, Move.NONE, depth);
+
+        for (int i = 0; i < numMoves; i++) {
+            int move = moves[i];
+
+            // delta pruning: skip the capture that cannot raise the value to the window even with the margin
+            if (standPat + this.materialGain(move) + DELTA_MARGIN <= maxBest) {
+                continue;
+            }
+
+            state.makeMove(move);
+            double value = this.quiescenceMinValue(state, maxBest, minBest, depth + 1);
+            state.unmakeMove();
+
+            maxBestHere = Math.max(maxBestHere, value);
+            if (maxBestHere >= minBest) {
+                return maxBestHere;
+            }
+
+            maxBest = Math.max(maxBest, maxBestHere);
+        }
+
+        return maxBestHere;
+    }
+
+    /**
+     * Get the min value of the given state beyond the depth limit by searching only the captures and the promotions.
+     * The min can stand pat on the evaluated value instead of making any of them.
+     * @param state the state. The moves are made and unmade on it in place
+     * @param maxBest the best value for the max
+     * @param minBest the best value for the min
+     * @param depth the current depth
+     * @return the value
+     */
+    protected double quiescenceMinValue(State state, double maxBest, double minBest, int depth) {
+        if (this.game.isTerminal(state)) {
+            return this.game.utility(state);
+        }
+
+        double tablebaseValue = this.probeTablebase(state);
+        if (!Double.isNaN(tablebaseValue)) {
+            return tablebaseValue;
+        }
+
+        this.expandQuiescenceNode();
+        this.statistics.reachDepth(depth);
+
+        double standPat = this.evaluate(state);
+        if (standPat <= maxBest || depth >= this.moveBuffers.length) {
+            return standPat;
+        }
+
+        double minBestHere = standPat;
+        minBest = Math.min(minBest, standPat);
+
+        int numMoves = this.generateMoves(state, depth, true);
+        int[] moves = this.moveBuffers[depth];
+        this.moveOrderer.order(state, moves, numMoves, Move.NONE, depth);
+
+        for (int i = 0; i < numMoves; i++) {
+            int move = moves[i];
+
+            // delta pruning: skip the capture that cannot lower the value to the window even with the margin
+            if (standPat - this.materialGain(move) - DELTA_MARGIN >= minBest) {
+                continue;
+            }
+
+            state.makeMove(move);
+            double value = this.quiescenceMaxValue(state, maxBest, minBest, depth + 1);
+            state.unmakeMove();
+
+            minBestHere = Math.min(minBestHere, value);
+            if (minBestHere <= maxBest) {
+                return minBestHere;
+            }
+
+            minBest = Math.min(minBest, minBestHere);
+        }
 
         return minBestHere;
     }
+
+    /**
+     * Get the most material the given move can win, for the delta pruning
+     * @param move the move
+     * @return the material. It is infinite for capturing the king, which ends the game
+     */
+    protected double materialGain(int move) {
+        PieceType capturedType = Move.capturedType(move);
+        if (capturedType == PieceType.KING) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double gain = capturedType == null ? 0.0 : Game.materialWeight(capturedType);
+        if (Move.isPromotion(move)) {
+            gain += Game.materialWeight(PieceType.QUEEN) - Game.materialWeight(PieceType.PAWN);
+        }
+
+        return gain;
+    }
+
+    /**
+     * The counts of the searches of a feature. The nodes and the time are counted only by the outermost search of
+     * the feature, so the searches nested in another search of the same feature are not counted twice.
+     */
+    protected static class FeatureCounter {
+
+        protected int numSearches;
+
+        protected int numCutoffs;
+
+        protected int numNodesExpanded;
+
+        protected long numNanos;
+
+        /**
+         * The number of the searches of the feature the current node is below
+         */
+        protected int nesting;
+
+        protected int startNumNodesExpanded;
+
+        protected long startNanos;
+
+        /**
+         * Start a search of the feature
+         * @param numNodesExpanded the number of nodes expanded so far
+         */
+        protected void begin(int numNodesExpanded) {
+            if (this.nesting++ == 0) {
+                this.startNumNodesExpanded = numNodesExpanded;
+                this.startNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * End the search of the feature started last
+         * @param isCutoff whether the search was enough
+         * @param numNodesExpanded the number of nodes expanded so far
+         */
+        protected void end(boolean isCutoff, int numNodesExpanded) {
+            this.numSearches++;
+            if (isCutoff) {
+                this.numCutoffs++;
+            }
+
+            if (--this.nesting == 0) {
+                this.numNodesExpanded += numNodesExpanded - this.startNumNodesExpanded;
+                this.numNanos += System.nanoTime() - this.startNanos;
+            }
+        }
+
+        /**
+         * Reset the counts for a new decision
+         */
+        protected void reset() {
+            this.numSearches = 0;
+            this.numCutoffs = 0;
+            this.numNodesExpanded = 0;
+            this.numNanos = 0;
+            this.nesting = 0;
+        }
+    }
+
+    /**
+     * The options of a bot. A new search dependency is added here instead of to the constructors of the bot.
+     */
+    public static class Builder {
+
+        protected final int intelligenceLevel;
+
+        @Nullable
+        protected Game game;
+
+        @Nullable
+        protected PawnHashTable pawnHashTable;
+
+        @Nullable
+        protected TranspositionTable transpositionTable;
+
+        protected int numThreads;
+
+        protected MoveOrdering moveOrdering;
+
+        protected Set<SearchFeature> searchFeatures;
+
+        protected Executor helperExecutor;
+
+        protected OpeningBook openingBook;
+
+        protected Tablebase tablebase;
+
+        protected Builder(int intelligenceLevel) {
+            this.intelligenceLevel = intelligenceLevel;
+            this.game = null;
+            this.pawnHashTable = null;
+            this.transpositionTable = null;
+            this.numThreads = 1;
+            this.moveOrdering = MoveOrdering.HEURISTIC;
+            this.searchFeatures = EnumSet.noneOf(SearchFeature.class);
+            this.helperExecutor = ForkJoinPool.commonPool();
+            this.openingBook = OpeningBook.empty();
+            this.tablebase = Tablebase.empty();
+        }
+
+        /**
+         * Set the game the bot plays, so the bot shares the caches of the game with the other bots playing it
+         * @param game the game
+         * @return this builder
+         */
+        public Builder game(Game game) {
+            this.game = game;
+            return this;
+        }
+
+        /**
+         * Set the cache of the pawn structure term of the evaluation, so the bot plays a game with the cache. It is
+         * ignored if the game is set.
+         * @param pawnHashTable the cache. It can be shared with other bots, so the pawn structures evaluated by a
+         *                      search are reused by the following searches
+         * @return this builder
+         */
+        public Builder pawnHashTable(PawnHashTable pawnHashTable) {
+            this.pawnHashTable = pawnHashTable;
+            return this;
+        }
+
+        /**
+         * Set the table to store the values of the searched states
+         * @param transpositionTable the table. It can be shared with other bots, so the values found by a search are
+         *                           reused by the following searches
+         * @return this builder
+         */
+        public Builder transpositionTable(TranspositionTable transpositionTable) {
+            this.transpositionTable = transpositionTable;
+            return this;
+        }
+
+        /**
+         * Set the number of threads searching for a decision
+         * @param numThreads the number of threads. Must be at least 1
+         * @return this builder
+         */
+        public Builder numThreads(int numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * Set the order in which the moves of a state are searched
+         * @param moveOrdering the move ordering
+         * @return this builder
+         */
+        public Builder moveOrdering(MoveOrdering moveOrdering) {
+            this.moveOrdering = moveOrdering;
+            return this;
+        }
+
+        /**
+         * Set the forward pruning features to search with
+         * @param searchFeatures the features
+         * @return this builder
+         */
+        public Builder searchFeatures(Set<SearchFeature> searchFeatures) {
+            this.searchFeatures = searchFeatures;
+            return this;
+        }
+
+        /**
+         * Set the executor the helper threads run on
+         * @param helperExecutor the executor. A helper it rejects is not started, so the decision is searched by
+         *                       fewer threads
+         * @return this builder
+         */
+        public Builder helperExecutor(Executor helperExecutor) {
+            this.helperExecutor = helperExecutor;
+            return this;
+        }
+
+        /**
+         * Set the book consulted before searching
+         * @param openingBook the book. A state in the book is answered with a move of the book without searching
+         * @return this builder
+         */
+        public Builder openingBook(OpeningBook openingBook) {
+            this.openingBook = openingBook;
+            return this;
+        }
+
+        /**
+         * Set the tablebase of the endgames
+         * @param tablebase the tablebase. A state in it is answered with its best move without searching, and the
+         *                  states in it met by the search are scored by it
+         * @return this builder
+         */
+        public Builder tablebase(Tablebase tablebase) {
+            this.tablebase = tablebase;
+            return this;
+        }
+
+        /**
+         * Create the bot
+         * @return the bot
+         */
+        public Bot build() {
+            return new Bot(this);
+        }
+    }
+
+    /**
+     * Thrown to unwind the search when its deadline has passed or it is stopped. It carries no stack trace or state,
+     * so the same instance is thrown by all searches.
+     */
+    protected static class SearchAbortedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        protected static final SearchAbortedException INSTANCE = new SearchAbortedException();
+
+        private SearchAbortedException() {
+            super(null, null, false, false);
+        }
+    }
 }
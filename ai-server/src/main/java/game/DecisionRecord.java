@@ -1,16 +1,34 @@
 package game;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 /**
- * Record of the decision made by the bot
+ * Record of the decision made by the bot. The stop reason is set when the search control stopped the search before
+ * it reached the intelligence level, so the decision is of a shallower iteration. The statistics show where the
+ * search spent its time. A decision from the opening book is not searched, so its counts are zero and its value is the
+ * evaluation of the state after the move. A decision from the tablebase is not searched either, and its value is
+ * the exact value of the state. A decision from the decision cache was searched for an earlier request, so its time
+ * taken is the time of the lookup, while its counts and statistics are of the earlier search.
  */
 public record DecisionRecord(
         Duration timeTaken,
         double minimaxValue,
         Action actionTaken,
         ObjectNode result,
-        int numNodesExpanded
+        List<Action> principalVariation,
+        int depthReached,
+        int numNodesExpanded,
+        int numQuiescenceNodesExpanded,
+        int numReSearches,
+        Map<SearchFeature, SearchFeatureRecord> searchFeatures,
+        SearchStatisticsRecord statistics,
+        boolean isFromOpeningBook,
+        boolean isFromTablebase,
+        boolean isFromCache,
+        @Nullable SearchControl.StopReason stopReason
 ) {}
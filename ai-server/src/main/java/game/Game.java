@@ -2,7 +2,7 @@ package game;
 
 import org.jetbrains.annotations.Nullable;
 import piece.Pawn;
-import piece.Piece;
+import piece.PieceType;
 
 import java.util.Collection;
 
@@ -27,6 +27,31 @@ public class Game {
 
     protected static final double MINIMAX_VALUE_RANGE = 245.5;
 
+    /**
+     * The cache of the pawn structure term of the evaluation, shared by all evaluations of this game
+     */
+    protected final PawnHashTable pawnHashTable;
+
+    public Game() {
+        this(new PawnHashTable());
+    }
+
+    /**
+     * Create the game
+     * @param pawnHashTable the cache of the pawn structure term of the evaluation
+     */
+    public Game(PawnHashTable pawnHashTable) {
+        this.pawnHashTable = pawnHashTable;
+    }
+
+    /**
+     * Get the cache of the pawn structure term of the evaluation
+     * @return the cache
+     */
+    public PawnHashTable getPawnHashTable() {
+        return this.pawnHashTable;
+    }
+
     /**
      * Get the initial state of the game
      * @return the state
@@ -77,6 +102,8 @@ public class Game {
      * @param action the action
      * @param promotionIcon the icon of the piece as a replacement of a pawn. If null is given, no promotion will be applied.
      * @return the new state
+     * @throws IllegalArgumentException when the new position of the action is off the board or occupied by a piece of
+     * the player
      */
     public State result(State state, @Nullable Action action, @Nullable Character promotionIcon) {
         State newState = state.clone();
@@ -95,9 +122,9 @@ public class Game {
             opponent = newState.getBotPlayer();
         }
 
-        Piece myPiece = myPlayer.findPieceAt(action.piece().getPosition()).orElseThrow();
-        myPiece.moveTo(action.newPosition());
-        opponent.killPieceAt(myPiece.getPosition());
+        // the move is validated before the captured piece is removed
+        myPlayer.movePiece(action.piece().getPosition(), action.newPosition());
+        opponent.killPieceAt(action.newPosition());
 
         if (promotionIcon != null) {
             for (Pawn promotablePawn : myPlayer.getPromotablePawns()) {
@@ -106,17 +133,7 @@ public class Game {
             }
         }
 
-        boolean isMyKingAlive = myPlayer.countKings() == 1;
-        boolean isOpponentKingAlive = opponent.countKings() == 1;
-
-        if (myPlayer.allPieces().size() == 1 && isMyKingAlive && opponent.allPieces().size() == 1 && isOpponentKingAlive) {
-            newState.setOutcome(null);
-        } else if (!isMyKingAlive) {
-            newState.setOutcome(opponent);
-        } else if (!isOpponentKingAlive) {
-            newState.setOutcome(myPlayer);
-        }
-
+        newState.updateOutcome(myPlayer, opponent);
         newState.moveToNextPlayerTurn();
 
         return newState;
@@ -154,9 +171,26 @@ public class Game {
     }
 
     /**
-     * Calculate the evaluated value of the non-terminal state
+     * Get the weight of a piece of the given type in the material of a player
+     * @param type the type of the piece
+     * @return the weight. It is 0 for the king, which is weighed by whether it is alive instead
+     */
+    protected static double materialWeight(PieceType type) {
+        return switch (type) {
+            case QUEEN -> NUM_QUEEN_WEIGHT;
+            case ROOK -> NUM_ROOKS_WEIGHT;
+            case BISHOP, KNIGHT -> NUM_BISHOPS_KNIGHTS_WEIGHT;
+            case PAWN -> NUM_PAWNS_WEIGHT;
+            case KING -> 0.0;
+        };
+    }
+
+    /**
+     * Calculate the evaluated value of the non-terminal state. The material is maintained by the players as the pieces
+     * move and the doubled and isolated pawns are cached by the pawn structure, so only the blocked pawns and the
+     * mobility are counted for each state, with popcounts of the attack masks.
      * @param state a non-terminal state
-     * @return the evaluated value
+     * @return the evaluated value, the same as evaluateFromScratch
      */
     public double evaluate(State state) {
         if (this.isTerminal(state)) {
@@ -166,6 +200,45 @@ public class Game {
         Player botPlayer = state.getBotPlayer();
         Player humanPlayer = state.getHumanPlayer();
 
+        // all terms but the mobility are multiples of 0.5, so they add up exactly in any order
+        return NUM_KING_WEIGHT * (botPlayer.countKings() - humanPlayer.countKings())
+                + (botPlayer.getMaterial() - humanPlayer.getMaterial())
+                - this.evaluateWeakPawns(state)
+                - PAWNS_LOCATION_WEIGHT * (botPlayer.countBlockedPawns(humanPlayer) - humanPlayer.countBlockedPawns(botPlayer))
+                + MOBILITY_WEIGHT * (botPlayer.countMoves(humanPlayer) - humanPlayer.countMoves(botPlayer));
+    }
+
+    /**
+     * Get the penalty of the doubled and isolated pawns of the given state from the pawn hash table, or count them
+     * if the pawn structure is not cached. The blocked pawns are not included, since they depend on the other pieces.
+     * @param state the state
+     * @return the penalty for the bot
+     */
+    protected double evaluateWeakPawns(State state) {
+        long pawnHash = state.getPawnHash();
+        double penalty = this.pawnHashTable.probe(pawnHash);
+        if (Double.isNaN(penalty)) {
+            penalty = PAWNS_LOCATION_WEIGHT * (state.getBotPlayer().countWeakPawns() - state.getHumanPlayer().countWeakPawns());
+            this.pawnHashTable.store(pawnHash, penalty);
+        }
+
+        return penalty;
+    }
+
+    /**
+     * Calculate the evaluated value of the non-terminal state by counting all pieces again. It is the reference the
+     * incremental evaluate is checked against.
+     * @param state a non-terminal state
+     * @return the evaluated value
+     */
+    public double evaluateFromScratch(State state) {
+        if (this.isTerminal(state)) {
+            throw new IllegalArgumentException("This method shouldn't be used for a terminal state.");
+        }
+
+        Player botPlayer = state.getBotPlayer();
+        Player humanPlayer = state.getHumanPlayer();
+
         return NUM_KING_WEIGHT * (botPlayer.countKings() - humanPlayer.countKings())
                 + NUM_QUEEN_WEIGHT * (botPlayer.countQueens() - humanPlayer.countQueens())
                 + NUM_ROOKS_WEIGHT * (botPlayer.countRooks() - humanPlayer.countRooks())
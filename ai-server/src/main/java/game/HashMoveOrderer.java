@@ -0,0 +1,25 @@
+package game;
+
+/**
+ * Move the hash move to the front and keep the generated order of the other moves
+ */
+public class HashMoveOrderer implements MoveOrderer {
+
+    @Override
+    public void order(State state, int[] moves, int numMoves, int hashMove, int depth) {
+        if (hashMove == Move.NONE) {
+            return;
+        }
+
+        for (int i = 0; i < numMoves; i++) {
+            if (moves[i] == hashMove) {
+                System.arraycopy(moves, 0, moves, 1, i);
+                moves[0] = hashMove;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void recordCutoff(State state, int move, int depth, int remainingDepth) {}
+}
@@ -0,0 +1,150 @@
+package game;
+
+import piece.PieceType;
+import util.Bitboard;
+
+import java.util.List;
+
+/**
+ * Order the moves by the hash move, then the captures and promotions by MVV-LVA (most valuable victim, least
+ * valuable attacker), then the killer moves of the depth, then the other moves by their history score.
+ * The killer moves and the history scores are learned from the cutoffs, so an orderer belongs to a single search
+ * thread.
+ */
+public class HeuristicMoveOrderer implements MoveOrderer {
+
+    protected static final int NUM_KILLERS = 2;
+
+    protected static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+
+    protected static final int CAPTURE_SCORE = 1 << 30;
+
+    protected static final int KILLER_SCORE = 1 << 29;
+
+    /**
+     * The history scores are halved when one of them reaches this value, so they stay below the killer scores
+     */
+    protected static final int HISTORY_LIMIT = 1 << 20;
+
+    /**
+     * The killer moves of each depth, the most recent first
+     */
+    protected final int[][] killers;
+
+    /**
+     * The history scores of the moves of each player, indexed by the from and to squares of the moves
+     */
+    protected final int[][] history;
+
+    /**
+     * The scores of the moves being ordered
+     */
+    protected int[] scores;
+
+    /**
+     * Create the orderer
+     * @param maxDepth the number of depths to keep the killer moves of
+     */
+    public HeuristicMoveOrderer(int maxDepth) {
+        this.killers = new int[maxDepth][NUM_KILLERS];
+        this.history = new int[2][Bitboard.NUM_SQUARES * Bitboard.NUM_SQUARES];
+        this.scores = new int[0];
+    }
+
+    @Override
+    public void order(State state, int[] moves, int numMoves, int hashMove, int depth) {
+        if (this.scores.length < numMoves) {
+            this.scores = new int[numMoves];
+        }
+
+        for (int i = 0; i < numMoves; i++) {
+            this.scores[i] = this.score(state, moves[i], hashMove, depth);
+        }
+
+        // insertion sort, as there are only a few dozen moves and the sort is stable
+        for (int i = 1; i < numMoves; i++) {
+            int move = moves[i];
+            int score = this.scores[i];
+            int j = i - 1;
+            while (j >= 0 && this.scores[j] < score) {
+                moves[j + 1] = moves[j];
+                this.scores[j + 1] = this.scores[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            this.scores[j + 1] = score;
+        }
+    }
+
+    @Override
+    public void recordCutoff(State state, int move, int depth, int remainingDepth) {
+        if (this.isTactical(move)) {
+            return;
+        }
+
+        int[] killers = this.killers[depth];
+        if (killers[0] != move) {
+            killers[1] = killers[0];
+            killers[0] = move;
+        }
+
+        int[] history = this.history[state.isBotTurn() ? 1 : 0];
+        history[this.historyIndex(move)] += remainingDepth * remainingDepth;
+        if (history[this.historyIndex(move)] >= HISTORY_LIMIT) {
+            for (int[] scores : this.history) {
+                for (int i = 0; i < scores.length; i++) {
+                    scores[i] /= 2;
+                }
+            }
+        }
+    }
+
+    /**
+     * Score the given move, so the moves with higher scores are tried first
+     * @param state the state
+     * @param move the move
+     * @param hashMove the hash move, or Move.NONE
+     * @param depth the current depth
+     * @return the score
+     */
+    protected int score(State state, int move, int hashMove, int depth) {
+        if (move == hashMove) {
+            return HASH_MOVE_SCORE;
+        }
+
+        if (this.isTactical(move)) {
+            // a promotion without a capture is tried after the captures
+            PieceType victim = Move.capturedType(move);
+            int victimValue = victim == null ? 0 : victim.ordinal() + 1;
+            int attackerValue = Move.pieceType(move).ordinal();
+            return CAPTURE_SCORE + victimValue * PieceType.VALUES.length + PieceType.VALUES.length - attackerValue;
+        }
+
+        int[] killers = this.killers[depth];
+        for (int i = 0; i < NUM_KILLERS; i++) {
+            if (killers[i] == move) {
+                return KILLER_SCORE + NUM_KILLERS - i;
+            }
+        }
+
+        return this.history[state.isBotTurn() ? 1 : 0][this.historyIndex(move)];
+    }
+
+    /**
+     * Check if the given move captures a piece or promotes a pawn
+     * @param move the move
+     * @return true if it does, false otherwise
+     */
+    protected boolean isTactical(int move) {
+        return Move.isCapture(move) || Move.isPromotion(move);
+    }
+
+    /**
+     * Get the index of the history score of the given move
+     * @param move the move
+     * @return the index
+     */
+    protected int historyIndex(int move) {
+        return Move.from(move) * Bitboard.NUM_SQUARES + Move.to(move);
+    }
+}
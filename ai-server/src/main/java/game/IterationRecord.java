@@ -0,0 +1,22 @@
+package game;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Record of an iteration of the iterative deepening completed by the bot, reported while the search goes deeper
+ * @param depth the depth limit of the iteration
+ * @param minimaxValue the minimax value found by the iteration
+ * @param bestAction the best action found by the iteration
+ * @param principalVariation the principal variation found by the iteration, starting with the best action
+ * @param numNodesExpanded the number of nodes expanded by all threads so far, counted in steps of a few nodes
+ * @param timeTaken the time taken since the search started
+ */
+public record IterationRecord(
+        int depth,
+        double minimaxValue,
+        Action bestAction,
+        List<Action> principalVariation,
+        long numNodesExpanded,
+        Duration timeTaken
+) {}
@@ -0,0 +1,138 @@
+package game;
+
+import org.jetbrains.annotations.Nullable;
+import piece.PieceType;
+import util.Bitboard;
+
+/**
+ * Helpers for the moves packed into ints, so they can be stored without allocating objects.
+ * The lowest 6 bits hold the square of the piece and the next 6 bits hold the new square. The moves made by the
+ * move generator also hold the type of the moved piece, the type of the captured piece and whether a pawn is promoted
+ * in the bits above, so the search can tell them apart without looking at the board.
+ */
+public final class Move {
+
+    /**
+     * The value that represents no move
+     */
+    public static final int NONE = 0;
+
+    protected static final int TO_SHIFT = 6;
+
+    protected static final int PIECE_SHIFT = 12;
+
+    protected static final int CAPTURED_SHIFT = 15;
+
+    protected static final int PROMOTION_SHIFT = 18;
+
+    protected static final int SQUARE_MASK = 0x3F;
+
+    protected static final int SQUARES_MASK = 0xFFF;
+
+    protected static final int TYPE_MASK = 0x7;
+
+    protected static final int NO_CAPTURE = 0x7;
+
+    private Move() {}
+
+    /**
+     * Pack the given squares into a move
+     * @param square the square of the piece
+     * @param newSquare the new square of the piece
+     * @return the move
+     */
+    public static int of(int square, int newSquare) {
+        return square | newSquare << TO_SHIFT;
+    }
+
+    /**
+     * Pack the given squares and pieces into a move
+     * @param square the square of the piece
+     * @param newSquare the new square of the piece
+     * @param type the type of the piece
+     * @param capturedType the type of the captured piece, or null if nothing is captured
+     * @param isPromotion whether the piece is a pawn that gets promoted or not
+     * @return the move
+     */
+    public static int of(int square, int newSquare, PieceType type, @Nullable PieceType capturedType,
+                         boolean isPromotion) {
+        return of(square, newSquare)
+                | type.ordinal() << PIECE_SHIFT
+                | (capturedType == null ? NO_CAPTURE : capturedType.ordinal()) << CAPTURED_SHIFT
+                | (isPromotion ? 1 : 0) << PROMOTION_SHIFT;
+    }
+
+    /**
+     * Pack the squares of the given action into a move
+     * @param action the action
+     * @return the move
+     */
+    public static int of(Action action) {
+        return of(Bitboard.square(action.piece().getPosition()), Bitboard.square(action.newPosition()));
+    }
+
+    /**
+     * Get the square of the piece of the given move
+     * @param move the move
+     * @return the square
+     */
+    public static int from(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    /**
+     * Get the new square of the piece of the given move
+     * @param move the move
+     * @return the square
+     */
+    public static int to(int move) {
+        return (move >>> TO_SHIFT) & SQUARE_MASK;
+    }
+
+    /**
+     * Get the given move without anything but its squares, so it can be compared with the moves packed by of(Action)
+     * @param move the move
+     * @return the move of the squares
+     */
+    public static int squares(int move) {
+        return move & SQUARES_MASK;
+    }
+
+    /**
+     * Get the type of the moved piece of the given move made by the move generator
+     * @param move the move
+     * @return the type
+     */
+    public static PieceType pieceType(int move) {
+        return PieceType.VALUES[(move >>> PIECE_SHIFT) & TYPE_MASK];
+    }
+
+    /**
+     * Get the type of the captured piece of the given move made by the move generator
+     * @param move the move
+     * @return the type, or null if nothing is captured
+     */
+    @Nullable
+    public static PieceType capturedType(int move) {
+        int capturedType = (move >>> CAPTURED_SHIFT) & TYPE_MASK;
+        return capturedType == NO_CAPTURE ? null : PieceType.VALUES[capturedType];
+    }
+
+    /**
+     * Check if the given move made by the move generator captures a piece
+     * @param move the move
+     * @return true if it does, false otherwise
+     */
+    public static boolean isCapture(int move) {
+        return ((move >>> CAPTURED_SHIFT) & TYPE_MASK) != NO_CAPTURE;
+    }
+
+    /**
+     * Check if the given move made by the move generator promotes a pawn
+     * @param move the move
+     * @return true if it does, false otherwise
+     */
+    public static boolean isPromotion(int move) {
+        return ((move >>> PROMOTION_SHIFT) & 1) == 1;
+    }
+}
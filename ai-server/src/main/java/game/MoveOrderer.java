@@ -0,0 +1,27 @@
+package game;
+
+/**
+ * Decides the order in which the search tries the moves of a state.
+ * Trying the best move first lets alpha-beta pruning cut off the remaining moves, so fewer nodes are expanded.
+ */
+public interface MoveOrderer {
+
+    /**
+     * Sort the given moves in place, so the most promising move comes first
+     * @param state the state
+     * @param moves the buffer of the moves of the current player of the state
+     * @param numMoves the number of moves in the buffer
+     * @param hashMove the move to try first, such as the best move stored in the transposition table, or Move.NONE
+     * @param depth the current depth
+     */
+    void order(State state, int[] moves, int numMoves, int hashMove, int depth);
+
+    /**
+     * Learn from the given move that caused a cutoff
+     * @param state the state the move was made from
+     * @param move the move
+     * @param depth the current depth
+     * @param remainingDepth the number of plies searched below the state
+     */
+    void recordCutoff(State state, int move, int depth, int remainingDepth);
+}
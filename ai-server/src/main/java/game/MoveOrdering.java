@@ -0,0 +1,27 @@
+package game;
+
+/**
+ * The kinds of move ordering the bot can search with
+ */
+public enum MoveOrdering {
+    /**
+     * Only try the hash move first and keep the generated order of the other moves
+     */
+    HASH_MOVE,
+    /**
+     * Try the hash move, then the captures by MVV-LVA, then the killer moves, then the other moves by their history
+     */
+    HEURISTIC;
+
+    /**
+     * Create the orderer of this kind
+     * @param maxDepth the number of depths the orderer should keep track of
+     * @return the orderer
+     */
+    public MoveOrderer create(int maxDepth) {
+        return switch (this) {
+            case HASH_MOVE -> new HashMoveOrderer();
+            case HEURISTIC -> new HeuristicMoveOrderer(maxDepth);
+        };
+    }
+}
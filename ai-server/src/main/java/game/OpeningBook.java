@@ -0,0 +1,205 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * The moves played from the opening positions, read from a book file mapped into memory, so the bot can answer them
+ * without searching.
+ * <p>
+ * The file starts with the magic number and the number of entries, followed by the entries sorted by the key. An
+ * entry is the Zobrist hash of the state as the key, the squares of the move packed by Move.of(square, newSquare) and
+ * the weight of the move, as a long, a short and an unsigned short. A state has one entry per move, next to each
+ * other. The hash is stable across restarts, as the Zobrist keys are generated from a fixed seed.
+ */
+public class OpeningBook {
+
+    /**
+     * The magic number at the start of a book file, "OBK1"
+     */
+    public static final int MAGIC = 0x4F424B31;
+
+    /**
+     * The number of bytes of the header
+     */
+    public static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    /**
+     * The number of bytes of an entry
+     */
+    public static final int ENTRY_SIZE = Long.BYTES + Short.BYTES * 2;
+
+    /**
+     * The largest weight of an entry
+     */
+    public static final int MAX_WEIGHT = 0xFFFF;
+
+    /**
+     * The entries of the book, read with the absolute gets only, so the buffer can be shared by threads
+     */
+    protected final ByteBuffer entries;
+
+    protected final int numEntries;
+
+    /**
+     * A move of the book
+     * @param move the squares of the move packed by Move.of(square, newSquare)
+     * @param weight the weight of the move, the higher the more often it is played
+     */
+    public record Entry(int move, int weight) {}
+
+    protected OpeningBook(ByteBuffer entries, int numEntries) {
+        this.entries = entries;
+        this.numEntries = numEntries;
+    }
+
+    /**
+     * Create the book with no moves
+     * @return the book
+     */
+    public static OpeningBook empty() {
+        return new OpeningBook(ByteBuffer.allocate(0), 0);
+    }
+
+    /**
+     * Map the given book file into memory
+     * @param path the path of the file
+     * @return the book
+     * @throws IOException when the file cannot be read or is not a book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("The opening book " + path + " has no header");
+            }
+
+            // the mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("The file " + path + " is not an opening book");
+            }
+
+            int numEntries = buffer.getInt(Integer.BYTES);
+            if (size != HEADER_SIZE + (long) numEntries * ENTRY_SIZE) {
+                throw new IOException(String.format("The opening book %s must have %d bytes for %d entries. Given: %d",
+                        path, HEADER_SIZE + (long) numEntries * ENTRY_SIZE, numEntries, size));
+            }
+
+            return new OpeningBook(buffer.slice(HEADER_SIZE, numEntries * ENTRY_SIZE), numEntries);
+        }
+    }
+
+    /**
+     * Get the number of entries of this book
+     * @return the number of entries
+     */
+    public int size() {
+        return this.numEntries;
+    }
+
+    /**
+     * Find the moves of the state of the given key
+     * @param key the Zobrist hash of the state
+     * @return the moves, or an empty list if the state is not in the book
+     */
+    public List<Entry> probe(long key) {
+        // find the first entry of the key by the binary search
+        int low = 0;
+        int high = this.numEntries;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.keyAt(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>();
+        for (int i = low; i < this.numEntries && this.keyAt(i) == key; i++) {
+            int offset = i * ENTRY_SIZE + Long.BYTES;
+            entries.add(new Entry(Short.toUnsignedInt(this.entries.getShort(offset)),
+                    Short.toUnsignedInt(this.entries.getShort(offset + Short.BYTES))));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Select a move of the book for the player to move in the given state, at random in proportion to the weights
+     * @param state the state
+     * @return the move made by the move generator, or Move.NONE if the state has no move in the book
+     */
+    public int selectMove(State state) {
+        return this.selectMove(state, ThreadLocalRandom.current());
+    }
+
+    /**
+     * Select a move of the book for the player to move in the given state, at random in proportion to the weights.
+     * The moves that are not legal in the state are skipped, so a collision of the hash cannot make an illegal move.
+     * @param state the state
+     * @param random the random generator
+     * @return the move made by the move generator, or Move.NONE if the state has no move in the book
+     */
+    public int selectMove(State state, RandomGenerator random) {
+        if (this.numEntries == 0) {
+            return Move.NONE;
+        }
+
+        List<Entry> entries = this.probe(state.getHash());
+        if (entries.isEmpty()) {
+            return Move.NONE;
+        }
+
+        Player player = state.isBotTurn() ? state.getBotPlayer() : state.getHumanPlayer();
+        Player opponent = state.isBotTurn() ? state.getHumanPlayer() : state.getBotPlayer();
+        int[] moves = new int[player.getMaxNumMoves()];
+        int numMoves = player.generateMoves(opponent, moves);
+
+        int[] legalMoves = new int[entries.size()];
+        int[] weights = new int[entries.size()];
+        int numLegalMoves = 0;
+        long totalWeight = 0;
+        for (Entry entry : entries) {
+            for (int i = 0; i < numMoves; i++) {
+                if (Move.squares(moves[i]) == entry.move() && entry.weight() > 0) {
+                    legalMoves[numLegalMoves] = moves[i];
+                    weights[numLegalMoves++] = entry.weight();
+                    totalWeight += entry.weight();
+                    break;
+                }
+            }
+        }
+
+        if (totalWeight == 0) {
+            return Move.NONE;
+        }
+
+        long target = random.nextLong(totalWeight);
+        for (int i = 0; i < numLegalMoves; i++) {
+            target -= weights[i];
+            if (target < 0) {
+                return legalMoves[i];
+            }
+        }
+
+        return legalMoves[numLegalMoves - 1];
+    }
+
+    /**
+     * Get the key of the given entry
+     * @param index the index of the entry
+     * @return the key
+     */
+    protected long keyAt(int index) {
+        return this.entries.getLong(index * ENTRY_SIZE);
+    }
+}
@@ -0,0 +1,259 @@
+package game;
+
+import util.Bitboard;
+
+import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Build the opening book from a corpus of games. The corpus is like PGN with the moves in coordinate notation, e.g.
+ * "1. d7d5 d2d4 2. g8f6 *": the file a to h is the x from 0 to 7 and the rank 8 to 1 is the y from 0 to 7, so the
+ * pieces of the bot start on the ranks 7 and 8. The tags, the comments in braces, the move numbers and the suffixes
+ * of captures and promotions are skipped. A game ends at its result, at a blank line, at the tags of the next game or
+ * at the move number 1, so a text corpus can have a game per line.
+ * <p>
+ * The games start from the initial state with the player of their first move. The moves of the bot in the first
+ * plies of the games are counted, and each move played in enough games is written with the number of the games as
+ * its weight.
+ */
+public class OpeningBookBuilder {
+
+    /**
+     * The tokens that end a game
+     */
+    protected static final Set<String> RESULTS = Set.of("1-0", "0-1", "1/2-1/2", "*");
+
+    protected final Game game;
+
+    /**
+     * The number of plies of each game that are counted
+     */
+    protected final int maxPlies;
+
+    /**
+     * The number of the games of each move of each state, by the key of the state
+     */
+    protected final SortedMap<Long, Map<Integer, Integer>> moveCounts;
+
+    protected int numGames;
+
+    /**
+     * The number of the games with a move that is not legal, which are counted only up to that move
+     */
+    protected int numInvalidGames;
+
+    public OpeningBookBuilder(int maxPlies) {
+        if (maxPlies < 1) {
+            throw new IllegalArgumentException("maxPlies cannot be less than 1. Given: " + maxPlies);
+        }
+
+        this.game = new Game();
+        this.maxPlies = maxPlies;
+        this.moveCounts = new TreeMap<>();
+        this.numGames = 0;
+        this.numInvalidGames = 0;
+    }
+
+    /**
+     * Read the games of the given corpus
+     * @param reader the reader of the corpus
+     * @throws IOException when the corpus cannot be read
+     */
+    public void read(BufferedReader reader) throws IOException {
+        List<String> moves = new ArrayList<>();
+        boolean isInComment = false;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("[")) {
+                this.addGame(moves);
+                moves.clear();
+                continue;
+            }
+
+            for (String token : line.split("\\s+")) {
+                if (isInComment || token.startsWith("{")) {
+                    isInComment = !token.endsWith("}");
+                    continue;
+                }
+
+                if (RESULTS.contains(token)) {
+                    this.addGame(moves);
+                    moves.clear();
+                    continue;
+                }
+
+                if (token.matches("\\d+\\.+")) {
+                    if (token.startsWith("1.") && !moves.isEmpty()) {
+                        this.addGame(moves);
+                        moves.clear();
+                    }
+                    continue;
+                }
+
+                // a move number can be written next to its move, e.g. "1.d7d5"
+                moves.add(token.replaceFirst("^\\d+\\.+", ""));
+            }
+        }
+
+        this.addGame(moves);
+    }
+
+    /**
+     * Count the moves of the bot in the first plies of the given game
+     * @param moves the moves in coordinate notation
+     */
+    public void addGame(List<String> moves) {
+        if (moves.isEmpty()) {
+            return;
+        }
+
+        this.numGames++;
+        State state = this.game.getInitialState();
+        for (int ply = 0; ply < Math.min(moves.size(), this.maxPlies); ply++) {
+            int move = parseMove(moves.get(ply));
+            if (move == Move.NONE) {
+                this.numInvalidGames++;
+                return;
+            }
+
+            if (ply == 0 && !state.getBotPlayer().isOccupied(Bitboard.x(Move.from(move)), Bitboard.y(Move.from(move)))) {
+                state.moveToNextPlayerTurn();
+            }
+
+            if (this.game.isTerminal(state) || !this.isLegal(state, move)) {
+                this.numInvalidGames++;
+                return;
+            }
+
+            if (state.isBotTurn()) {
+                this.moveCounts.computeIfAbsent(state.getHash(), key -> new HashMap<>()).merge(move, 1, Integer::sum);
+            }
+
+            state.makeMove(move);
+        }
+    }
+
+    /**
+     * Check if the given move is legal for the player to move in the given state
+     * @param state the state
+     * @param move the squares of the move
+     * @return true if it is, false otherwise
+     */
+    protected boolean isLegal(State state, int move) {
+        Player player = state.isBotTurn() ? state.getBotPlayer() : state.getHumanPlayer();
+        Player opponent = state.isBotTurn() ? state.getHumanPlayer() : state.getBotPlayer();
+        int[] moves = new int[player.getMaxNumMoves()];
+        int numMoves = player.generateMoves(opponent, moves);
+
+        for (int i = 0; i < numMoves; i++) {
+            if (Move.squares(moves[i]) == move) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Parse the given move in coordinate notation, e.g. d7d5, d7-d5, d4xe5 or e2e1=Q
+     * @param token the move
+     * @return the squares of the move packed by Move.of(square, newSquare), or Move.NONE if it is not a move
+     */
+    protected static int parseMove(String token) {
+        String squares = token.replace("-", "").replace("x", "");
+        if (squares.length() < 4) {
+            return Move.NONE;
+        }
+
+        int square = parseSquare(squares.charAt(0), squares.charAt(1));
+        int newSquare = parseSquare(squares.charAt(2), squares.charAt(3));
+        return square < 0 || newSquare < 0 ? Move.NONE : Move.of(square, newSquare);
+    }
+
+    /**
+     * Parse the given square in coordinate notation
+     * @param file the file from a to h
+     * @param rank the rank from 1 to 8
+     * @return the square, or -1 if it is not a square
+     */
+    protected static int parseSquare(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return -1;
+        }
+
+        return Bitboard.square(file - 'a', Bitboard.BOARD_SIZE - (rank - '0'));
+    }
+
+    /**
+     * Write the moves played in at least the given number of games to the given book file
+     * @param path the path of the file
+     * @param minGames the number of the games a move must be played in
+     * @return the number of the entries written
+     * @throws IOException when the file cannot be written
+     */
+    public int write(Path path, int minGames) throws IOException {
+        List<long[]> entries = new ArrayList<>();
+        for (Map.Entry<Long, Map<Integer, Integer>> state : this.moveCounts.entrySet()) {
+            state.getValue().entrySet().stream()
+                    .filter(move -> move.getValue() >= minGames)
+                    .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed())
+                    .forEach(move -> entries.add(new long[]{state.getKey(), move.getKey(),
+                            Math.min(move.getValue(), OpeningBook.MAX_WEIGHT)}));
+        }
+
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(OpeningBook.MAGIC);
+            output.writeInt(entries.size());
+            for (long[] entry : entries) {
+                output.writeLong(entry[0]);
+                output.writeShort((int) entry[1]);
+                output.writeShort((int) entry[2]);
+            }
+        }
+
+        return entries.size();
+    }
+
+    /**
+     * Build the opening book from the command line:
+     * <pre>
+     * corpus book [maxPlies] [minGames]
+     * </pre>
+     * The moves of the first 16 plies played in at least 2 games are written by default.
+     * @param args the arguments
+     * @throws IOException when the corpus cannot be read or the book cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("The corpus and the book must be given");
+        }
+
+        int maxPlies = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int minGames = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(maxPlies);
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            builder.read(reader);
+        }
+
+        int numEntries = builder.write(Path.of(args[1]), minGames);
+        System.out.printf("%d games, %d with an illegal move, %d states, %d entries written%n", builder.numGames,
+                builder.numInvalidGames, builder.moveCounts.size(), numEntries);
+    }
+}
@@ -0,0 +1,110 @@
+package game;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size cache of the pawn structure term of the evaluation, keyed by the Zobrist hash of the pawns only.
+ * The pawns move far less often than the other pieces, so most evaluated states find their pawn structure here.
+ * <p>
+ * The cache is lock-free like the transposition table: the key of an entry is stored XORed with the bits of its value,
+ * so an entry torn by concurrent writes reads as missing.
+ */
+public class PawnHashTable {
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+
+    protected final long[] keys;
+
+    protected final double[] values;
+
+    protected final int indexMask;
+
+    protected final LongAdder numProbes;
+
+    protected final LongAdder numHits;
+
+    public PawnHashTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create the cache
+     * @param capacity the number of entries. It is rounded down to a power of two. Must be positive
+     */
+    public PawnHashTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive. Given: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        this.keys = new long[size];
+        this.values = new double[size];
+        this.indexMask = size - 1;
+        this.numProbes = new LongAdder();
+        this.numHits = new LongAdder();
+    }
+
+    /**
+     * Get the number of entries the cache can hold
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Find the value of the given pawn structure
+     * @param key the pawn hash of the state
+     * @return the value, or NaN if the cache doesn't hold the pawn structure
+     */
+    public double probe(long key) {
+        this.numProbes.increment();
+
+        int index = (int) key & this.indexMask;
+        double value = this.values[index];
+
+        // an empty slot matches the key 0 of the states without pawns, whose value is 0 as well
+        if ((this.keys[index] ^ Double.doubleToRawLongBits(value)) != key) {
+            return Double.NaN;
+        }
+
+        this.numHits.increment();
+        return value;
+    }
+
+    /**
+     * Store the value of the given pawn structure, replacing the entry in its slot
+     * @param key the pawn hash of the state
+     * @param value the value
+     */
+    public void store(long key, double value) {
+        int index = (int) key & this.indexMask;
+        this.keys[index] = key ^ Double.doubleToRawLongBits(value);
+        this.values[index] = value;
+    }
+
+    /**
+     * Get the number of probes since the cache was created
+     * @return the number of probes
+     */
+    public long getNumProbes() {
+        return this.numProbes.sum();
+    }
+
+    /**
+     * Get the number of probes that found the pawn structure
+     * @return the number of hits
+     */
+    public long getNumHits() {
+        return this.numHits.sum();
+    }
+
+    /**
+     * Get the ratio of the probes that found the pawn structure
+     * @return the hit rate, or 0 if there is no probe
+     */
+    public double getHitRate() {
+        long numProbes = this.getNumProbes();
+        return numProbes == 0 ? 0.0 : (double) this.getNumHits() / numProbes;
+    }
+}
@@ -0,0 +1,163 @@
+package game;
+
+import piece.Queen;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Count the states reachable from a state in a number of plies, to check the move generation and measure its speed.
+ * The node counts of the suite of positions are checked by PerftTest. A terminal state is counted but not expanded, since capturing the king
+ * ends the game.
+ */
+public class Perft {
+
+    protected final Game game;
+
+    /**
+     * The node count of a perft run
+     * @param depth the depth
+     * @param numNodes the number of states at the depth
+     * @param timeTaken the time taken
+     */
+    public record PerftRecord(int depth, long numNodes, Duration timeTaken) {
+
+        /**
+         * Get the number of nodes counted per second
+         * @return the nodes per second
+         */
+        public double nodesPerSecond() {
+            return this.numNodes / Math.max(this.timeTaken.toNanos() / 1e9, 1e-9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d nodes in %.3f seconds, %.0f nodes/sec", this.numNodes, this.timeTaken.toNanos() / 1e9,
+                    this.nodesPerSecond());
+        }
+    }
+
+    public Perft() {
+        this.game = new Game();
+    }
+
+    /**
+     * Count the states reachable from the given state in the given number of plies
+     * @param state the state
+     * @param depth the number of plies. Must be at least 0
+     * @return the number of states
+     */
+    public long perft(State state, int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("depth cannot be less than 0. Given: " + depth);
+        }
+
+        if (depth == 0 || this.game.isTerminal(state)) {
+            return 1;
+        }
+
+        long numNodes = 0;
+        for (Action action : this.game.actions(state)) {
+            numNodes += this.perft(this.result(state, action), depth - 1);
+        }
+
+        return numNodes;
+    }
+
+    /**
+     * Count the states reachable from the given state in the given number of plies, and measure the time taken
+     * @param state the state
+     * @param depth the number of plies. Must be at least 0
+     * @return the record
+     */
+    public PerftRecord measure(State state, int depth) {
+        long startNanos = System.nanoTime();
+        long numNodes = this.perft(state, depth);
+        return new PerftRecord(depth, numNodes, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Count the states reachable from the given state in the given number of plies, broken down by the first action
+     * @param state the state
+     * @param depth the number of plies. Must be at least 1
+     * @return the number of states of each action, in the generated order
+     */
+    public Map<Action, Long> divide(State state, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth cannot be less than 1. Given: " + depth);
+        }
+
+        Map<Action, Long> numNodes = new LinkedHashMap<>();
+        for (Action action : this.game.actions(state)) {
+            numNodes.put(action, this.perft(this.result(state, action), depth - 1));
+        }
+
+        return numNodes;
+    }
+
+    /**
+     * Apply the given action, promoting a pawn to a queen like the bot does
+     * @param state the state
+     * @param action the action
+     * @return the new state
+     */
+    protected State result(State state, Action action) {
+        return this.game.result(state, action, action.piece().isBot() ? Queen.BLACK_ICON : Queen.WHITE_ICON);
+    }
+
+    /**
+     * Parse the given board of the suite format
+     * @param board the board with its rows separated by '/'
+     * @param player b if it is the bot turn, h if it is the human turn
+     * @return the state
+     */
+    protected static State parse(String board, String player) {
+        if (!player.equals("b") && !player.equals("h")) {
+            throw new IllegalArgumentException("The player must be either b or h. Given: " + player);
+        }
+
+        return State.parse(board.replace('/', '\n'), player.equals("b"));
+    }
+
+    /**
+     * Run perft from the command line, printing the total nodes, the time taken and the nodes per second:
+     * <pre>
+     * perft board player depth     count the nodes of each depth up to the given depth
+     * divide board player depth    count the nodes of each first action at the given depth, to find the action whose
+     *                              node count differs from another move generator
+     * </pre>
+     * The board has its rows separated by '/' and the player is b for bot or h for human.
+     * @param args the arguments
+     */
+    public static void main(String[] args) {
+        if (args.length != 4) {
+            throw new IllegalArgumentException("The arguments must be the mode, the board, the player and the depth. Given: "
+                    + String.join(" ", args));
+        }
+
+        Perft perft = new Perft();
+        State state = parse(args[1], args[2]);
+        int depth = Integer.parseInt(args[3]);
+
+        switch (args[0]) {
+            case "perft" -> {
+                for (int i = 1; i <= depth; i++) {
+                    System.out.printf("depth %d: %s%n", i, perft.measure(state, i));
+                }
+            }
+            case "divide" -> {
+                long startNanos = System.nanoTime();
+                long total = 0;
+                for (Map.Entry<Action, Long> entry : perft.divide(state, depth).entrySet()) {
+                    Action action = entry.getKey();
+                    System.out.printf("%s (%s) -> (%s): %d%n", action.piece().getIcon(), action.piece().getPosition(),
+                            action.newPosition(), entry.getValue());
+                    total += entry.getValue();
+                }
+                System.out.println("total: " + new PerftRecord(depth, total, Duration.ofNanos(System.nanoTime() - startNanos)));
+            }
+            default -> throw new IllegalArgumentException("The mode must be either perft or divide. Given: " + args[0]);
+        }
+    }
+}
@@ -2,30 +2,58 @@ package game;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 import piece.*;
+import util.Attacks;
+import util.Bitboard;
 import util.Position;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 public class Player implements Cloneable {
 
     private static final Logger logger = LogManager.getLogger();
 
+    /**
+     * The number of moves a piece can have at most, which is the number of moves of a queen in the middle of the board
+     */
+    protected static final int MAX_MOVES_PER_PIECE = 27;
+
     protected boolean isBot;
 
-    protected Set<Piece> pieces;
+    /**
+     * The squares occupied by each type of the pieces, indexed by the ordinal of the piece type
+     */
+    protected long[] bitboards;
+
+    /**
+     * The squares occupied by any piece of the player
+     */
+    protected long occupancy;
+
+    /**
+     * The Zobrist hash of the pieces of the player, updated whenever a piece is put, removed or moved
+     */
+    protected long hash;
+
+    /**
+     * The weighted sum of the pieces other than the king, updated whenever a piece is put or removed
+     */
+    protected double material;
 
+    /**
+     * The Zobrist hash of the pawns of the player only, updated whenever a pawn is put, removed or moved
+     */
+    protected long pawnHash;
 
     public Player(boolean isBot) {
-        this.isBot = isBot;
-        this.pieces = new HashSet<>();
+        this(isBot, new long[PieceType.VALUES.length]);
 
         final int PAWN_ROW = isBot ? 1 : 6;
 
         final int NUM_PAWNS = 8;
         for (int j = 0; j < NUM_PAWNS; j++) {
-            this.pieces.add(new Pawn(this, new Position(j, PAWN_ROW)));
+            this.putPiece(PieceType.PAWN, Bitboard.square(j, PAWN_ROW));
         }
 
         final int PIECE_ROW = isBot ? 0 : 7;
@@ -39,21 +67,44 @@ public class Player implements Cloneable {
         final int KING_COL = 3;
         final int QUEEN_COL = 4;
 
-        this.pieces.addAll(List.of(
-                new Bishop(this, new Position(BISHOP1_COL, PIECE_ROW)),
-                new Bishop(this, new Position(BISHOP2_COL, PIECE_ROW)),
-                new Knight(this, new Position(KNIGHT1_COl, PIECE_ROW)),
-                new Knight(this, new Position(KNIGHT2_COL, PIECE_ROW)),
-                new Rook(this, new Position(ROOK1_COL, PIECE_ROW)),
-                new Rook(this, new Position(ROOK2_COL, PIECE_ROW)),
-                new King(this, new Position(KING_COL, PIECE_ROW)),
-                new Queen(this, new Position(QUEEN_COL, PIECE_ROW))
-        ));
+        this.putPiece(PieceType.BISHOP, Bitboard.square(BISHOP1_COL, PIECE_ROW));
+        this.putPiece(PieceType.BISHOP, Bitboard.square(BISHOP2_COL, PIECE_ROW));
+        this.putPiece(PieceType.KNIGHT, Bitboard.square(KNIGHT1_COl, PIECE_ROW));
+        this.putPiece(PieceType.KNIGHT, Bitboard.square(KNIGHT2_COL, PIECE_ROW));
+        this.putPiece(PieceType.ROOK, Bitboard.square(ROOK1_COL, PIECE_ROW));
+        this.putPiece(PieceType.ROOK, Bitboard.square(ROOK2_COL, PIECE_ROW));
+        this.putPiece(PieceType.KING, Bitboard.square(KING_COL, PIECE_ROW));
+        this.putPiece(PieceType.QUEEN, Bitboard.square(QUEEN_COL, PIECE_ROW));
     }
 
-    public Player(boolean isBot, Set<Piece> pieces) {
+    /**
+     * Create the player with the given pieces
+     * @param isBot whether the player is bot or not
+     * @param bitboards the squares occupied by each type of the pieces, indexed by the ordinal of the piece type
+     */
+    public Player(boolean isBot, long[] bitboards) {
+        if (bitboards.length != PieceType.VALUES.length) {
+            throw new IllegalArgumentException("The number of bitboards must be " + PieceType.VALUES.length);
+        }
+
         this.isBot = isBot;
-        this.pieces = pieces;
+        this.bitboards = bitboards;
+        this.occupancy = Bitboard.EMPTY;
+        this.hash = 0L;
+        this.material = 0.0;
+        this.pawnHash = 0L;
+        for (PieceType type : PieceType.VALUES) {
+            long bitboard = bitboards[type.ordinal()];
+            this.occupancy |= bitboard;
+            this.material += Game.materialWeight(type) * Long.bitCount(bitboard);
+            for (; bitboard != 0; bitboard = Bitboard.withoutFirstSquare(bitboard)) {
+                long key = Zobrist.pieceKey(isBot, type, Bitboard.firstSquare(bitboard));
+                this.hash ^= key;
+                if (type == PieceType.PAWN) {
+                    this.pawnHash ^= key;
+                }
+            }
+        }
     }
 
     /**
@@ -64,13 +115,51 @@ public class Player implements Cloneable {
         return this.isBot;
     }
 
+    /**
+     * Get the squares occupied by the given type of the pieces
+     * @param type the type of the pieces
+     * @return the mask of the squares
+     */
+    public long getBitboard(PieceType type) {
+        return this.bitboards[type.ordinal()];
+    }
+
+    /**
+     * Get the squares occupied by any piece of the player
+     * @return the mask of the squares
+     */
+    public long getOccupancy() {
+        return this.occupancy;
+    }
+
+    /**
+     * Get the Zobrist hash of the pieces of the player
+     * @return the hash
+     */
+    public long getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Create the pieces of the given type
+     * @param type the type of the pieces
+     * @return the pieces
+     */
+    protected List<Piece> createPieces(PieceType type) {
+        List<Piece> pieces = new ArrayList<>();
+        for (long bitboard = this.getBitboard(type); bitboard != 0; bitboard = Bitboard.withoutFirstSquare(bitboard)) {
+            pieces.add(type.create(this, Bitboard.position(Bitboard.firstSquare(bitboard))));
+        }
+
+        return pieces;
+    }
+
     /**
      * Get alive pawns of the player
      * @return the pawns
      */
     protected Collection<Pawn> getPawns() {
-        return this.pieces.stream()
-                .filter(p -> p instanceof Pawn)
+        return this.createPieces(PieceType.PAWN).stream()
                 .map(p -> (Pawn) p)
                 .toList();
     }
@@ -80,7 +169,7 @@ public class Player implements Cloneable {
      * @return the number of pawns
      */
     public int countPawns() {
-        return this.getPawns().size();
+        return Long.bitCount(this.getBitboard(PieceType.PAWN));
     }
 
     /**
@@ -88,8 +177,7 @@ public class Player implements Cloneable {
      * @return the bishops
      */
     protected Collection<Bishop> getBishops() {
-        return this.pieces.stream()
-                .filter(p -> p instanceof Bishop)
+        return this.createPieces(PieceType.BISHOP).stream()
                 .map(p -> (Bishop) p)
                 .toList();
     }
@@ -99,7 +187,7 @@ public class Player implements Cloneable {
      * @return the number of bishops
      */
     public int countBishops() {
-        return this.getBishops().size();
+        return Long.bitCount(this.getBitboard(PieceType.BISHOP));
     }
 
     /**
@@ -107,8 +195,7 @@ public class Player implements Cloneable {
      * @return the knights
      */
     protected Collection<Knight> getKnights() {
-        return this.pieces.stream()
-                .filter(p -> p instanceof Knight)
+        return this.createPieces(PieceType.KNIGHT).stream()
                 .map(p -> (Knight) p)
                 .toList();
     }
@@ -118,7 +205,7 @@ public class Player implements Cloneable {
      * @return the number of knights
      */
     public int countKnights() {
-        return this.getKnights().size();
+        return Long.bitCount(this.getBitboard(PieceType.KNIGHT));
     }
 
     /**
@@ -126,8 +213,7 @@ public class Player implements Cloneable {
      * @return the rooks
      */
     protected Collection<Rook> getRooks() {
-        return this.pieces.stream()
-                .filter(p -> p instanceof Rook)
+        return this.createPieces(PieceType.ROOK).stream()
                 .map(p -> (Rook) p)
                 .toList();
     }
@@ -137,7 +223,7 @@ public class Player implements Cloneable {
      * @return the number of rooks
      */
     public int countRooks() {
-        return this.getRooks().size();
+        return Long.bitCount(this.getBitboard(PieceType.ROOK));
     }
 
     /**
@@ -145,8 +231,7 @@ public class Player implements Cloneable {
      * @return the queen
      */
     protected Collection<Queen> getQueens() {
-        return this.pieces.stream()
-                .filter(p -> p instanceof Queen)
+        return this.createPieces(PieceType.QUEEN).stream()
                 .map(p -> (Queen) p)
                 .toList();
     }
@@ -156,7 +241,7 @@ public class Player implements Cloneable {
      * @return the number of queens
      */
     public int countQueens() {
-        return this.getQueens().size();
+        return Long.bitCount(this.getBitboard(PieceType.QUEEN));
     }
 
     /**
@@ -164,8 +249,7 @@ public class Player implements Cloneable {
      * @return the king
      */
     protected Optional<King> getKing() {
-        return this.pieces.stream()
-                .filter(p -> p instanceof King)
+        return this.createPieces(PieceType.KING).stream()
                 .map(p -> (King) p)
                 .findAny();
     }
@@ -176,7 +260,23 @@ public class Player implements Cloneable {
      * @return the number of kings
      */
     public int countKings() {
-        return this.getKing().isPresent() ? 1 : 0;
+        return this.getBitboard(PieceType.KING) != 0 ? 1 : 0;
+    }
+
+    /**
+     * Check if the player has any piece other than the king and the pawns
+     * @return true if it has, false otherwise
+     */
+    public boolean hasNonPawnPieces() {
+        return (this.occupancy & ~(this.getBitboard(PieceType.KING) | this.getBitboard(PieceType.PAWN))) != 0;
+    }
+
+    /**
+     * Return the number of all alive pieces
+     * @return the number of pieces
+     */
+    public int countPieces() {
+        return Long.bitCount(this.occupancy);
     }
 
     /**
@@ -184,21 +284,42 @@ public class Player implements Cloneable {
      * @return the number
      */
     public int countDoubledPawns() {
-        List<Position> positions = this.getPawns().stream()
-                .map(Piece::getPosition)
-                .sorted(Comparator.comparing(Position::x))
-                .toList();
+        long pawns = this.getBitboard(PieceType.PAWN);
 
-        int count = 0;
-        int prevX = -1;
-        for (Position position : positions) {
-            if (position.x() == prevX) {
-                count += 1;
+        int numFiles = 0;
+        for (int x = 0; x < Bitboard.BOARD_SIZE; x++) {
+            if ((pawns & Bitboard.fileMask(x)) != 0) {
+                numFiles++;
             }
-            prevX = position.x();
         }
 
-        return count;
+        return Long.bitCount(pawns) - numFiles;
+    }
+
+    /**
+     * Get the weighted sum of the pieces other than the king. It is maintained incrementally as the pieces are put and
+     * removed.
+     * @return the material
+     */
+    public double getMaterial() {
+        return this.material;
+    }
+
+    /**
+     * Get the Zobrist hash of the pawns of the player only
+     * @return the hash
+     */
+    public long getPawnHash() {
+        return this.pawnHash;
+    }
+
+    /**
+     * Return the number of doubled pawns plus the number of isolated pawns, which only depend on the pawns of the
+     * player
+     * @return the number
+     */
+    public int countWeakPawns() {
+        return this.countDoubledPawns() + this.countIsolatedPawns();
     }
 
     /**
@@ -207,10 +328,10 @@ public class Player implements Cloneable {
      * @return the number
      */
     public int countBlockedPawns(Player opponent) {
-        return this.getPawns().stream()
-                .map(p -> new Position(p.getX(), this.isBot() ? p.getY()+1 : p.getY()-1))
-                .filter(p -> this.isOccupied(p) || opponent.isOccupied(p))
-                .toArray().length;
+        long pawns = this.getBitboard(PieceType.PAWN);
+        long squaresAhead = this.isBot() ? pawns << Bitboard.BOARD_SIZE : pawns >>> Bitboard.BOARD_SIZE;
+
+        return Long.bitCount(squaresAhead & (this.occupancy | opponent.occupancy));
     }
 
     /**
@@ -218,21 +339,22 @@ public class Player implements Cloneable {
      * @return the number
      */
     public int countIsolatedPawns() {
-        Collection<Pawn> alivePawns = this.getPawns();
+        long pawns = this.getBitboard(PieceType.PAWN);
 
         int count = 0;
-        for (Pawn p1 : alivePawns) {
-            boolean foundNeighbor = false;
-            for (Pawn p2 : alivePawns) {
-                if (p1 == p2) continue;
-
-                if (Math.abs(p1.getX() - p2.getX()) <= 1) {
-                    foundNeighbor = true;
-                    break;
-                }
+        for (long remaining = pawns; remaining != 0; remaining = Bitboard.withoutFirstSquare(remaining)) {
+            int square = Bitboard.firstSquare(remaining);
+            int x = Bitboard.x(square);
+
+            long neighborFiles = Bitboard.fileMask(x);
+            if (x > 0) {
+                neighborFiles |= Bitboard.fileMask(x - 1);
+            }
+            if (x < Bitboard.BOARD_SIZE - 1) {
+                neighborFiles |= Bitboard.fileMask(x + 1);
             }
 
-            if (!foundNeighbor) {
+            if ((pawns & neighborFiles & ~Bitboard.mask(square)) == 0) {
                 count += 1;
             }
         }
@@ -257,26 +379,97 @@ public class Player implements Cloneable {
      * @param position the position of the piece
      */
     public void addPiece(char icon, Position position) {
-        if (this.isOccupied(position)) {
+        if (!Position.isWithinBound(position)) {
+            throw new IllegalArgumentException(String.format("The position at (%s) is out of the board", position));
+        } else if (this.isOccupied(position)) {
             throw new IllegalArgumentException(String.format("The position at (%s) is already occupied", position));
         }
 
-        switch (icon) {
-            case Bishop.BLACK_ICON, Bishop.WHITE_ICON -> this.pieces.add(new Bishop(this, position));
-            case King.BLACK_ICON, King.WHITE_ICON -> this.pieces.add(new King(this, position));
-            case Knight.BLACK_ICON, Knight.WHITE_ICON -> this.pieces.add(new Knight(this, position));
-            case Pawn.BLACK_ICON, Pawn.WHITE_ICON -> this.pieces.add(new Pawn(this, position));
-            case Queen.BLACK_ICON, Queen.WHITE_ICON -> this.pieces.add(new Queen(this, position));
-            case Rook.BLACK_ICON, Rook.WHITE_ICON -> this.pieces.add(new Rook(this, position));
-            default -> throw new IllegalArgumentException(String.format("The icon %s is invalid", icon));
+        this.putPiece(PieceType.fromIcon(icon), Bitboard.square(position));
+    }
+
+    /**
+     * Put the piece of the given type to the given empty square
+     * @param type the type of the piece
+     * @param square the square
+     */
+    protected void putPiece(PieceType type, int square) {
+        long mask = Bitboard.mask(square);
+        this.bitboards[type.ordinal()] |= mask;
+        this.occupancy |= mask;
+        long key = Zobrist.pieceKey(this.isBot, type, square);
+        this.hash ^= key;
+        this.material += Game.materialWeight(type);
+        if (type == PieceType.PAWN) {
+            this.pawnHash ^= key;
+        }
+    }
+
+    /**
+     * Remove the piece of the given type from the given square
+     * @param type the type of the piece
+     * @param square the square
+     */
+    protected void removePiece(PieceType type, int square) {
+        long mask = ~Bitboard.mask(square);
+        this.bitboards[type.ordinal()] &= mask;
+        this.occupancy &= mask;
+        long key = Zobrist.pieceKey(this.isBot, type, square);
+        this.hash ^= key;
+        this.material -= Game.materialWeight(type);
+        if (type == PieceType.PAWN) {
+            this.pawnHash ^= key;
+        }
+    }
+
+    /**
+     * Move the piece of the given type to the given empty square
+     * @param type the type of the piece
+     * @param square the square of the piece
+     * @param newSquare the new square
+     */
+    protected void movePiece(PieceType type, int square, int newSquare) {
+        long mask = Bitboard.mask(square) | Bitboard.mask(newSquare);
+        this.bitboards[type.ordinal()] ^= mask;
+        this.occupancy ^= mask;
+        long key = Zobrist.pieceKey(this.isBot, type, square) ^ Zobrist.pieceKey(this.isBot, type, newSquare);
+        this.hash ^= key;
+        if (type == PieceType.PAWN) {
+            this.pawnHash ^= key;
         }
     }
 
+    /**
+     * Move the piece at the given position to the new position
+     * @param position the position of the piece
+     * @param newPosition the new position. Must be on the board and not occupied by any piece of the player
+     * @throws IllegalArgumentException when the player has no piece at the position or the new position is not valid
+     */
+    public void movePiece(Position position, Position newPosition) {
+        PieceType type = Position.isWithinBound(position) ? this.getTypeAt(Bitboard.square(position)) : null;
+        if (type == null) {
+            throw new IllegalArgumentException(String.format("A piece at (%s) not found", position));
+        }
+        if (!Position.isWithinBound(newPosition)) {
+            throw new IllegalArgumentException(String.format("The new position (%s) is not on the board", newPosition));
+        }
+        if (this.isOccupied(newPosition.x(), newPosition.y())) {
+            throw new IllegalArgumentException(String.format("The new position (%s) is occupied by a piece of the player", newPosition));
+        }
+
+        this.movePiece(type, Bitboard.square(position), Bitboard.square(newPosition));
+    }
+
     /**
      * Return all alive pieces of the player
      */
     public Collection<Piece> allPieces() {
-        return this.pieces;
+        List<Piece> pieces = new ArrayList<>();
+        for (PieceType type : PieceType.VALUES) {
+            pieces.addAll(this.createPieces(type));
+        }
+
+        return pieces;
     }
 
     /**
@@ -284,7 +477,35 @@ public class Player implements Cloneable {
      * @param position the position
      */
     public void killPieceAt(Position position) {
-        this.findPieceAt(position).ifPresent(this.pieces::remove);
+        if (!Position.isWithinBound(position)) {
+            return;
+        }
+
+        int square = Bitboard.square(position);
+        PieceType type = this.getTypeAt(square);
+        if (type != null) {
+            this.removePiece(type, square);
+        }
+    }
+
+    /**
+     * Get the type of the piece at the given square
+     * @param square the square
+     * @return the type, or null if the square is not occupied by any piece of the player
+     */
+    @Nullable
+    public PieceType getTypeAt(int square) {
+        if (!Bitboard.contains(this.occupancy, square)) {
+            return null;
+        }
+
+        for (PieceType type : PieceType.VALUES) {
+            if (Bitboard.contains(this.getBitboard(type), square)) {
+                return type;
+            }
+        }
+
+        return null;
     }
 
     /**
@@ -293,23 +514,25 @@ public class Player implements Cloneable {
      * @return the piece
      */
     public Optional<Piece> findPieceAt(Position position) {
-        return this.pieces.stream()
-                .filter(piece -> piece.getPosition().equals(position))
-                .findAny();
+        if (!Position.isWithinBound(position)) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(this.getTypeAt(Bitboard.square(position))).map(type -> type.create(this, position));
     }
 
     /**
      * Check if the given x and y are occupied by any piece of the player
      */
     public boolean isOccupied(int x, int y) {
-        return this.isOccupied(new Position(x, y));
+        return Position.isWithinBound(x, y) && Bitboard.contains(this.occupancy, Bitboard.square(x, y));
     }
 
     /**
      * Check if the given position is occupied by any piece of the player
      */
     public boolean isOccupied(Position position) {
-        return this.findPieceAt(position).isPresent();
+        return this.isOccupied(position.x(), position.y());
     }
 
     /**
@@ -317,22 +540,207 @@ public class Player implements Cloneable {
      * @return the actions
      */
     public Collection<Action> actions(Player opponent) {
-        List<Action> actions = new LinkedList<>();
+        int[] moves = new int[this.getMaxNumMoves()];
+        int numMoves = this.generateMoves(opponent, moves);
 
-        for (Piece piece : this.pieces) {
-            for (Position movement : piece.movements(opponent)) {
-                actions.add(new Action(piece, movement));
-            }
+        List<Action> actions = new ArrayList<>(numMoves);
+        for (int i = 0; i < numMoves; i++) {
+            actions.add(this.toAction(moves[i]));
         }
 
         return actions;
     }
 
+    /**
+     * Get the number of moves the player can have at most, so a buffer of this size can hold all moves of the player
+     * @return the number of moves
+     */
+    public int getMaxNumMoves() {
+        return this.countPieces() * MAX_MOVES_PER_PIECE;
+    }
+
+    /**
+     * Count all possible moves of the player with the popcounts of the attack masks, without generating them.
+     * The count is the same as the number of moves generateMoves writes.
+     * @param opponent the opponent
+     * @return the number of moves
+     */
+    public int countMoves(Player opponent) {
+        long occupancy = this.occupancy | opponent.occupancy;
+        long targets = ~this.occupancy;
+        int numMoves = this.countPawnMoves(opponent, occupancy);
+
+        for (long knights = this.getBitboard(PieceType.KNIGHT); knights != 0; knights = Bitboard.withoutFirstSquare(knights)) {
+            numMoves += Long.bitCount(Attacks.knight(Bitboard.firstSquare(knights)) & targets);
+        }
+        for (long bishops = this.getBitboard(PieceType.BISHOP); bishops != 0; bishops = Bitboard.withoutFirstSquare(bishops)) {
+            numMoves += Long.bitCount(Attacks.bishop(Bitboard.firstSquare(bishops), occupancy) & targets);
+        }
+        for (long rooks = this.getBitboard(PieceType.ROOK); rooks != 0; rooks = Bitboard.withoutFirstSquare(rooks)) {
+            numMoves += Long.bitCount(Attacks.rook(Bitboard.firstSquare(rooks), occupancy) & targets);
+        }
+        for (long queens = this.getBitboard(PieceType.QUEEN); queens != 0; queens = Bitboard.withoutFirstSquare(queens)) {
+            numMoves += Long.bitCount(Attacks.queen(Bitboard.firstSquare(queens), occupancy) & targets);
+        }
+        for (long kings = this.getBitboard(PieceType.KING); kings != 0; kings = Bitboard.withoutFirstSquare(kings)) {
+            numMoves += Long.bitCount(Attacks.king(Bitboard.firstSquare(kings)) & targets);
+        }
+
+        return numMoves;
+    }
+
+    /**
+     * Count the moves of all pawns at once by shifting the pawns towards the opponent
+     * @param opponent the opponent
+     * @param occupancy the squares occupied by any piece of both players
+     * @return the number of moves
+     */
+    protected int countPawnMoves(Player opponent, long occupancy) {
+        long pawns = this.getBitboard(PieceType.PAWN);
+        long empty = ~occupancy;
+        long notLeftFile = ~Bitboard.fileMask(0);
+        long notRightFile = ~Bitboard.fileMask(Bitboard.BOARD_SIZE - 1);
+
+        // the bot moves towards the bigger squares and the human towards the smaller ones
+        long oneForward, twoForward, leftCaptures, rightCaptures;
+        if (this.isBot) {
+            oneForward = (pawns << Bitboard.BOARD_SIZE) & empty;
+            twoForward = ((oneForward & Bitboard.rowMask(2)) << Bitboard.BOARD_SIZE) & empty;
+            leftCaptures = ((pawns & notLeftFile) << (Bitboard.BOARD_SIZE - 1)) & opponent.occupancy;
+            rightCaptures = ((pawns & notRightFile) << (Bitboard.BOARD_SIZE + 1)) & opponent.occupancy;
+        } else {
+            oneForward = (pawns >>> Bitboard.BOARD_SIZE) & empty;
+            twoForward = ((oneForward & Bitboard.rowMask(5)) >>> Bitboard.BOARD_SIZE) & empty;
+            leftCaptures = ((pawns & notLeftFile) >>> (Bitboard.BOARD_SIZE + 1)) & opponent.occupancy;
+            rightCaptures = ((pawns & notRightFile) >>> (Bitboard.BOARD_SIZE - 1)) & opponent.occupancy;
+        }
+
+        return Long.bitCount(oneForward) + Long.bitCount(twoForward) + Long.bitCount(leftCaptures)
+                + Long.bitCount(rightCaptures);
+    }
+
+    /**
+     * Write all possible moves of the player into the given buffer without allocating any object
+     * @param opponent the opponent
+     * @param moves the buffer. Must hold at least getMaxNumMoves moves
+     * @return the number of moves written
+     */
+    public int generateMoves(Player opponent, int[] moves) {
+        return this.generateMoves(opponent, moves, false);
+    }
+
+    /**
+     * Write the moves of the player that capture a piece or promote a pawn into the given buffer
+     * @param opponent the opponent
+     * @param moves the buffer. Must hold at least getMaxNumMoves moves
+     * @return the number of moves written
+     */
+    public int generateTacticalMoves(Player opponent, int[] moves) {
+        return this.generateMoves(opponent, moves, true);
+    }
+
+    /**
+     * Write the moves of the player into the given buffer
+     * @param opponent the opponent
+     * @param moves the buffer. Must hold at least getMaxNumMoves moves
+     * @param isTacticalOnly whether to write only the moves that capture a piece or promote a pawn
+     * @return the number of moves written
+     */
+    protected int generateMoves(Player opponent, int[] moves, boolean isTacticalOnly) {
+        long occupancy = this.occupancy | opponent.occupancy;
+        long targets = isTacticalOnly ? opponent.occupancy : ~this.occupancy;
+        int numMoves = 0;
+
+        for (long pawns = this.getBitboard(PieceType.PAWN); pawns != 0; pawns = Bitboard.withoutFirstSquare(pawns)) {
+            int square = Bitboard.firstSquare(pawns);
+            numMoves = this.addPawnMoves(opponent, square, occupancy, isTacticalOnly, moves, numMoves);
+        }
+
+        for (PieceType type : PieceType.VALUES) {
+            if (type == PieceType.PAWN) {
+                continue;
+            }
+
+            for (long pieces = this.getBitboard(type); pieces != 0; pieces = Bitboard.withoutFirstSquare(pieces)) {
+                int square = Bitboard.firstSquare(pieces);
+                long attacks = switch (type) {
+                    case KNIGHT -> Attacks.knight(square);
+                    case BISHOP -> Attacks.bishop(square, occupancy);
+                    case ROOK -> Attacks.rook(square, occupancy);
+                    case QUEEN -> Attacks.queen(square, occupancy);
+                    case KING -> Attacks.king(square);
+                    case PAWN -> Bitboard.EMPTY;
+                };
+
+                for (long newSquares = attacks & targets; newSquares != 0; newSquares = Bitboard.withoutFirstSquare(newSquares)) {
+                    int newSquare = Bitboard.firstSquare(newSquares);
+                    moves[numMoves++] = Move.of(square, newSquare, type, opponent.getTypeAt(newSquare), false);
+                }
+            }
+        }
+
+        return numMoves;
+    }
+
+    /**
+     * Write the moves of the pawn at the given square into the given buffer
+     * @param opponent the opponent
+     * @param square the square of the pawn
+     * @param occupancy the squares occupied by any piece of both players
+     * @param isTacticalOnly whether to write only the moves that capture a piece or promote the pawn
+     * @param moves the buffer
+     * @param numMoves the number of moves already in the buffer
+     * @return the number of moves in the buffer after the moves of the pawn are written
+     */
+    protected int addPawnMoves(Player opponent, int square, long occupancy, boolean isTacticalOnly, int[] moves,
+                               int numMoves) {
+        final int FORWARD = this.isBot ? Bitboard.BOARD_SIZE : -Bitboard.BOARD_SIZE;
+        final int INITIAL_ROW = this.isBot ? 1 : 6;
+        final int PROMOTABLE_ROW = this.isBot ? 7 : 0;
+
+        int y = Bitboard.y(square);
+        int oneForward = square + FORWARD;
+        if (y != PROMOTABLE_ROW && !Bitboard.contains(occupancy, oneForward)) {
+            boolean isPromotion = Bitboard.y(oneForward) == PROMOTABLE_ROW;
+            if (isPromotion || !isTacticalOnly) {
+                moves[numMoves++] = Move.of(square, oneForward, PieceType.PAWN, null, isPromotion);
+            }
+
+            int twoForward = oneForward + FORWARD;
+            if (!isTacticalOnly && y == INITIAL_ROW && !Bitboard.contains(occupancy, twoForward)) {
+                moves[numMoves++] = Move.of(square, twoForward, PieceType.PAWN, null, false);
+            }
+        }
+
+        for (long newSquares = Attacks.pawn(this.isBot, square) & opponent.occupancy; newSquares != 0;
+             newSquares = Bitboard.withoutFirstSquare(newSquares)) {
+            int newSquare = Bitboard.firstSquare(newSquares);
+            moves[numMoves++] = Move.of(square, newSquare, PieceType.PAWN, opponent.getTypeAt(newSquare),
+                    Bitboard.y(newSquare) == PROMOTABLE_ROW);
+        }
+
+        return numMoves;
+    }
+
+    /**
+     * Create the action of the given move of the player
+     * @param move the move
+     * @return the action
+     */
+    public Action toAction(int move) {
+        PieceType type = this.getTypeAt(Move.from(move));
+        if (type == null) {
+            throw new IllegalArgumentException(String.format("A piece at (%s) not found", Bitboard.position(Move.from(move))));
+        }
+
+        return new Action(type.create(this, Bitboard.position(Move.from(move))), Bitboard.position(Move.to(move)));
+    }
+
     @Override
     public Player clone() {
         try {
             Player newPlayer = (Player) super.clone();
-            this.pieces = this.pieces.stream().map(p -> p.clone(newPlayer)).collect(Collectors.toSet());
+            newPlayer.bitboards = this.bitboards.clone();
             return newPlayer;
         } catch (CloneNotSupportedException e) {
             throw logger.throwing(new RuntimeException(e));
@@ -0,0 +1,127 @@
+package game;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The hard limits of a decision, shared by all threads searching for it and by the caller. The caller can cancel the
+ * search from another thread, and the search checks the limits every few nodes, so a stopped search frees its threads
+ * within a few microseconds.
+ */
+public class SearchControl {
+
+    /**
+     * Why a search was stopped
+     */
+    public enum StopReason {
+        /**
+         * The caller cancelled the search, e.g. because the client has gone
+         */
+        CANCELLED,
+        /**
+         * The hard deadline has passed
+         */
+        DEADLINE,
+        /**
+         * The search has expanded more nodes than its budget
+         */
+        NODE_BUDGET
+    }
+
+    /**
+     * The time in System.nanoTime() after which the search stops, or null if it has no hard deadline
+     */
+    @Nullable
+    protected final Long deadline;
+
+    protected final long nodeBudget;
+
+    /**
+     * The number of nodes expanded by all threads of the search, as they report it
+     */
+    protected final AtomicLong numNodesExpanded;
+
+    protected final AtomicBoolean isCancelled;
+
+    protected final AtomicReference<StopReason> stopReason;
+
+    public SearchControl() {
+        this(null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create the control of a search starting now
+     * @param timeLimit the time after which the search stops even in the middle of an iteration, or null for no limit
+     * @param nodeBudget the number of nodes the search can expand. Must be positive
+     */
+    public SearchControl(@Nullable Duration timeLimit, long nodeBudget) {
+        if (nodeBudget <= 0) {
+            throw new IllegalArgumentException("nodeBudget must be positive. Given: " + nodeBudget);
+        }
+
+        this.deadline = timeLimit == null ? null : System.nanoTime() + timeLimit.toNanos();
+        this.nodeBudget = nodeBudget;
+        this.numNodesExpanded = new AtomicLong(0);
+        this.isCancelled = new AtomicBoolean(false);
+        this.stopReason = new AtomicReference<>(null);
+    }
+
+    /**
+     * Cancel the search. It stops at its next check.
+     */
+    public void cancel() {
+        this.isCancelled.set(true);
+    }
+
+    /**
+     * Check if the search was cancelled
+     * @return true if it was, false otherwise
+     */
+    public boolean isCancelled() {
+        return this.isCancelled.get();
+    }
+
+    /**
+     * Get the number of nodes the search has reported
+     * @return the number of nodes
+     */
+    public long getNumNodesExpanded() {
+        return this.numNodesExpanded.get();
+    }
+
+    /**
+     * Get why the search was stopped
+     * @return the reason, or null if the search was not stopped by this control
+     */
+    @Nullable
+    public StopReason getStopReason() {
+        return this.stopReason.get();
+    }
+
+    /**
+     * Report the nodes expanded since the last check, and check if the search should stop
+     * @param numNodesExpanded the number of nodes expanded since the last check
+     * @return true if it should, false otherwise
+     */
+    public boolean shouldStop(int numNodesExpanded) {
+        long totalNodesExpanded = this.numNodesExpanded.addAndGet(numNodesExpanded);
+
+        StopReason reason;
+        if (this.isCancelled.get()) {
+            reason = StopReason.CANCELLED;
+        } else if (totalNodesExpanded > this.nodeBudget) {
+            reason = StopReason.NODE_BUDGET;
+        } else if (this.deadline != null && System.nanoTime() - this.deadline > 0) {
+            reason = StopReason.DEADLINE;
+        } else {
+            return false;
+        }
+
+        this.stopReason.compareAndSet(null, reason);
+        return true;
+    }
+}
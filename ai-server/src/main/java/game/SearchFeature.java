@@ -0,0 +1,18 @@
+package game;
+
+/**
+ * The forward pruning features the bot can search with. They cut the nodes expanded by a decision at the risk of
+ * missing a move the full search would find.
+ */
+public enum SearchFeature {
+    /**
+     * Let the player to move pass, and prune the state if a shallower search still fails high for the player.
+     * It is not tried when the player has only the king and the pawns, where passing can be better than any move.
+     */
+    NULL_MOVE_PRUNING,
+    /**
+     * Search the quiet moves ordered late with one ply less, and search them again to the full depth only when they
+     * turn out better than the best move so far
+     */
+    LATE_MOVE_REDUCTIONS
+}
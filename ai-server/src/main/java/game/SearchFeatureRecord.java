@@ -0,0 +1,14 @@
+package game;
+
+import java.time.Duration;
+
+/**
+ * Record of what a search feature did during a decision. The nodes and the time of a search nested in the search of
+ * another feature are counted for both features.
+ * @param numSearches the number of shallower searches the feature made
+ * @param numCutoffs the number of the searches that were enough, so the state was pruned or the reduced move was
+ *                   not searched again to the full depth
+ * @param numNodesExpanded the number of nodes expanded by the searches, including the quiescence nodes
+ * @param timeTaken the time taken by the searches
+ */
+public record SearchFeatureRecord(int numSearches, int numCutoffs, int numNodesExpanded, Duration timeTaken) {}
@@ -0,0 +1,227 @@
+package game;
+
+import java.time.Duration;
+
+/**
+ * The counts of what a bot did during a search, kept by the searching thread without synchronization and summed up
+ * over the helpers when the decision is made. The time in the evaluation and the move generation is measured on one
+ * in TIMING_SAMPLE_INTERVAL calls and scaled up, so reading the clock doesn't slow down the hot path.
+ */
+public class SearchStatistics {
+
+    /**
+     * One in this many calls of the evaluation and the move generation is timed. Must be a power of two.
+     */
+    protected static final int TIMING_SAMPLE_INTERVAL = 16;
+
+    /**
+     * The number of states the search stopped at, being terminal or at the depth limit
+     */
+    protected long numLeafNodes;
+
+    protected long numTranspositionProbes;
+
+    protected long numTranspositionHits;
+
+    /**
+     * The number of states scored by the tablebase instead of being searched
+     */
+    protected long numTablebaseHits;
+
+    /**
+     * The number of states whose search was cut off by a move better than the window
+     */
+    protected long numCutoffs;
+
+    /**
+     * The number of the cutoffs made by the first move searched
+     */
+    protected long numFirstMoveCutoffs;
+
+    /**
+     * The deepest depth searched, including the quiescence search
+     */
+    protected int maxDepthReached;
+
+    protected long numEvaluations;
+
+    protected long sampledEvaluationNanos;
+
+    protected long numMoveGenerations;
+
+    protected long sampledMoveGenerationNanos;
+
+    /**
+     * The number of nodes of the last two completed iterations of the search, for the effective branching factor
+     */
+    protected long numIterationNodes;
+
+    protected long numPreviousIterationNodes;
+
+    /**
+     * Reset the counts for a new search
+     */
+    public void reset() {
+        this.numLeafNodes = 0;
+        this.numTranspositionProbes = 0;
+        this.numTranspositionHits = 0;
+        this.numTablebaseHits = 0;
+        this.numCutoffs = 0;
+        this.numFirstMoveCutoffs = 0;
+        this.maxDepthReached = 0;
+        this.numEvaluations = 0;
+        this.sampledEvaluationNanos = 0;
+        this.numMoveGenerations = 0;
+        this.sampledMoveGenerationNanos = 0;
+        this.numIterationNodes = 0;
+        this.numPreviousIterationNodes = 0;
+    }
+
+    /**
+     * Count a probe of the transposition table
+     * @param isHit whether the probe found the state or not
+     */
+    public void countTranspositionProbe(boolean isHit) {
+        this.numTranspositionProbes++;
+        if (isHit) {
+            this.numTranspositionHits++;
+        }
+    }
+
+    /**
+     * Count a state scored by the tablebase
+     */
+    public void countTablebaseHit() {
+        this.numTablebaseHits++;
+    }
+
+    /**
+     * Count a state the search stopped at
+     * @param depth the depth of the state
+     */
+    public void countLeafNode(int depth) {
+        this.numLeafNodes++;
+        this.reachDepth(depth);
+    }
+
+    /**
+     * Count a cutoff
+     * @param moveIndex the index of the move that made the cutoff in the searched order
+     */
+    public void countCutoff(int moveIndex) {
+        this.numCutoffs++;
+        if (moveIndex == 0) {
+            this.numFirstMoveCutoffs++;
+        }
+    }
+
+    /**
+     * Record that the search reached the given depth
+     * @param depth the depth
+     */
+    public void reachDepth(int depth) {
+        if (depth > this.maxDepthReached) {
+            this.maxDepthReached = depth;
+        }
+    }
+
+    /**
+     * Count a call of the evaluation
+     * @return true if the call should be timed, false otherwise
+     */
+    public boolean countEvaluation() {
+        return (++this.numEvaluations & (TIMING_SAMPLE_INTERVAL - 1)) == 0;
+    }
+
+    /**
+     * Add the time of a timed call of the evaluation
+     * @param nanos the time in nanoseconds
+     */
+    public void addEvaluationTime(long nanos) {
+        this.sampledEvaluationNanos += nanos;
+    }
+
+    /**
+     * Count a call of the move generation
+     * @return true if the call should be timed, false otherwise
+     */
+    public boolean countMoveGeneration() {
+        return (++this.numMoveGenerations & (TIMING_SAMPLE_INTERVAL - 1)) == 0;
+    }
+
+    /**
+     * Add the time of a timed call of the move generation
+     * @param nanos the time in nanoseconds
+     */
+    public void addMoveGenerationTime(long nanos) {
+        this.sampledMoveGenerationNanos += nanos;
+    }
+
+    /**
+     * Record the number of nodes of a completed iteration
+     * @param numNodes the number of nodes expanded by the iteration, including the quiescence nodes
+     */
+    public void completeIteration(long numNodes) {
+        this.numPreviousIterationNodes = this.numIterationNodes;
+        this.numIterationNodes = numNodes;
+    }
+
+    /**
+     * Add the counts of the given statistics to these. The iterations are not added, as the helpers search the
+     * depths at other times than the main thread.
+     * @param statistics the statistics of a helper
+     */
+    public void add(SearchStatistics statistics) {
+        this.numLeafNodes += statistics.numLeafNodes;
+        this.numTranspositionProbes += statistics.numTranspositionProbes;
+        this.numTranspositionHits += statistics.numTranspositionHits;
+        this.numTablebaseHits += statistics.numTablebaseHits;
+        this.numCutoffs += statistics.numCutoffs;
+        this.numFirstMoveCutoffs += statistics.numFirstMoveCutoffs;
+        this.maxDepthReached = Math.max(this.maxDepthReached, statistics.maxDepthReached);
+        this.numEvaluations += statistics.numEvaluations;
+        this.sampledEvaluationNanos += statistics.sampledEvaluationNanos;
+        this.numMoveGenerations += statistics.numMoveGenerations;
+        this.sampledMoveGenerationNanos += statistics.sampledMoveGenerationNanos;
+    }
+
+    /**
+     * Get the record of these statistics
+     * @param timeTaken the time taken by the search
+     * @param numNodesExpanded the number of nodes expanded by the search
+     * @param numQuiescenceNodesExpanded the number of nodes expanded by the quiescence search
+     * @return the record
+     */
+    public SearchStatisticsRecord toRecord(Duration timeTaken, long numNodesExpanded, long numQuiescenceNodesExpanded) {
+        double seconds = Math.max(timeTaken.toNanos() / 1e9, 1e-9);
+        return new SearchStatisticsRecord(
+                (numNodesExpanded + numQuiescenceNodesExpanded) / seconds,
+                numNodesExpanded,
+                this.numLeafNodes,
+                numQuiescenceNodesExpanded,
+                this.numTranspositionProbes,
+                this.numTranspositionHits,
+                ratio(this.numTranspositionHits, this.numTranspositionProbes),
+                this.numTablebaseHits,
+                this.numCutoffs,
+                this.numFirstMoveCutoffs,
+                ratio(this.numFirstMoveCutoffs, this.numCutoffs),
+                ratio(this.numIterationNodes, this.numPreviousIterationNodes),
+                this.maxDepthReached,
+                this.numEvaluations,
+                Duration.ofNanos(this.sampledEvaluationNanos * TIMING_SAMPLE_INTERVAL),
+                this.numMoveGenerations,
+                Duration.ofNanos(this.sampledMoveGenerationNanos * TIMING_SAMPLE_INTERVAL)
+        );
+    }
+
+    /**
+     * Divide the given counts
+     * @param numerator the numerator
+     * @param denominator the denominator
+     * @return the ratio, or 0 if the denominator is 0
+     */
+    protected static double ratio(long numerator, long denominator) {
+        return denominator == 0 ? 0.0 : (double) numerator / denominator;
+    }
+}
@@ -0,0 +1,46 @@
+package game;
+
+import java.time.Duration;
+
+/**
+ * Record of where a decision spent its search, summed up over all threads. The times of the evaluation and the move
+ * generation are estimated from a sample of the calls.
+ * @param nodesPerSecond the number of nodes expanded per second, including the quiescence nodes
+ * @param numInteriorNodes the number of states expanded by the search before the depth limit
+ * @param numLeafNodes the number of states the search stopped at, being terminal or at the depth limit
+ * @param numQuiescenceNodes the number of states expanded by the quiescence search
+ * @param numTranspositionProbes the number of probes of the transposition table
+ * @param numTranspositionHits the number of the probes that found the state
+ * @param transpositionHitRate the rate of the probes that found the state
+ * @param numTablebaseHits the number of states scored by the tablebase instead of being searched
+ * @param numCutoffs the number of states whose search was cut off by a move better than the window
+ * @param numFirstMoveCutoffs the number of the cutoffs made by the first move searched
+ * @param firstMoveCutoffRate the rate of the cutoffs made by the first move searched, which is the better the move
+ *                            ordering is
+ * @param effectiveBranchingFactor the nodes of the last completed iteration of the main thread divided by those of
+ *                                 the iteration before it, or 0 if there was only one iteration
+ * @param maxDepthReached the deepest depth searched, including the quiescence search
+ * @param numEvaluations the number of calls of the evaluation
+ * @param evaluationTime the time taken by the evaluation
+ * @param numMoveGenerations the number of calls of the move generation
+ * @param moveGenerationTime the time taken by the move generation
+ */
+public record SearchStatisticsRecord(
+        double nodesPerSecond,
+        long numInteriorNodes,
+        long numLeafNodes,
+        long numQuiescenceNodes,
+        long numTranspositionProbes,
+        long numTranspositionHits,
+        double transpositionHitRate,
+        long numTablebaseHits,
+        long numCutoffs,
+        long numFirstMoveCutoffs,
+        double firstMoveCutoffRate,
+        double effectiveBranchingFactor,
+        int maxDepthReached,
+        long numEvaluations,
+        Duration evaluationTime,
+        long numMoveGenerations,
+        Duration moveGenerationTime
+) {}
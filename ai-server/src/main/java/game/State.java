@@ -6,13 +6,12 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 import piece.*;
+import util.Bitboard;
 import util.Position;
 
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.stream.Stream;
 
 /**
  * The state of the chess game
@@ -23,6 +22,32 @@ public class State implements Cloneable {
 
     protected static final int BOARD_SIZE = 8;
 
+    protected static final int INITIAL_UNDO_STACK_CAPACITY = 64;
+
+    protected static final int UNDO_TO_SHIFT = 6;
+
+    protected static final int UNDO_MOVED_TYPE_SHIFT = 12;
+
+    protected static final int UNDO_CAPTURED_TYPE_SHIFT = 15;
+
+    protected static final int UNDO_PROMOTED_SHIFT = 18;
+
+    protected static final int UNDO_OUTCOME_SHIFT = 19;
+
+    protected static final int UNDO_SQUARE_MASK = 0x3F;
+
+    protected static final int UNDO_TYPE_MASK = 0x7;
+
+    protected static final int NO_CAPTURE = 0x7;
+
+    protected static final int OUTCOME_NONE = 0;
+
+    protected static final int OUTCOME_DRAW = 1;
+
+    protected static final int OUTCOME_BOT_WON = 2;
+
+    protected static final int OUTCOME_HUMAN_WON = 3;
+
     protected Player botPlayer;
 
     protected Player humanPlayer;
@@ -33,12 +58,37 @@ public class State implements Cloneable {
 
     protected Player winner;
 
+    /**
+     * The records of the moves made by makeMove that can be undone by unmakeMove, packed into ints
+     */
+    protected int[] undoStack;
+
+    protected int undoStackSize;
+
     public State() {
         this.botPlayer = new Player(true);
         this.humanPlayer = new Player(false);
         this.isBotTurn = true;
         this.isTerminal = false;
         this.winner = null;
+        this.undoStack = new int[INITIAL_UNDO_STACK_CAPACITY];
+        this.undoStackSize = 0;
+    }
+
+    /**
+     * Create the state of the given players
+     * @param botPlayer the bot player
+     * @param humanPlayer the human player
+     * @param isBotTurn whether it is a bot turn or not
+     */
+    protected State(Player botPlayer, Player humanPlayer, boolean isBotTurn) {
+        this.botPlayer = botPlayer;
+        this.humanPlayer = humanPlayer;
+        this.isBotTurn = isBotTurn;
+        this.isTerminal = false;
+        this.winner = null;
+        this.undoStack = new int[INITIAL_UNDO_STACK_CAPACITY];
+        this.undoStackSize = 0;
     }
 
     /**
@@ -73,6 +123,30 @@ public class State implements Cloneable {
         return !this.isBotTurn();
     }
 
+    /**
+     * Get the squares occupied by any piece of both players
+     * @return the mask of the squares
+     */
+    public long getOccupancy() {
+        return this.botPlayer.getOccupancy() | this.humanPlayer.getOccupancy();
+    }
+
+    /**
+     * Get the Zobrist hash of this state. It is maintained incrementally as the pieces move.
+     * @return the hash
+     */
+    public long getHash() {
+        return this.botPlayer.getHash() ^ this.humanPlayer.getHash() ^ (this.isBotTurn ? Zobrist.BOT_TURN_KEY : 0L);
+    }
+
+    /**
+     * Get the Zobrist hash of the pawns of both players only, which identifies the pawn structure of this state
+     * @return the hash
+     */
+    public long getPawnHash() {
+        return this.botPlayer.getPawnHash() ^ this.humanPlayer.getPawnHash();
+    }
+
     /**
      * Move on to the next player's turn
      */
@@ -109,12 +183,161 @@ public class State implements Cloneable {
         return this.winner == null ? Optional.empty() : Optional.of(this.winner);
     }
 
+    /**
+     * Update the outcome of the game after the given player has moved
+     * @param player the player who has moved
+     * @param opponent the opponent of the player
+     */
+    protected void updateOutcome(Player player, Player opponent) {
+        boolean isMyKingAlive = player.countKings() == 1;
+        boolean isOpponentKingAlive = opponent.countKings() == 1;
+
+        if (player.countPieces() == 1 && isMyKingAlive && opponent.countPieces() == 1 && isOpponentKingAlive) {
+            this.setOutcome(null);
+        } else if (!isMyKingAlive) {
+            this.setOutcome(opponent);
+        } else if (!isOpponentKingAlive) {
+            this.setOutcome(player);
+        }
+    }
+
+    /**
+     * Apply the given action of the current player to this state in place. The action can be undone by unmakeMove.
+     * A pawn reaching the last row is promoted to a queen.
+     * @param action the action
+     */
+    public void makeMove(Action action) {
+        this.makeMove(Bitboard.square(action.piece().getPosition()), Bitboard.square(action.newPosition()));
+    }
+
+    /**
+     * Apply the given move of the current player to this state in place. The move can be undone by unmakeMove.
+     * @param move the move packed by Move
+     */
+    public void makeMove(int move) {
+        this.makeMove(Move.from(move), Move.to(move));
+    }
+
+    /**
+     * Move the piece of the current player at the given square to the new square in place. The move can be undone
+     * by unmakeMove. A pawn reaching the last row is promoted to a queen.
+     * @param square the square of the piece
+     * @param newSquare the new square of the piece
+     */
+    public void makeMove(int square, int newSquare) {
+        Player player = this.isBotTurn ? this.botPlayer : this.humanPlayer;
+        Player opponent = this.isBotTurn ? this.humanPlayer : this.botPlayer;
+
+        PieceType movedType = player.getTypeAt(square);
+        if (movedType == null) {
+            throw new IllegalArgumentException(String.format("A piece at (%s) not found", Bitboard.position(square)));
+        }
+
+        PieceType capturedType = opponent.getTypeAt(newSquare);
+        if (capturedType != null) {
+            opponent.removePiece(capturedType, newSquare);
+        }
+
+        final int PROMOTABLE_ROW = this.isBotTurn ? 7 : 0;
+        boolean isPromoted = movedType == PieceType.PAWN && Bitboard.y(newSquare) == PROMOTABLE_ROW;
+        if (isPromoted) {
+            player.removePiece(PieceType.PAWN, square);
+            player.putPiece(PieceType.QUEEN, newSquare);
+        } else {
+            player.movePiece(movedType, square, newSquare);
+        }
+
+        this.pushUndo(square | newSquare << UNDO_TO_SHIFT
+                | movedType.ordinal() << UNDO_MOVED_TYPE_SHIFT
+                | (capturedType == null ? NO_CAPTURE : capturedType.ordinal()) << UNDO_CAPTURED_TYPE_SHIFT
+                | (isPromoted ? 1 : 0) << UNDO_PROMOTED_SHIFT
+                | this.getOutcomeCode() << UNDO_OUTCOME_SHIFT);
+
+        this.updateOutcome(player, opponent);
+        this.moveToNextPlayerTurn();
+    }
+
+    /**
+     * Undo the last move made by makeMove
+     */
+    public void unmakeMove() {
+        if (this.undoStackSize == 0) {
+            throw new IllegalStateException("There is no move to unmake.");
+        }
+
+        int record = this.undoStack[--this.undoStackSize];
+
+        this.moveToNextPlayerTurn();
+
+        Player player = this.isBotTurn ? this.botPlayer : this.humanPlayer;
+        Player opponent = this.isBotTurn ? this.humanPlayer : this.botPlayer;
+
+        int square = record & UNDO_SQUARE_MASK;
+        int newSquare = (record >>> UNDO_TO_SHIFT) & UNDO_SQUARE_MASK;
+        PieceType movedType = PieceType.VALUES[(record >>> UNDO_MOVED_TYPE_SHIFT) & UNDO_TYPE_MASK];
+        int capturedType = (record >>> UNDO_CAPTURED_TYPE_SHIFT) & UNDO_TYPE_MASK;
+
+        if (((record >>> UNDO_PROMOTED_SHIFT) & 1) == 1) {
+            player.removePiece(PieceType.QUEEN, newSquare);
+            player.putPiece(PieceType.PAWN, square);
+        } else {
+            player.movePiece(movedType, newSquare, square);
+        }
+
+        if (capturedType != NO_CAPTURE) {
+            opponent.putPiece(PieceType.VALUES[capturedType], newSquare);
+        }
+
+        this.restoreOutcome(record >>> UNDO_OUTCOME_SHIFT);
+    }
+
+    /**
+     * Push the given record to the undo stack
+     * @param record the record
+     */
+    protected void pushUndo(int record) {
+        if (this.undoStackSize == this.undoStack.length) {
+            this.undoStack = Arrays.copyOf(this.undoStack, this.undoStack.length * 2);
+        }
+
+        this.undoStack[this.undoStackSize++] = record;
+    }
+
+    /**
+     * Get the code of the current outcome to be stored in the undo stack
+     * @return the code
+     */
+    protected int getOutcomeCode() {
+        if (!this.isTerminal) {
+            return OUTCOME_NONE;
+        } else if (this.winner == null) {
+            return OUTCOME_DRAW;
+        }
+
+        return this.winner.isBot() ? OUTCOME_BOT_WON : OUTCOME_HUMAN_WON;
+    }
+
+    /**
+     * Restore the outcome from the code stored in the undo stack
+     * @param code the code
+     */
+    protected void restoreOutcome(int code) {
+        this.isTerminal = code != OUTCOME_NONE;
+        this.winner = switch (code) {
+            case OUTCOME_BOT_WON -> this.botPlayer;
+            case OUTCOME_HUMAN_WON -> this.humanPlayer;
+            default -> null;
+        };
+    }
+
     @Override
     public State clone() {
         try {
             State clone = (State) super.clone();
-            this.botPlayer = this.botPlayer.clone();
-            this.humanPlayer = this.humanPlayer.clone();
+            clone.botPlayer = this.botPlayer.clone();
+            clone.humanPlayer = this.humanPlayer.clone();
+            clone.restoreOutcome(this.getOutcomeCode());
+            clone.undoStack = this.undoStack.clone();
             return clone;
         } catch (CloneNotSupportedException e) {
             throw logger.throwing(new RuntimeException(e));
@@ -123,21 +346,23 @@ public class State implements Cloneable {
 
     @Override
     public String toString() {
-        StringBuilder builder = new StringBuilder();
-        char[][] board = new char[BOARD_SIZE][BOARD_SIZE];
-        for (char[] row : board) {
-            Arrays.fill(row, '□');
+        // each row is followed by a newline
+        char[] board = new char[BOARD_SIZE * (BOARD_SIZE + 1)];
+        Arrays.fill(board, '□');
+        for (int i = BOARD_SIZE; i < board.length; i += BOARD_SIZE + 1) {
+            board[i] = '\n';
         }
 
-        Stream.of(this.botPlayer.allPieces(), this.humanPlayer.allPieces())
-                .flatMap(Collection::stream)
-                .forEach(piece -> board[piece.getY()][piece.getX()] = piece.getIcon());
-
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            builder.append(board[i]).append('\n');
+        for (Player player : List.of(this.botPlayer, this.humanPlayer)) {
+            for (PieceType type : PieceType.VALUES) {
+                for (long bitboard = player.getBitboard(type); bitboard != 0; bitboard = Bitboard.withoutFirstSquare(bitboard)) {
+                    int square = Bitboard.firstSquare(bitboard);
+                    board[Bitboard.y(square) * (BOARD_SIZE + 1) + Bitboard.x(square)] = type.getIcon(player.isBot());
+                }
+            }
         }
 
-        return builder.toString();
+        return new String(board);
     }
 
     /**
@@ -145,9 +370,18 @@ public class State implements Cloneable {
      * @return the json
      */
     public ObjectNode toJSON() {
+        return this.toJSON(BoardFormat.UNICODE);
+    }
+
+    /**
+     * Convert this state to json with the board in the given format
+     * @param boardFormat the format of the board
+     * @return the json
+     */
+    public ObjectNode toJSON(BoardFormat boardFormat) {
         ObjectMapper mapper = new ObjectMapper();
         ObjectNode json = mapper.createObjectNode();
-        json.put("board", this.toString());
+        json.put("board", boardFormat.format(this));
 
         if (this.isTerminal()) {
             String winner = null;
@@ -167,31 +401,37 @@ public class State implements Cloneable {
      * @return the state
      */
     public static State parse(String board, boolean isBotTurn) {
-        Player botPlayer = new Player(true, new HashSet<>());
-        Player humanPlayer = new Player(false, new HashSet<>());
-
-        String[] lines = board.split("\n");
-
-        for (int i = 0; i < lines.length; i++) {
-            char[] chars = lines[i].toCharArray();
-            for (int j = 0; j < lines[i].length(); j++) {
-                char icon = chars[j];
-                Position position = new Position(j, i);
-
-                switch (icon) {
-                    case Bishop.BLACK_ICON, King.BLACK_ICON, Knight.BLACK_ICON, Pawn.BLACK_ICON, Queen.BLACK_ICON,
-                            Rook.BLACK_ICON -> botPlayer.addPiece(icon, position);
-                    case Bishop.WHITE_ICON, King.WHITE_ICON, Knight.WHITE_ICON, Pawn.WHITE_ICON, Queen.WHITE_ICON,
-                            Rook.WHITE_ICON -> humanPlayer.addPiece(icon, position);
+        long[] botBitboards = new long[PieceType.VALUES.length];
+        long[] humanBitboards = new long[PieceType.VALUES.length];
+
+        // the squares are filled straight into the bitboards, as each character is a distinct square
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < board.length(); i++) {
+            char icon = board.charAt(i);
+            if (icon == '\n') {
+                x = 0;
+                y++;
+                continue;
+            }
+
+            long[] bitboards = switch (icon) {
+                case Bishop.BLACK_ICON, King.BLACK_ICON, Knight.BLACK_ICON, Pawn.BLACK_ICON, Queen.BLACK_ICON,
+                        Rook.BLACK_ICON -> botBitboards;
+                case Bishop.WHITE_ICON, King.WHITE_ICON, Knight.WHITE_ICON, Pawn.WHITE_ICON, Queen.WHITE_ICON,
+                        Rook.WHITE_ICON -> humanBitboards;
+                default -> null;
+            };
+
+            if (bitboards != null) {
+                if (!Position.isWithinBound(x, y)) {
+                    throw new IllegalArgumentException(String.format("The position at (%s) is out of the board", new Position(x, y)));
                 }
+                bitboards[PieceType.fromIcon(icon).ordinal()] |= Bitboard.mask(Bitboard.square(x, y));
             }
+            x++;
         }
 
-        State state = new State();
-        state.botPlayer = botPlayer;
-        state.humanPlayer = humanPlayer;
-        state.isBotTurn = isBotTurn;
-
-        return state;
+        return new State(new Player(true, botBitboards), new Player(false, humanBitboards), isBotTurn);
     }
 }
@@ -0,0 +1,462 @@
+package game;
+
+import org.jetbrains.annotations.Nullable;
+import piece.PieceType;
+import util.Bitboard;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The endgame tablebase, which knows the result of every state with a few pieces left and how fast it is reached,
+ * read from the table files mapped into memory, so the search can score those states exactly instead of evaluating
+ * them.
+ * <p>
+ * A table holds the states of a material, named like "KQKR" with the pieces of the bot first, e.g. the bot has the king
+ * and a queen and the human has the king and a rook. The states of the material with the players swapped are read
+ * from the same table with the board flipped, as the rules are the same for both players. The file starts with the
+ * magic number and the number of pieces, followed by a byte per state: the number of plies until the king of the loser
+ * is captured, positive if the player to move wins and negative if it loses, or 0 for a draw. A state is at the index
+ * made of the player to move, 0 for the first player of the name, and the squares of the pieces in the order of the
+ * name, 6 bits each.
+ */
+public class Tablebase {
+
+    /**
+     * The magic number at the start of a table file, "TBL1"
+     */
+    public static final int MAGIC = 0x54424C31;
+
+    /**
+     * The number of bytes of the header
+     */
+    public static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    /**
+     * The extension of the table files
+     */
+    public static final String FILE_EXTENSION = ".tbl";
+
+    /**
+     * The largest number of pieces of a table, kings included
+     */
+    public static final int MAX_NUM_PIECES = 4;
+
+    /**
+     * The result of a probe of a state not in any table
+     */
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    /**
+     * The value a win loses per ply until the king is captured, so the search prefers the fastest win and the
+     * slowest loss. A win in the most plies a table can hold is still worth more than any evaluation.
+     */
+    protected static final double DISTANCE_WEIGHT = 0.5;
+
+    /**
+     * The types of the pieces other than the king in the order of the names and the indices of the tables
+     */
+    protected static final PieceType[] NON_KING_TYPES = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP,
+            PieceType.KNIGHT, PieceType.PAWN};
+
+    /**
+     * The number of bits of a square in an index
+     */
+    protected static final int SQUARE_BITS = 6;
+
+    /**
+     * The XOR of a square that flips its row, e.g. from the row 1 to the row 6
+     */
+    protected static final int FLIP = Bitboard.NUM_SQUARES - Bitboard.BOARD_SIZE;
+
+    /**
+     * The number of bits of the count of a type in a material
+     */
+    protected static final int COUNT_BITS = 4;
+
+    /**
+     * The states of each table, by the material, read with the absolute gets only, so the buffers can be shared by
+     * threads
+     */
+    protected final Map<Long, ByteBuffer> tables;
+
+    protected final int maxNumPieces;
+
+    protected Tablebase(Map<Long, ByteBuffer> tables, int maxNumPieces) {
+        this.tables = tables;
+        this.maxNumPieces = maxNumPieces;
+    }
+
+    /**
+     * Create the tablebase with no tables
+     * @return the tablebase
+     */
+    public static Tablebase empty() {
+        return new Tablebase(Map.of(), 0);
+    }
+
+    /**
+     * Map the table files in the given directory into memory
+     * @param directory the directory of the table files, named by their material
+     * @return the tablebase
+     * @throws IOException when a file cannot be read or is not a table
+     */
+    public static Tablebase open(Path directory) throws IOException {
+        Map<Long, ByteBuffer> tables = new HashMap<>();
+        int maxNumPieces = 0;
+
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory, "*" + FILE_EXTENSION)) {
+            for (Path path : paths) {
+                String fileName = path.getFileName().toString();
+                long material = parseMaterial(fileName.substring(0, fileName.length() - FILE_EXTENSION.length()));
+                int numPieces = countPieces(material);
+
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    long size = channel.size();
+                    if (size != HEADER_SIZE + (long) numStates(numPieces)) {
+                        throw new IOException(String.format("The table %s must have %d bytes. Given: %d", path,
+                                HEADER_SIZE + (long) numStates(numPieces), size));
+                    }
+
+                    // the mapping stays valid after the channel is closed
+                    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    if (buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != numPieces) {
+                        throw new IOException("The file " + path + " is not a table of " + numPieces + " pieces");
+                    }
+
+                    tables.put(material, buffer.slice(HEADER_SIZE, numStates(numPieces)));
+                    maxNumPieces = Math.max(maxNumPieces, numPieces);
+                }
+            }
+        }
+
+        return new Tablebase(tables, maxNumPieces);
+    }
+
+    /**
+     * Get the number of tables of this tablebase
+     * @return the number of tables
+     */
+    public int size() {
+        return this.tables.size();
+    }
+
+    /**
+     * Get the number of pieces of the largest table
+     * @return the number of pieces, kings included, or 0 if there is no table
+     */
+    public int getMaxNumPieces() {
+        return this.maxNumPieces;
+    }
+
+    /**
+     * Get the value of the given state for the search
+     * @param state a non-terminal state
+     * @return the value, or NaN if the state is not in any table
+     */
+    public double probe(State state) {
+        if (Long.bitCount(state.getBotPlayer().occupancy | state.getHumanPlayer().occupancy) > this.maxNumPieces) {
+            return Double.NaN;
+        }
+
+        int distance = this.probeDistance(state.getBotPlayer().bitboards, state.getHumanPlayer().bitboards,
+                state.isBotTurn());
+        return distance == NOT_FOUND ? Double.NaN : value(distance, state.isBotTurn());
+    }
+
+    /**
+     * Find the result of the state of the given pieces
+     * @param botBitboards the squares occupied by each type of the pieces of the bot
+     * @param humanBitboards the squares occupied by each type of the pieces of the human
+     * @param isBotTurn whether the bot is to move or not
+     * @return the number of plies until the king of the loser is captured, positive if the player to move wins and
+     * negative if it loses, 0 for a draw, or NOT_FOUND if the state is not in any table
+     */
+    public int probeDistance(long[] botBitboards, long[] humanBitboards, boolean isBotTurn) {
+        long material = material(botBitboards, humanBitboards);
+        int numPieces = countPieces(material);
+        if (numPieces > this.maxNumPieces || !hasKings(material)) {
+            return NOT_FOUND;
+        }
+
+        ByteBuffer table = this.tables.get(material);
+        if (table != null) {
+            return table.get(index(botBitboards, humanBitboards, isBotTurn, 0));
+        }
+
+        // the state with the players swapped and the board flipped has the same result
+        table = this.tables.get(swapPlayers(material));
+        if (table != null) {
+            return table.get(index(humanBitboards, botBitboards, !isBotTurn, FLIP));
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * Select the move of the player to move in the given state that wins the fastest, or that draws, or that loses the
+     * slowest
+     * @param state a non-terminal state
+     * @return the move made by the move generator, or Move.NONE if the state or one of the states after its moves is
+     * not in any table
+     */
+    public int selectMove(State state) {
+        if (Double.isNaN(this.probe(state))) {
+            return Move.NONE;
+        }
+
+        Player player = state.isBotTurn() ? state.getBotPlayer() : state.getHumanPlayer();
+        Player opponent = state.isBotTurn() ? state.getHumanPlayer() : state.getBotPlayer();
+        int[] moves = new int[player.getMaxNumMoves()];
+        int numMoves = player.generateMoves(opponent, moves);
+
+        State nextState = state.clone();
+        int bestMove = Move.NONE;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numMoves; i++) {
+            nextState.makeMove(moves[i]);
+            double value = nextState.isTerminal() ? utility(nextState) : this.probe(nextState);
+            nextState.unmakeMove();
+
+            if (Double.isNaN(value)) {
+                return Move.NONE;
+            }
+
+            // the values are for the bot, so the human picks the smallest one
+            double playerValue = state.isBotTurn() ? value : -value;
+            if (playerValue > bestValue) {
+                bestValue = playerValue;
+                bestMove = moves[i];
+            }
+        }
+
+        return bestMove;
+    }
+
+    /**
+     * Get the value of the given result for the search. A win is worth less than the capture of the king by a weight
+     * per ply, so the fastest win is the best.
+     * @param distance the result probed from a table
+     * @param isBotTurn whether the bot is to move or not
+     * @return the value for the bot
+     */
+    public static double value(int distance, boolean isBotTurn) {
+        if (distance == 0) {
+            return 0.0;
+        }
+
+        double value = Game.MINIMAX_VALUE_RANGE - Math.abs(distance) * DISTANCE_WEIGHT;
+        return (distance > 0) == isBotTurn ? value : -value;
+    }
+
+    /**
+     * Get the value of the given terminal state, the same as Game.utility
+     * @param state a terminal state
+     * @return the value for the bot
+     */
+    protected static double utility(State state) {
+        return state.getWinner().map(winner -> winner.isBot() ? Game.MINIMAX_VALUE_RANGE : -Game.MINIMAX_VALUE_RANGE)
+                .orElse(0.0);
+    }
+
+    /**
+     * Get the number of states of a table of the given number of pieces
+     * @param numPieces the number of pieces, kings included
+     * @return the number of states
+     */
+    protected static int numStates(int numPieces) {
+        return 2 << SQUARE_BITS * numPieces;
+    }
+
+    /**
+     * Get the index of the state of the given pieces
+     * @param firstBitboards the squares occupied by each type of the pieces of the first player of the table
+     * @param secondBitboards the squares occupied by each type of the pieces of the second player of the table
+     * @param isFirstTurn whether the first player is to move or not
+     * @param flip FLIP to flip the rows of the squares, 0 otherwise
+     * @return the index
+     */
+    protected static int index(long[] firstBitboards, long[] secondBitboards, boolean isFirstTurn, int flip) {
+        int index = isFirstTurn ? 0 : 1;
+        index = appendSquares(index, firstBitboards, flip);
+        return appendSquares(index, secondBitboards, flip);
+    }
+
+    /**
+     * Append the squares of the pieces of a player to the given index, the king first
+     * @param index the index
+     * @param bitboards the squares occupied by each type of the pieces of the player
+     * @param flip FLIP to flip the rows of the squares, 0 otherwise
+     * @return the index
+     */
+    protected static int appendSquares(int index, long[] bitboards, int flip) {
+        index = index << SQUARE_BITS | (Bitboard.firstSquare(bitboards[PieceType.KING.ordinal()]) ^ flip);
+        for (PieceType type : NON_KING_TYPES) {
+            for (long pieces = bitboards[type.ordinal()]; pieces != 0; pieces = Bitboard.withoutFirstSquare(pieces)) {
+                index = index << SQUARE_BITS | (Bitboard.firstSquare(pieces) ^ flip);
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Get the material of the given pieces, which holds the number of each type of the pieces of each player in
+     * COUNT_BITS bits, the bot first
+     * @param botBitboards the squares occupied by each type of the pieces of the bot
+     * @param humanBitboards the squares occupied by each type of the pieces of the human
+     * @return the material
+     */
+    protected static long material(long[] botBitboards, long[] humanBitboards) {
+        long material = 0L;
+        for (PieceType type : PieceType.VALUES) {
+            material |= (long) Long.bitCount(botBitboards[type.ordinal()]) << countShift(true, type);
+            material |= (long) Long.bitCount(humanBitboards[type.ordinal()]) << countShift(false, type);
+        }
+
+        return material;
+    }
+
+    /**
+     * Get the shift of the count of the given type in a material
+     * @param isBot whether the pieces are of the bot or not
+     * @param type the type
+     * @return the shift
+     */
+    protected static int countShift(boolean isBot, PieceType type) {
+        return COUNT_BITS * ((isBot ? 0 : PieceType.VALUES.length) + type.ordinal());
+    }
+
+    /**
+     * Get the number of the pieces of the given type in the given material
+     * @param material the material
+     * @param isBot whether the pieces are of the bot or not
+     * @param type the type
+     * @return the number
+     */
+    protected static int count(long material, boolean isBot, PieceType type) {
+        return (int) (material >>> countShift(isBot, type)) & ((1 << COUNT_BITS) - 1);
+    }
+
+    /**
+     * Get the number of pieces of the given material
+     * @param material the material
+     * @return the number of pieces, kings included
+     */
+    protected static int countPieces(long material) {
+        int numPieces = 0;
+        for (PieceType type : PieceType.VALUES) {
+            numPieces += count(material, true, type) + count(material, false, type);
+        }
+
+        return numPieces;
+    }
+
+    /**
+     * Check if each player of the given material has the king
+     * @param material the material
+     * @return true if it has, false otherwise
+     */
+    protected static boolean hasKings(long material) {
+        return count(material, true, PieceType.KING) == 1 && count(material, false, PieceType.KING) == 1;
+    }
+
+    /**
+     * Get the material with the pieces of the players swapped
+     * @param material the material
+     * @return the swapped material
+     */
+    protected static long swapPlayers(long material) {
+        int humanShift = countShift(false, PieceType.VALUES[0]);
+        return material >>> humanShift | (material & ((1L << humanShift) - 1)) << humanShift;
+    }
+
+    /**
+     * Get the name of the given material, e.g. KQKR for the king and a queen of the bot and the king and a rook of the
+     * human
+     * @param material the material
+     * @return the name
+     */
+    public static String materialName(long material) {
+        StringBuilder name = new StringBuilder();
+        for (boolean isBot : new boolean[]{true, false}) {
+            name.append(letter(PieceType.KING));
+            for (PieceType type : NON_KING_TYPES) {
+                name.append(String.valueOf(letter(type)).repeat(count(material, isBot, type)));
+            }
+        }
+
+        return name.toString();
+    }
+
+    /**
+     * Parse the given name of a material
+     * @param name the name, e.g. KQKR
+     * @return the material
+     * @throws IllegalArgumentException when the name is not of a material with the king of each player and at most
+     * MAX_NUM_PIECES pieces
+     */
+    public static long parseMaterial(String name) {
+        int humanKing = name.indexOf(letter(PieceType.KING), 1);
+        if (name.isEmpty() || name.charAt(0) != letter(PieceType.KING) || humanKing < 0) {
+            throw new IllegalArgumentException("The material must start with the king of each player. Given: " + name);
+        }
+
+        long material = 0L;
+        for (int i = 0; i < name.length(); i++) {
+            boolean isBot = i < humanKing;
+            PieceType type = typeOf(name.charAt(i));
+            if (type == null || (type == PieceType.KING && i != 0 && i != humanKing)) {
+                throw new IllegalArgumentException(String.format("The material %s has an invalid piece %s", name, name.charAt(i)));
+            }
+
+            material += 1L << countShift(isBot, type);
+        }
+
+        if (countPieces(material) > MAX_NUM_PIECES) {
+            throw new IllegalArgumentException(String.format("The material cannot have more than %d pieces. Given: %s",
+                    MAX_NUM_PIECES, name));
+        }
+
+        return material;
+    }
+
+    /**
+     * Get the letter of the given type in the names of the materials
+     * @param type the type
+     * @return the letter
+     */
+    protected static char letter(PieceType type) {
+        return switch (type) {
+            case KING -> 'K';
+            case QUEEN -> 'Q';
+            case ROOK -> 'R';
+            case BISHOP -> 'B';
+            case KNIGHT -> 'N';
+            case PAWN -> 'P';
+        };
+    }
+
+    /**
+     * Find the type of the given letter in the names of the materials
+     * @param letter the letter
+     * @return the type, or null if the letter is not of a type
+     */
+    @Nullable
+    protected static PieceType typeOf(char letter) {
+        for (PieceType type : PieceType.VALUES) {
+            if (letter(type) == letter) {
+                return type;
+            }
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,625 @@
+package game;
+
+import piece.PieceType;
+import util.Attacks;
+import util.Bitboard;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Generate the tables of the tablebase by the retrograde analysis. The rules are those of the game: the capture of
+ * the king ends the game, the bare kings draw and a pawn reaching the last row is promoted to a queen. There is no
+ * check, castling or en passant.
+ * <p>
+ * The states of a table are first scored by their moves that leave the table, which capture the king, capture another
+ * piece or promote a pawn, by probing the smaller tables generated before. Then the results are found a ply at a time:
+ * the states that can move to a state lost in the previous ply are won, and the states whose moves all lead to won
+ * states are lost once the last of them is found. The states never found are draws.
+ */
+public class TablebaseGenerator {
+
+    /**
+     * The result of the moves that leave the table of a state with no such move
+     */
+    protected static final byte NO_RESULT = Byte.MIN_VALUE;
+
+    /**
+     * The number of plies of the longest result a table holds, so a result one ply longer by leaving the table still
+     * fits in a byte and is never NO_RESULT
+     */
+    protected static final int MAX_DISTANCE = Byte.MAX_VALUE - 1;
+
+    /**
+     * The tables generated so far, probed for the moves leaving the table being generated
+     */
+    protected Tablebase tablebase;
+
+    protected final Path directory;
+
+    /**
+     * The types of the pieces of the table being generated, in the order of its index
+     */
+    protected PieceType[] types;
+
+    /**
+     * Whether each piece of the table being generated is of the bot
+     */
+    protected boolean[] isBotPieces;
+
+    /**
+     * The found result of each state, in the format of the table files
+     */
+    protected byte[] distances;
+
+    /**
+     * The number of the moves within the table of each state that are not yet found to be lost for the player to move
+     */
+    protected byte[] numMoves;
+
+    /**
+     * The best result of the moves of each state that leave the table, or NO_RESULT
+     */
+    protected byte[] exitResults;
+
+    /**
+     * Create the generator writing the tables to the given directory. The tables already in the directory are probed
+     * @param directory the directory
+     * @throws IOException when the tables in the directory cannot be read
+     */
+    public TablebaseGenerator(Path directory) throws IOException {
+        this.directory = directory;
+        this.tablebase = Tablebase.open(directory);
+    }
+
+    /**
+     * Get the materials of the tables of up to the given number of pieces in the order they must be generated, so the
+     * tables a table leaves to are generated before it: the fewer pieces first, then the fewer pawns first. Only one of
+     * a material and the material with the players swapped is included, the one with the stronger bot.
+     * @param maxNumPieces the number of pieces, kings included. Must be between 3 and MAX_NUM_PIECES
+     * @return the materials
+     */
+    public static List<Long> materials(int maxNumPieces) {
+        if (maxNumPieces < 3 || maxNumPieces > Tablebase.MAX_NUM_PIECES) {
+            throw new IllegalArgumentException(String.format("maxNumPieces must be between 3 and %d. Given: %d",
+                    Tablebase.MAX_NUM_PIECES, maxNumPieces));
+        }
+
+        List<Long> materials = new ArrayList<>();
+        for (int numPieces = 3; numPieces <= maxNumPieces; numPieces++) {
+            List<Long> materialsOfPieces = new ArrayList<>();
+            for (int numBotPieces = numPieces - 2; numBotPieces >= 0; numBotPieces--) {
+                for (String botPieces : pieceSets(numBotPieces, 0)) {
+                    for (String humanPieces : pieceSets(numPieces - 2 - numBotPieces, 0)) {
+                        if (comparePieces(botPieces, humanPieces) >= 0) {
+                            materialsOfPieces.add(Tablebase.parseMaterial("K" + botPieces + "K" + humanPieces));
+                        }
+                    }
+                }
+            }
+
+            materialsOfPieces.sort(Comparator.comparingInt(material -> Tablebase.count(material, true, PieceType.PAWN)
+                    + Tablebase.count(material, false, PieceType.PAWN)));
+            materials.addAll(materialsOfPieces);
+        }
+
+        return materials;
+    }
+
+    /**
+     * Get the sets of the given number of pieces other than the king, by their letters from the strongest
+     * @param numPieces the number of pieces
+     * @param firstType the index in NON_KING_TYPES of the strongest type a set can have
+     * @return the sets
+     */
+    protected static List<String> pieceSets(int numPieces, int firstType) {
+        if (numPieces == 0) {
+            return List.of("");
+        }
+
+        List<String> pieceSets = new ArrayList<>();
+        for (int i = firstType; i < Tablebase.NON_KING_TYPES.length; i++) {
+            for (String rest : pieceSets(numPieces - 1, i)) {
+                pieceSets.add(Tablebase.letter(Tablebase.NON_KING_TYPES[i]) + rest);
+            }
+        }
+
+        return pieceSets;
+    }
+
+    /**
+     * Compare the strength of the given sets of pieces: the more pieces are the stronger, then the stronger pieces
+     * @param pieces the letters of a set from the strongest
+     * @param otherPieces the letters of the other set from the strongest
+     * @return positive if the set is stronger, negative if it is weaker or 0 if they are the same
+     */
+    protected static int comparePieces(String pieces, String otherPieces) {
+        if (pieces.length() != otherPieces.length()) {
+            return Integer.compare(pieces.length(), otherPieces.length());
+        }
+
+        for (int i = 0; i < pieces.length(); i++) {
+            int strength = typeIndex(pieces.charAt(i));
+            int otherStrength = typeIndex(otherPieces.charAt(i));
+            if (strength != otherStrength) {
+                return Integer.compare(otherStrength, strength);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Get the index in NON_KING_TYPES of the type of the given letter
+     * @param letter the letter
+     * @return the index, the smaller the stronger
+     */
+    protected static int typeIndex(char letter) {
+        return Arrays.asList(Tablebase.NON_KING_TYPES).indexOf(Tablebase.typeOf(letter));
+    }
+
+    /**
+     * Generate the table of the given material and write it to the directory. The tables it leaves to must be in the
+     * directory already
+     * @param material the material
+     * @return the number of plies of the longest result in the table
+     * @throws IOException when the table cannot be written
+     */
+    public int generate(long material) throws IOException {
+        this.setUpPieces(material);
+
+        int numStates = Tablebase.numStates(this.types.length);
+        this.distances = new byte[numStates];
+        this.numMoves = new byte[numStates];
+        this.exitResults = new byte[numStates];
+        Arrays.fill(this.exitResults, NO_RESULT);
+
+        int[] squares = new int[this.types.length];
+        int maxExitDistance = 0;
+        for (int index = 0; index < numStates; index++) {
+            if (this.decode(index, squares)) {
+                this.scoreExits(index, squares);
+                if (this.exitResults[index] != NO_RESULT) {
+                    maxExitDistance = Math.max(maxExitDistance, Math.abs(this.exitResults[index]));
+                }
+            }
+        }
+
+        int[] predecessors = new int[this.types.length * Player.MAX_MOVES_PER_PIECE];
+        int maxDistance = 0;
+        for (int distance = 1; ; distance++) {
+            if (distance > MAX_DISTANCE) {
+                throw new IllegalStateException(String.format("The table %s has a result longer than %d plies",
+                        Tablebase.materialName(material), MAX_DISTANCE));
+            }
+
+            boolean isFound = false;
+            for (int index = 0; index < numStates; index++) {
+                byte found = this.distances[index];
+                if (found == 0) {
+                    // won by leaving the table, or lost by it once all moves within the table are found to lose
+                    byte exitResult = this.exitResults[index];
+                    if (exitResult == distance || (exitResult == -distance && this.numMoves[index] == 0)) {
+                        this.distances[index] = exitResult;
+                        isFound = true;
+                    }
+                } else if (found == -(distance - 1) || found == distance - 1) {
+                    this.decode(index, squares);
+                    int numPredecessors = this.generatePredecessors(index, squares, predecessors);
+                    for (int i = 0; i < numPredecessors; i++) {
+                        isFound |= found < 0
+                                ? this.foundWin(predecessors[i], distance)
+                                : this.foundLosingMove(predecessors[i], distance);
+                    }
+                }
+            }
+
+            if (isFound) {
+                maxDistance = distance;
+            } else if (distance >= maxExitDistance) {
+                break;
+            }
+        }
+
+        this.write(material);
+        return maxDistance;
+    }
+
+    /**
+     * Set up the pieces of the table of the given material in the order of its index
+     * @param material the material
+     */
+    protected void setUpPieces(long material) {
+        int numPieces = Tablebase.countPieces(material);
+        this.types = new PieceType[numPieces];
+        this.isBotPieces = new boolean[numPieces];
+
+        int piece = 0;
+        for (boolean isBot : new boolean[]{true, false}) {
+            this.isBotPieces[piece] = isBot;
+            this.types[piece++] = PieceType.KING;
+            for (PieceType type : Tablebase.NON_KING_TYPES) {
+                for (int i = 0; i < Tablebase.count(material, isBot, type); i++) {
+                    this.isBotPieces[piece] = isBot;
+                    this.types[piece++] = type;
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode the squares of the pieces of the given state
+     * @param index the index of the state
+     * @param squares the buffer of the squares
+     * @return true if the state is possible, false if two pieces are on the same square or a pawn is on the first or
+     * the last row
+     */
+    protected boolean decode(int index, int[] squares) {
+        long occupancy = Bitboard.EMPTY;
+        for (int i = 0; i < squares.length; i++) {
+            int square = (index >>> Tablebase.SQUARE_BITS * (squares.length - 1 - i)) & (Bitboard.NUM_SQUARES - 1);
+            squares[i] = square;
+
+            if (Bitboard.contains(occupancy, square)) {
+                return false;
+            }
+            occupancy |= Bitboard.mask(square);
+
+            int y = Bitboard.y(square);
+            if (this.types[i] == PieceType.PAWN && (y == 0 || y == Bitboard.BOARD_SIZE - 1)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the index of the state of the given squares
+     * @param squares the squares of the pieces
+     * @param isBotTurn whether the bot is to move or not
+     * @return the index
+     */
+    protected int encode(int[] squares, boolean isBotTurn) {
+        int index = isBotTurn ? 0 : 1;
+        for (int square : squares) {
+            index = index << Tablebase.SQUARE_BITS | square;
+        }
+
+        return index;
+    }
+
+    /**
+     * Check if the bot is to move in the given state
+     * @param index the index of the state
+     * @return true if it is, false otherwise
+     */
+    protected boolean isBotTurn(int index) {
+        return index >>> Tablebase.SQUARE_BITS * this.types.length == 0;
+    }
+
+    /**
+     * Score the moves of the given state that leave the table and count the others
+     * @param index the index of the state
+     * @param squares the squares of the pieces
+     */
+    protected void scoreExits(int index, int[] squares) {
+        boolean isBotTurn = this.isBotTurn(index);
+        long occupancy = Bitboard.EMPTY;
+        long opponentOccupancy = Bitboard.EMPTY;
+        for (int i = 0; i < squares.length; i++) {
+            occupancy |= Bitboard.mask(squares[i]);
+            if (this.isBotPieces[i] != isBotTurn) {
+                opponentOccupancy |= Bitboard.mask(squares[i]);
+            }
+        }
+
+        int numMoves = 0;
+        byte exitResult = NO_RESULT;
+        for (int piece = 0; piece < squares.length; piece++) {
+            if (this.isBotPieces[piece] != isBotTurn) {
+                continue;
+            }
+
+            int square = squares[piece];
+            long newSquares = this.types[piece] == PieceType.PAWN
+                    ? this.pawnMoves(isBotTurn, square, occupancy, opponentOccupancy)
+                    : attacks(this.types[piece], square, occupancy) & (~occupancy | opponentOccupancy);
+
+            for (; newSquares != 0; newSquares = Bitboard.withoutFirstSquare(newSquares)) {
+                int newSquare = Bitboard.firstSquare(newSquares);
+                boolean isPromotion = this.types[piece] == PieceType.PAWN
+                        && Bitboard.y(newSquare) == (isBotTurn ? Bitboard.BOARD_SIZE - 1 : 0);
+                if (Bitboard.contains(opponentOccupancy, newSquare) || isPromotion) {
+                    exitResult = best(exitResult, this.scoreExit(squares, isBotTurn, piece, newSquare, isPromotion));
+                } else {
+                    numMoves++;
+                }
+            }
+        }
+
+        this.numMoves[index] = (byte) numMoves;
+        this.exitResults[index] = exitResult;
+    }
+
+    /**
+     * Score the given move leaving the table by probing the state after it
+     * @param squares the squares of the pieces
+     * @param isBotTurn whether the bot is to move or not
+     * @param piece the moved piece
+     * @param newSquare the new square of the piece
+     * @param isPromotion whether the piece is a pawn that gets promoted or not
+     * @return the result for the player to move
+     */
+    protected byte scoreExit(int[] squares, boolean isBotTurn, int piece, int newSquare, boolean isPromotion) {
+        long[] botBitboards = new long[PieceType.VALUES.length];
+        long[] humanBitboards = new long[PieceType.VALUES.length];
+        int numPieces = 0;
+        for (int i = 0; i < squares.length; i++) {
+            if (i != piece && squares[i] == newSquare) {
+                if (this.types[i] == PieceType.KING) {
+                    return 1;
+                }
+                continue;
+            }
+
+            PieceType type = i == piece && isPromotion ? PieceType.QUEEN : this.types[i];
+            long[] bitboards = this.isBotPieces[i] ? botBitboards : humanBitboards;
+            bitboards[type.ordinal()] |= Bitboard.mask(i == piece ? newSquare : squares[i]);
+            numPieces++;
+        }
+
+        // the bare kings draw
+        if (numPieces == 2) {
+            return 0;
+        }
+
+        int distance = this.tablebase.probeDistance(botBitboards, humanBitboards, !isBotTurn);
+        if (distance == Tablebase.NOT_FOUND) {
+            throw new IllegalStateException("The table of " + Tablebase.materialName(
+                    Tablebase.material(botBitboards, humanBitboards)) + " must be generated first");
+        } else if (Math.abs(distance) > MAX_DISTANCE) {
+            throw new IllegalStateException(String.format("The table %s has a result longer than %d plies",
+                    Tablebase.materialName(Tablebase.material(botBitboards, humanBitboards)), MAX_DISTANCE));
+        }
+
+        // the result of the opponent one ply later
+        if (distance > 0) {
+            return (byte) -(distance + 1);
+        } else if (distance < 0) {
+            return (byte) (-distance + 1);
+        }
+        return 0;
+    }
+
+    /**
+     * Get the better of the given results for the player to move
+     * @param result a result, or NO_RESULT
+     * @param otherResult the other result
+     * @return the better result
+     */
+    protected static byte best(byte result, byte otherResult) {
+        return rank(result) >= rank(otherResult) ? result : otherResult;
+    }
+
+    /**
+     * Rank the given result for the player to move: the faster win, the win, the draw, the slower loss and the loss
+     * @param result the result, or NO_RESULT
+     * @return the rank, the higher the better
+     */
+    protected static int rank(byte result) {
+        if (result == NO_RESULT) {
+            return Integer.MIN_VALUE;
+        } else if (result > 0) {
+            return 2 * Byte.MAX_VALUE - result;
+        } else if (result < 0) {
+            return -2 * Byte.MAX_VALUE - result;
+        }
+        return 0;
+    }
+
+    /**
+     * Get the squares the pawn at the given square can move to, promotions and captures included
+     * @param isBot whether the pawn is of the bot or not
+     * @param square the square of the pawn
+     * @param occupancy the squares occupied by any piece
+     * @param opponentOccupancy the squares occupied by the pieces of the opponent
+     * @return the mask of the squares
+     */
+    protected long pawnMoves(boolean isBot, int square, long occupancy, long opponentOccupancy) {
+        final int FORWARD = isBot ? Bitboard.BOARD_SIZE : -Bitboard.BOARD_SIZE;
+        final int INITIAL_ROW = isBot ? 1 : 6;
+
+        long newSquares = Attacks.pawn(isBot, square) & opponentOccupancy;
+        int oneForward = square + FORWARD;
+        if (!Bitboard.contains(occupancy, oneForward)) {
+            newSquares |= Bitboard.mask(oneForward);
+
+            int twoForward = oneForward + FORWARD;
+            if (Bitboard.y(square) == INITIAL_ROW && !Bitboard.contains(occupancy, twoForward)) {
+                newSquares |= Bitboard.mask(twoForward);
+            }
+        }
+
+        return newSquares;
+    }
+
+    /**
+     * Get the squares the given piece other than a pawn attacks
+     * @param type the type of the piece
+     * @param square the square of the piece
+     * @param occupancy the squares occupied by any piece
+     * @return the mask of the squares
+     */
+    protected static long attacks(PieceType type, int square, long occupancy) {
+        return switch (type) {
+            case KNIGHT -> Attacks.knight(square);
+            case BISHOP -> Attacks.bishop(square, occupancy);
+            case ROOK -> Attacks.rook(square, occupancy);
+            case QUEEN -> Attacks.queen(square, occupancy);
+            case KING -> Attacks.king(square);
+            case PAWN -> throw new IllegalArgumentException("The moves of a pawn depend on its player");
+        };
+    }
+
+    /**
+     * Write the states within the table that can move to the given state without capturing or promoting, which are
+     * the states before the last move of the player not to move
+     * @param index the index of the state
+     * @param squares the squares of the pieces
+     * @param predecessors the buffer of the indices of the states
+     * @return the number of the states written
+     */
+    protected int generatePredecessors(int index, int[] squares, int[] predecessors) {
+        boolean isBotTurn = this.isBotTurn(index);
+        long occupancy = Bitboard.EMPTY;
+        for (int square : squares) {
+            occupancy |= Bitboard.mask(square);
+        }
+
+        int numPredecessors = 0;
+        for (int piece = 0; piece < squares.length; piece++) {
+            // the player not to move made the last move
+            if (this.isBotPieces[piece] == isBotTurn) {
+                continue;
+            }
+
+            int square = squares[piece];
+            long oldSquares = this.types[piece] == PieceType.PAWN
+                    ? this.pawnOldSquares(this.isBotPieces[piece], square, occupancy)
+                    : attacks(this.types[piece], square, occupancy) & ~occupancy;
+
+            for (; oldSquares != 0; oldSquares = Bitboard.withoutFirstSquare(oldSquares)) {
+                squares[piece] = Bitboard.firstSquare(oldSquares);
+                predecessors[numPredecessors++] = this.encode(squares, !isBotTurn);
+            }
+            squares[piece] = square;
+        }
+
+        return numPredecessors;
+    }
+
+    /**
+     * Get the squares the pawn at the given square can have moved from without capturing
+     * @param isBot whether the pawn is of the bot or not
+     * @param square the square of the pawn
+     * @param occupancy the squares occupied by any piece
+     * @return the mask of the squares
+     */
+    protected long pawnOldSquares(boolean isBot, int square, long occupancy) {
+        final int BACKWARD = isBot ? -Bitboard.BOARD_SIZE : Bitboard.BOARD_SIZE;
+        final int INITIAL_ROW = isBot ? 1 : 6;
+
+        long oldSquares = Bitboard.EMPTY;
+        int oneBackward = square + BACKWARD;
+        int oneBackwardRow = Bitboard.y(oneBackward);
+        if (oneBackwardRow > 0 && oneBackwardRow < Bitboard.BOARD_SIZE - 1 && !Bitboard.contains(occupancy, oneBackward)) {
+            oldSquares |= Bitboard.mask(oneBackward);
+
+            int twoBackward = oneBackward + BACKWARD;
+            if (Bitboard.y(twoBackward) == INITIAL_ROW && !Bitboard.contains(occupancy, twoBackward)) {
+                oldSquares |= Bitboard.mask(twoBackward);
+            }
+        }
+
+        return oldSquares;
+    }
+
+    /**
+     * Mark the given state won in the given number of plies, as it can move to a lost state, unless it is found already
+     * @param index the index of the state
+     * @param distance the number of plies
+     * @return true if the state is marked, false otherwise
+     */
+    protected boolean foundWin(int index, int distance) {
+        if (this.distances[index] != 0) {
+            return false;
+        }
+
+        this.distances[index] = (byte) distance;
+        return true;
+    }
+
+    /**
+     * Count a move of the given state found to lead to a won state, and mark the state lost once all its moves within
+     * the table are found so, unless it can win or draw by leaving the table
+     * @param index the index of the state
+     * @param distance the number of plies of the loss by the move
+     * @return true if the state is marked, false otherwise
+     */
+    protected boolean foundLosingMove(int index, int distance) {
+        if (this.distances[index] != 0 || --this.numMoves[index] > 0) {
+            return false;
+        }
+
+        // a slower loss by leaving the table is marked once its distance is reached
+        byte exitResult = this.exitResults[index];
+        if (exitResult == NO_RESULT || (exitResult < 0 && -exitResult <= distance)) {
+            this.distances[index] = (byte) -distance;
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Write the table of the given material to the directory and probe it for the following tables
+     * @param material the material
+     * @throws IOException when the table cannot be written
+     */
+    protected void write(long material) throws IOException {
+        Path path = this.directory.resolve(Tablebase.materialName(material) + Tablebase.FILE_EXTENSION);
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file))) {
+            output.writeInt(Tablebase.MAGIC);
+            output.writeInt(this.types.length);
+            output.write(this.distances);
+        }
+
+        this.tablebase = Tablebase.open(this.directory);
+    }
+
+    /**
+     * Generate the tables from the command line:
+     * <pre>
+     * directory [maxNumPieces]
+     * </pre>
+     * The tables of up to 3 pieces are generated by default, which take 2.5 MB. The tables of 4 pieces take 1 GB and
+     * about 100 MB of heap each while generated. The tables already in the directory are skipped.
+     * @param args the arguments
+     * @throws IOException when a table cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            throw new IllegalArgumentException("The directory must be given");
+        }
+
+        Path directory = Path.of(args[0]);
+        int maxNumPieces = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Files.createDirectories(directory);
+
+        TablebaseGenerator generator = new TablebaseGenerator(directory);
+        for (long material : materials(maxNumPieces)) {
+            String name = Tablebase.materialName(material);
+            if (Files.exists(directory.resolve(name + Tablebase.FILE_EXTENSION))) {
+                System.out.printf("%s exists, skipped%n", name);
+                continue;
+            }
+
+            Instant startTime = Instant.now();
+            int maxDistance = generator.generate(material);
+            System.out.printf("%s generated in %s, the longest result in %d plies%n", name,
+                    Duration.between(startTime, Instant.now()), maxDistance);
+        }
+    }
+}
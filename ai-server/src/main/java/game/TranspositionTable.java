@@ -0,0 +1,269 @@
+package game;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of the values of the searched states, keyed by their Zobrist hashes.
+ * All entries are preallocated, so the memory used by the table never grows. The table can be shared by the bots
+ * of many searches, so each search should call newSearch to let the entries of the previous searches age out.
+ * <p>
+ * The table is lock-free. The key of an entry is stored XORed with its data and value, so an entry torn by
+ * concurrent writes fails the key check and reads as missing instead of returning mixed data.
+ */
+public class TranspositionTable {
+
+    /**
+     * The kind of the stored value with respect to the alpha-beta window it was searched with
+     */
+    public enum Bound {
+        /**
+         * The value is the minimax value of the state
+         */
+        EXACT,
+        /**
+         * The minimax value of the state is at least the value
+         */
+        LOWER,
+        /**
+         * The minimax value of the state is at most the value
+         */
+        UPPER
+    }
+
+    /**
+     * How to treat the entry already stored in the slot of a new entry
+     */
+    public enum ReplacementPolicy {
+        /**
+         * Always overwrite the stored entry
+         */
+        ALWAYS,
+        /**
+         * Keep the stored entry of another state if it was searched deeper than the new one
+         */
+        DEPTH_PREFERRED,
+        /**
+         * Keep the stored entry of another state if it was stored or used by the current search and searched deeper
+         * than the new one. The entries left by the previous searches are always overwritten.
+         */
+        AGED_DEPTH_PREFERRED
+    }
+
+    /**
+     * An entry of the table
+     * @param key the hash of the state
+     * @param depth the number of plies searched below the state
+     * @param bound the kind of the value
+     * @param value the value
+     * @param bestMove the best move found in the state, or Move.NONE
+     */
+    public record Entry(long key, int depth, Bound bound, double value, int bestMove) {}
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    public static final int MAX_CAPACITY = 1 << 30;
+
+    /**
+     * The number of bytes used by an entry: the key, the packed data and the value
+     */
+    public static final int ENTRY_SIZE = Long.BYTES + Long.BYTES + Double.BYTES;
+
+    protected static final int DEPTH_MASK = 0xFF;
+
+    protected static final int BOUND_SHIFT = 8;
+
+    protected static final int BOUND_MASK = 0x3;
+
+    protected static final int GENERATION_SHIFT = 10;
+
+    protected static final int GENERATION_MASK = 0xFF;
+
+    protected static final int MOVE_SHIFT = 32;
+
+    protected static final Bound[] BOUNDS = Bound.values();
+
+    /**
+     * The keys of the entries XORed with their data and the bits of their values
+     */
+    protected final long[] keys;
+
+    /**
+     * The depth, bound, generation and best move of the entries packed into longs
+     */
+    protected final long[] data;
+
+    protected final double[] values;
+
+    protected final int indexMask;
+
+    protected final ReplacementPolicy replacementPolicy;
+
+    /**
+     * The number of the current search, wrapping around within GENERATION_MASK
+     */
+    protected volatile int generation;
+
+    public TranspositionTable() {
+        this(DEFAULT_CAPACITY, ReplacementPolicy.DEPTH_PREFERRED);
+    }
+
+    /**
+     * Create the table
+     * @param capacity the number of entries. It is rounded down to a power of two. Must be positive
+     * @param replacementPolicy the replacement policy
+     */
+    public TranspositionTable(int capacity, ReplacementPolicy replacementPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive. Given: " + capacity);
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        this.keys = new long[size];
+        this.data = new long[size];
+        this.values = new double[size];
+        this.indexMask = size - 1;
+        this.replacementPolicy = replacementPolicy;
+        this.generation = 0;
+    }
+
+    /**
+     * Create the table that uses at most the given amount of memory
+     * @param sizeInMegabytes the size of the table in megabytes. Must be big enough to hold an entry
+     * @param replacementPolicy the replacement policy
+     * @return the table
+     */
+    public static TranspositionTable ofMegabytes(int sizeInMegabytes, ReplacementPolicy replacementPolicy) {
+        long capacity = (long) sizeInMegabytes * 1024 * 1024 / ENTRY_SIZE;
+        return new TranspositionTable((int) Math.min(capacity, MAX_CAPACITY), replacementPolicy);
+    }
+
+    /**
+     * Get the number of entries the table can hold
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Start a new search, so the entries of the previous searches become older
+     */
+    public void newSearch() {
+        this.generation = (this.generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Find the entry of the given state. The entry found becomes the entry of the current search, if it is not
+     * already.
+     * @param key the hash of the state
+     * @return the entry, or null if the table doesn't hold the state
+     */
+    @Nullable
+    public Entry probe(long key) {
+        int index = this.indexOf(key);
+        long storedKey = this.keys[index];
+        long data = this.data[index];
+        double value = this.values[index];
+
+        // the bound of a stored entry is never 0, so an empty slot never matches
+        if ((storedKey ^ data ^ Double.doubleToRawLongBits(value)) != key || data == 0) {
+            return null;
+        }
+
+        // the entry is rewritten only to age it, so the probes of the helpers don't write to the shared slots and
+        // overwrite the entries stored in the meantime
+        long currentData = this.withGeneration(data);
+        if (currentData != data) {
+            this.write(index, key, currentData, value);
+        }
+
+        return new Entry(key, (int) (data & DEPTH_MASK), BOUNDS[((int) (data >>> BOUND_SHIFT) & BOUND_MASK) - 1],
+                value, (int) (data >>> MOVE_SHIFT));
+    }
+
+    /**
+     * Store the entry of the given state, unless the replacement policy keeps the stored one
+     * @param key the hash of the state
+     * @param depth the number of plies searched below the state
+     * @param bound the kind of the value
+     * @param value the value
+     * @param bestMove the best move found in the state, or Move.NONE
+     */
+    public void store(long key, int depth, Bound bound, double value, int bestMove) {
+        int index = this.indexOf(key);
+
+        if (!this.shouldReplace(index, key, depth)) {
+            return;
+        }
+
+        this.write(index, key, this.withGeneration(Math.min(depth, DEPTH_MASK)
+                | (long) (bound.ordinal() + 1) << BOUND_SHIFT
+                | (long) bestMove << MOVE_SHIFT), value);
+    }
+
+    /**
+     * Write the entry to the given slot
+     * @param index the index of the slot
+     * @param key the hash of the state
+     * @param data the packed data
+     * @param value the value
+     */
+    protected void write(int index, long key, long data, double value) {
+        this.keys[index] = key ^ data ^ Double.doubleToRawLongBits(value);
+        this.data[index] = data;
+        this.values[index] = value;
+    }
+
+    /**
+     * Check if the entry in the given slot should be replaced by the new entry
+     * @param index the index of the slot
+     * @param key the hash of the state of the new entry
+     * @param depth the depth of the new entry
+     * @return true if it should, false otherwise
+     */
+    protected boolean shouldReplace(int index, long key, int depth) {
+        long storedData = this.data[index];
+        long storedKey = this.keys[index] ^ storedData ^ Double.doubleToRawLongBits(this.values[index]);
+        if (storedData == 0 || storedKey == key) {
+            return true;
+        }
+
+        boolean isDeeper = (storedData & DEPTH_MASK) > depth;
+        boolean isCurrent = ((storedData >>> GENERATION_SHIFT) & GENERATION_MASK) == this.generation;
+
+        return switch (this.replacementPolicy) {
+            case ALWAYS -> true;
+            case DEPTH_PREFERRED -> !isDeeper;
+            case AGED_DEPTH_PREFERRED -> !isDeeper || !isCurrent;
+        };
+    }
+
+    /**
+     * Replace the generation of the given packed data with the current generation
+     * @param data the packed data
+     * @return the packed data of the current generation
+     */
+    protected long withGeneration(long data) {
+        return data & ~((long) GENERATION_MASK << GENERATION_SHIFT) | (long) this.generation << GENERATION_SHIFT;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        Arrays.fill(this.keys, 0L);
+        Arrays.fill(this.data, 0L);
+        Arrays.fill(this.values, 0.0);
+    }
+
+    /**
+     * Get the slot of the given key
+     * @param key the key
+     * @return the index of the slot
+     */
+    protected int indexOf(long key) {
+        return (int) key & this.indexMask;
+    }
+}
@@ -0,0 +1,69 @@
+package game;
+
+import piece.PieceType;
+import util.Bitboard;
+
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * The random keys of the Zobrist hashing of the states. The keys are generated from a fixed seed, so the same state
+ * has the same hash across restarts.
+ */
+public final class Zobrist {
+
+    protected static final long SEED = 0x5EED_C4E5_5A1L;
+
+    protected static final long[][] PIECE_KEYS = new long[2 * PieceType.VALUES.length][Bitboard.NUM_SQUARES];
+
+    /**
+     * The key mixed into the hash when it is the bot turn
+     */
+    public static final long BOT_TURN_KEY;
+
+    /**
+     * The keys of the forward pruning features, indexed by their ordinals
+     */
+    protected static final long[] FEATURE_KEYS = new long[SearchFeature.values().length];
+
+    static {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (long[] keys : PIECE_KEYS) {
+            for (int square = 0; square < keys.length; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        BOT_TURN_KEY = random.nextLong();
+        for (int i = 0; i < FEATURE_KEYS.length; i++) {
+            FEATURE_KEYS[i] = random.nextLong();
+        }
+    }
+
+    private Zobrist() {}
+
+    /**
+     * Get the key of the given piece at the given square
+     * @param isBot whether the piece belongs to the bot or not
+     * @param type the type of the piece
+     * @param square the square
+     * @return the key
+     */
+    public static long pieceKey(boolean isBot, PieceType type, int square) {
+        return PIECE_KEYS[(isBot ? PieceType.VALUES.length : 0) + type.ordinal()][square];
+    }
+
+    /**
+     * Get the key of the given forward pruning features, mixed into the hashes of the transposition table so the
+     * values searched with different features are kept apart
+     * @param searchFeatures the features
+     * @return the key, 0 for no features
+     */
+    public static long featuresKey(Set<SearchFeature> searchFeatures) {
+        long key = 0L;
+        for (SearchFeature feature : searchFeatures) {
+            key ^= FEATURE_KEYS[feature.ordinal()];
+        }
+
+        return key;
+    }
+}
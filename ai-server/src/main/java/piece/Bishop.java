@@ -1,7 +1,7 @@
 package piece;
 
 import game.Player;
-import util.Direction;
+import util.Attacks;
 import util.Position;
 
 import java.util.Collection;
@@ -11,9 +11,6 @@ import java.util.Collection;
  */
 public class Bishop extends Piece {
 
-    protected static final Direction[] directions = {Direction.UPLEFT, Direction.UPRIGHT, Direction.DOWNLEFT,
-            Direction.DOWNRIGHT};
-
     public static final char BLACK_ICON = '♝';
 
     public static final char WHITE_ICON = '♗';
@@ -24,7 +21,12 @@ public class Bishop extends Piece {
 
     @Override
     public Collection<Position> movements(Player opponent) {
-        return this.movements(opponent, directions);
+        return this.movements(opponent, Attacks.BISHOP_DIRECTIONS);
+    }
+
+    @Override
+    public PieceType getType() {
+        return PieceType.BISHOP;
     }
 
     @Override
@@ -1,11 +1,11 @@
 package piece;
 
 import game.Player;
+import util.Attacks;
+import util.Bitboard;
 import util.Position;
 
 import java.util.Collection;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  * The king piece of the chess
@@ -22,21 +22,12 @@ public class King extends Piece {
 
     @Override
     public Collection<Position> movements(Player opponent) {
-        int x = this.getX();
-        int y = this.getY();
-
-        List<Position> movements = new LinkedList<>();
-
-        for (int i = x-1; i < x+2; i++) {
-            for (int j = y-1; j < y+2; j++) {
-                movements.add(new Position(i, j));
-            }
-        }
+        return this.positionsOf(Attacks.king(Bitboard.square(this.position)) & ~this.player.getOccupancy());
+    }
 
-        return movements.stream()
-                .filter(p -> !this.player.isOccupied(p))
-                .filter(Position::isWithinBound)
-                .toList();
+    @Override
+    public PieceType getType() {
+        return PieceType.KING;
     }
 
     @Override
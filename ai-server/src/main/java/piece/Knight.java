@@ -1,10 +1,11 @@
 package piece;
 
 import game.Player;
+import util.Attacks;
+import util.Bitboard;
 import util.Position;
 
 import java.util.Collection;
-import java.util.List;
 
 /**
  * The knight piece of the chess
@@ -21,24 +22,12 @@ public class Knight extends Piece {
 
     @Override
     public Collection<Position> movements(Player opponent) {
-        int x = this.getX();
-        int y = this.getY();
-        
-        List<Position> movements = List.of(
-                new Position(x - 1, y - 2),
-                new Position(x - 1, y + 2),
-                new Position(x + 1, y - 2),
-                new Position(x + 1, y + 2),
-                new Position(x - 2, y - 1),
-                new Position(x - 2, y + 1),
-                new Position(x + 2, y - 1),
-                new Position(x + 2, y + 1)
-        );
-        
-        return movements.stream()
-                .filter(Position::isWithinBound)
-                .filter(position -> !this.player.isOccupied(position))
-                .toList();
+        return this.positionsOf(Attacks.knight(Bitboard.square(this.position)) & ~this.player.getOccupancy());
+    }
+
+    @Override
+    public PieceType getType() {
+        return PieceType.KNIGHT;
     }
 
     @Override
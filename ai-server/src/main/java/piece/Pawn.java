@@ -26,6 +26,11 @@ public class Pawn extends Piece {
         return this.humanMovements(opponent);
     }
 
+    @Override
+    public PieceType getType() {
+        return PieceType.PAWN;
+    }
+
     @Override
     public char getBlackIcon() {
         return BLACK_ICON;
@@ -48,7 +53,8 @@ public class Pawn extends Piece {
         List<Position> movements = new LinkedList<>();
 
         Position moveOneForward = new Position(x, y + 1);
-        if (!this.player.isOccupied(moveOneForward) && !opponent.isOccupied(moveOneForward)) {
+        if (Position.isWithinBound(moveOneForward) && !this.player.isOccupied(moveOneForward)
+                && !opponent.isOccupied(moveOneForward)) {
             movements.add(moveOneForward);
 
             final int INITIAL_ROW = 1;
@@ -83,7 +89,8 @@ public class Pawn extends Piece {
         List<Position> movements = new LinkedList<>();
 
         Position moveOneForward = new Position(x, y - 1);
-        if (!this.player.isOccupied(moveOneForward) && !opponent.isOccupied(moveOneForward)) {
+        if (Position.isWithinBound(moveOneForward) && !this.player.isOccupied(moveOneForward)
+                && !opponent.isOccupied(moveOneForward)) {
             movements.add(moveOneForward);
 
             final int INITIAL_ROW = 6;
@@ -5,13 +5,15 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import game.Player;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import util.Cursor;
+import util.Attacks;
+import util.Bitboard;
 import util.Direction;
 import util.Position;
 
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 /**
  * The piece of the chess
@@ -82,6 +84,13 @@ public abstract class Piece {
         return this.getPosition().y();
     }
 
+    /**
+     * Get the type of this piece
+     * @return the type
+     */
+    @JsonIgnore
+    public abstract PieceType getType();
+
     /**
      * Return all possible movements of the piece
      * @param opponent the opponent player of the piece
@@ -110,21 +119,23 @@ public abstract class Piece {
      * @return the movements to the direction
      */
     protected Collection<Position> movements(Player opponent, Direction[] directions) {
-        List<Position> movements = new LinkedList<>();
-        for (Direction direction : directions) {
-            Cursor cursor = new Cursor(this.getX(), this.getY(), direction);
-
-            while (cursor.canMove() && !opponent.isOccupied(cursor.getPosition())) {
-                cursor.move();
-                if (this.player.isOccupied(cursor.getPosition())) {
-                    break;
-                } else {
-                    movements.add(cursor.getPosition());
-                }
-            }
+        long occupancy = this.player.getOccupancy() | opponent.getOccupancy();
+        return this.positionsOf(Attacks.slide(directions, Bitboard.square(this.position), occupancy)
+                & ~this.player.getOccupancy());
+    }
+
+    /**
+     * Return the positions of the squares in the given mask
+     * @param bitboard the mask
+     * @return the positions
+     */
+    protected Collection<Position> positionsOf(long bitboard) {
+        List<Position> positions = new LinkedList<>();
+        for (; bitboard != Bitboard.EMPTY; bitboard = Bitboard.withoutFirstSquare(bitboard)) {
+            positions.add(Bitboard.position(Bitboard.firstSquare(bitboard)));
         }
 
-        return movements;
+        return positions;
     }
 
     /**
@@ -148,12 +159,16 @@ public abstract class Piece {
 
     @Override
     public boolean equals(Object obj) {
-        if (!super.equals(obj)) {
+        if (!(obj instanceof Piece other)) {
             return false;
         }
 
-        Piece other = (Piece) obj;
         return this.isBot() == other.isBot() && this.getPosition().equals(other.getPosition()) &&
                 this.getIcon() == other.getIcon();
     }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.isBot(), this.getPosition(), this.getIcon());
+    }
 }
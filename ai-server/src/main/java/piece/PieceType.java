@@ -0,0 +1,73 @@
+package piece;
+
+import game.Player;
+import util.Position;
+
+/**
+ * The types of the pieces of the chess
+ */
+public enum PieceType {
+    PAWN(Pawn.BLACK_ICON, Pawn.WHITE_ICON),
+    KNIGHT(Knight.BLACK_ICON, Knight.WHITE_ICON),
+    BISHOP(Bishop.BLACK_ICON, Bishop.WHITE_ICON),
+    ROOK(Rook.BLACK_ICON, Rook.WHITE_ICON),
+    QUEEN(Queen.BLACK_ICON, Queen.WHITE_ICON),
+    KING(King.BLACK_ICON, King.WHITE_ICON);
+
+    /**
+     * Cached result of values() to avoid copying the array on every lookup
+     */
+    public static final PieceType[] VALUES = values();
+
+    protected final char blackIcon;
+
+    protected final char whiteIcon;
+
+    PieceType(char blackIcon, char whiteIcon) {
+        this.blackIcon = blackIcon;
+        this.whiteIcon = whiteIcon;
+    }
+
+    /**
+     * Get the icon of this type for the given player
+     * @param isBot whether the player is bot or not
+     * @return the icon
+     */
+    public char getIcon(boolean isBot) {
+        return isBot ? this.blackIcon : this.whiteIcon;
+    }
+
+    /**
+     * Create the piece of this type
+     * @param player the player of the piece
+     * @param position the position of the piece
+     * @return the piece
+     */
+    public Piece create(Player player, Position position) {
+        return switch (this) {
+            case PAWN -> new Pawn(player, position);
+            case KNIGHT -> new Knight(player, position);
+            case BISHOP -> new Bishop(player, position);
+            case ROOK -> new Rook(player, position);
+            case QUEEN -> new Queen(player, position);
+            case KING -> new King(player, position);
+        };
+    }
+
+    /**
+     * Find the type that the given icon indicates
+     * @param icon the icon of the piece. It can be either black or white
+     * @return the type
+     */
+    public static PieceType fromIcon(char icon) {
+        return switch (icon) {
+            case Pawn.BLACK_ICON, Pawn.WHITE_ICON -> PAWN;
+            case Knight.BLACK_ICON, Knight.WHITE_ICON -> KNIGHT;
+            case Bishop.BLACK_ICON, Bishop.WHITE_ICON -> BISHOP;
+            case Rook.BLACK_ICON, Rook.WHITE_ICON -> ROOK;
+            case Queen.BLACK_ICON, Queen.WHITE_ICON -> QUEEN;
+            case King.BLACK_ICON, King.WHITE_ICON -> KING;
+            default -> throw new IllegalArgumentException(String.format("The icon %s is invalid", icon));
+        };
+    }
+}
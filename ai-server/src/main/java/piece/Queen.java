@@ -27,6 +27,11 @@ public class Queen extends Piece {
         return this.movements(opponent, directions);
     }
 
+    @Override
+    public PieceType getType() {
+        return PieceType.QUEEN;
+    }
+
     @Override
     public char getBlackIcon() {
         return BLACK_ICON;
@@ -1,7 +1,7 @@
 package piece;
 
 import game.Player;
-import util.Direction;
+import util.Attacks;
 import util.Position;
 
 import java.util.Collection;
@@ -15,15 +15,18 @@ public class Rook extends Piece {
 
     public static final char WHITE_ICON = '♖';
 
-    protected static final Direction[] directions = {Direction.LEFT, Direction.RIGHT, Direction.UP, Direction.DOWN};
-
     public Rook(Player player, Position position) {
         super(player, position);
     }
 
     @Override
     public Collection<Position> movements(Player opponent) {
-        return this.movements(opponent, directions);
+        return this.movements(opponent, Attacks.ROOK_DIRECTIONS);
+    }
+
+    @Override
+    public PieceType getType() {
+        return PieceType.ROOK;
     }
 
     @Override
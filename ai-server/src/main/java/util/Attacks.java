@@ -0,0 +1,208 @@
+package util;
+
+/**
+ * Precomputed attack tables of the pieces, indexed by square.
+ * The sliding pieces look up the ray of each direction and cut it at the first occupied square, so no positions are
+ * created while generating the moves.
+ */
+public final class Attacks {
+
+    /**
+     * The directions a rook slides to
+     */
+    public static final Direction[] ROOK_DIRECTIONS = {Direction.LEFT, Direction.RIGHT, Direction.UP, Direction.DOWN};
+
+    /**
+     * The directions a bishop slides to
+     */
+    public static final Direction[] BISHOP_DIRECTIONS = {Direction.UPLEFT, Direction.UPRIGHT, Direction.DOWNLEFT,
+            Direction.DOWNRIGHT};
+
+    protected static final long[] KNIGHT_ATTACKS = new long[Bitboard.NUM_SQUARES];
+
+    protected static final long[] KING_ATTACKS = new long[Bitboard.NUM_SQUARES];
+
+    /**
+     * The squares a pawn of each player attacks, the human player first
+     */
+    protected static final long[][] PAWN_ATTACKS = new long[2][Bitboard.NUM_SQUARES];
+
+    /**
+     * The squares from each square to the edge of the board in each direction, excluding the square itself
+     */
+    protected static final long[][] RAYS = new long[Direction.values().length][Bitboard.NUM_SQUARES];
+
+    static {
+        for (int square = 0; square < Bitboard.NUM_SQUARES; square++) {
+            int x = Bitboard.x(square);
+            int y = Bitboard.y(square);
+
+            KNIGHT_ATTACKS[square] = maskOf(x - 1, y - 2) | maskOf(x - 1, y + 2) | maskOf(x + 1, y - 2)
+                    | maskOf(x + 1, y + 2) | maskOf(x - 2, y - 1) | maskOf(x - 2, y + 1) | maskOf(x + 2, y - 1)
+                    | maskOf(x + 2, y + 1);
+
+            for (int i = x - 1; i < x + 2; i++) {
+                for (int j = y - 1; j < y + 2; j++) {
+                    if (i != x || j != y) {
+                        KING_ATTACKS[square] |= maskOf(i, j);
+                    }
+                }
+            }
+
+            PAWN_ATTACKS[0][square] = maskOf(x - 1, y - 1) | maskOf(x + 1, y - 1);
+            PAWN_ATTACKS[1][square] = maskOf(x - 1, y + 1) | maskOf(x + 1, y + 1);
+
+            for (Direction direction : Direction.values()) {
+                int dx = dx(direction);
+                int dy = dy(direction);
+                for (int i = x + dx, j = y + dy; Position.isWithinBound(i, j); i += dx, j += dy) {
+                    RAYS[direction.ordinal()][square] |= Bitboard.mask(Bitboard.square(i, j));
+                }
+            }
+        }
+    }
+
+    private Attacks() {}
+
+    /**
+     * Get the squares a knight on the given square attacks
+     * @param square the square
+     * @return the mask of the squares
+     */
+    public static long knight(int square) {
+        return KNIGHT_ATTACKS[square];
+    }
+
+    /**
+     * Get the squares a king on the given square attacks
+     * @param square the square
+     * @return the mask of the squares
+     */
+    public static long king(int square) {
+        return KING_ATTACKS[square];
+    }
+
+    /**
+     * Get the squares a pawn on the given square attacks
+     * @param isBot whether the pawn is of the bot player or not
+     * @param square the square
+     * @return the mask of the squares
+     */
+    public static long pawn(boolean isBot, int square) {
+        return PAWN_ATTACKS[isBot ? 1 : 0][square];
+    }
+
+    /**
+     * Get the squares a rook on the given square attacks
+     * @param square the square
+     * @param occupancy the squares occupied by any piece
+     * @return the mask of the squares, including the first occupied square of each direction
+     */
+    public static long rook(int square, long occupancy) {
+        return slide(ROOK_DIRECTIONS, square, occupancy);
+    }
+
+    /**
+     * Get the squares a bishop on the given square attacks
+     * @param square the square
+     * @param occupancy the squares occupied by any piece
+     * @return the mask of the squares, including the first occupied square of each direction
+     */
+    public static long bishop(int square, long occupancy) {
+        return slide(BISHOP_DIRECTIONS, square, occupancy);
+    }
+
+    /**
+     * Get the squares a queen on the given square attacks
+     * @param square the square
+     * @param occupancy the squares occupied by any piece
+     * @return the mask of the squares, including the first occupied square of each direction
+     */
+    public static long queen(int square, long occupancy) {
+        return rook(square, occupancy) | bishop(square, occupancy);
+    }
+
+    /**
+     * Get the squares a piece on the given square slides to in the given directions
+     * @param directions the directions
+     * @param square the square
+     * @param occupancy the squares occupied by any piece
+     * @return the mask of the squares, including the first occupied square of each direction
+     */
+    public static long slide(Direction[] directions, int square, long occupancy) {
+        long attacks = Bitboard.EMPTY;
+        for (Direction direction : directions) {
+            attacks |= ray(direction, square, occupancy);
+        }
+
+        return attacks;
+    }
+
+    /**
+     * Get the squares a piece on the given square slides to in the given direction
+     * @param direction the direction
+     * @param square the square
+     * @param occupancy the squares occupied by any piece
+     * @return the mask of the squares, including the first occupied square
+     */
+    public static long ray(Direction direction, int square, long occupancy) {
+        long[] rays = RAYS[direction.ordinal()];
+        long ray = rays[square];
+        long blockers = ray & occupancy;
+        if (blockers == Bitboard.EMPTY) {
+            return ray;
+        }
+
+        // the squares increase towards the right and the bottom, so the nearest blocker is the lowest or highest bit
+        int blocker = isIncreasing(direction)
+                ? Long.numberOfTrailingZeros(blockers)
+                : Long.SIZE - 1 - Long.numberOfLeadingZeros(blockers);
+
+        return ray ^ rays[blocker];
+    }
+
+    /**
+     * Get the mask of the given x and y, or an empty mask if they are out of the bound of the chess board
+     * @param x the x
+     * @param y the y
+     * @return the mask
+     */
+    protected static long maskOf(int x, int y) {
+        return Position.isWithinBound(x, y) ? Bitboard.mask(Bitboard.square(x, y)) : Bitboard.EMPTY;
+    }
+
+    /**
+     * Check if the squares increase along the given direction
+     * @param direction the direction
+     * @return true if they do, false otherwise
+     */
+    protected static boolean isIncreasing(Direction direction) {
+        return dy(direction) > 0 || (dy(direction) == 0 && dx(direction) > 0);
+    }
+
+    /**
+     * Get the change of x per step in the given direction
+     * @param direction the direction
+     * @return the change of x
+     */
+    protected static int dx(Direction direction) {
+        return switch (direction) {
+            case LEFT, UPLEFT, DOWNLEFT -> -1;
+            case RIGHT, UPRIGHT, DOWNRIGHT -> 1;
+            case UP, DOWN -> 0;
+        };
+    }
+
+    /**
+     * Get the change of y per step in the given direction
+     * @param direction the direction
+     * @return the change of y
+     */
+    protected static int dy(Direction direction) {
+        return switch (direction) {
+            case UP, UPLEFT, UPRIGHT -> -1;
+            case DOWN, DOWNLEFT, DOWNRIGHT -> 1;
+            case LEFT, RIGHT -> 0;
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package util;
+
+/**
+ * Helpers for the 64-bit masks that represent sets of squares of the chess board.
+ * The square of (x, y) is y * 8 + x, so the bit 0 is the top left corner of the board.
+ */
+public final class Bitboard {
+
+    public static final int BOARD_SIZE = 8;
+
+    public static final int NUM_SQUARES = BOARD_SIZE * BOARD_SIZE;
+
+    public static final long EMPTY = 0L;
+
+    protected static final long FIRST_FILE = 0x0101010101010101L;
+
+    protected static final long FIRST_ROW = 0xFFL;
+
+    private Bitboard() {}
+
+    /**
+     * Get the square of the given x and y
+     * @param x the x
+     * @param y the y
+     * @return the square
+     */
+    public static int square(int x, int y) {
+        return y * BOARD_SIZE + x;
+    }
+
+    /**
+     * Get the square of the given position
+     * @param position the position
+     * @return the square
+     */
+    public static int square(Position position) {
+        return square(position.x(), position.y());
+    }
+
+    /**
+     * Get the x of the given square
+     * @param square the square
+     * @return the x
+     */
+    public static int x(int square) {
+        return square % BOARD_SIZE;
+    }
+
+    /**
+     * Get the y of the given square
+     * @param square the square
+     * @return the y
+     */
+    public static int y(int square) {
+        return square / BOARD_SIZE;
+    }
+
+    /**
+     * Get the position of the given square
+     * @param square the square
+     * @return the position
+     */
+    public static Position position(int square) {
+        return new Position(x(square), y(square));
+    }
+
+    /**
+     * Get the mask that only contains the given square
+     * @param square the square
+     * @return the mask
+     */
+    public static long mask(int square) {
+        return 1L << square;
+    }
+
+    /**
+     * Get the mask that only contains the given position
+     * @param position the position. Must be within the bound of the chess board
+     * @return the mask
+     */
+    public static long mask(Position position) {
+        return mask(square(position));
+    }
+
+    /**
+     * Get the mask of all squares that have the given x
+     * @param x the x
+     * @return the mask
+     */
+    public static long fileMask(int x) {
+        return FIRST_FILE << x;
+    }
+
+    /**
+     * Get the mask of all squares that have the given y
+     * @param y the y
+     * @return the mask
+     */
+    public static long rowMask(int y) {
+        return FIRST_ROW << (y * BOARD_SIZE);
+    }
+
+    /**
+     * Check if the given mask contains the given square
+     * @param bitboard the mask
+     * @param square the square
+     * @return true if it does, false otherwise
+     */
+    public static boolean contains(long bitboard, int square) {
+        return (bitboard & mask(square)) != 0;
+    }
+
+    /**
+     * Get the first square contained in the given mask
+     * @param bitboard the mask. Must not be empty
+     * @return the square
+     */
+    public static int firstSquare(long bitboard) {
+        return Long.numberOfTrailingZeros(bitboard);
+    }
+
+    /**
+     * Remove the first square from the given mask
+     * @param bitboard the mask
+     * @return the mask without its first square
+     */
+    public static long withoutFirstSquare(long bitboard) {
+        return bitboard & (bitboard - 1);
+    }
+}
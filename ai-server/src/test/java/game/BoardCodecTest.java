@@ -0,0 +1,99 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BoardCodecTest {
+
+    /**
+     * The initial board in the text form
+     */
+    static final String INITIAL_TEXT = "rnbkqbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKQBNR";
+
+    static Stream<PerftSuite.Position> positions() throws IOException {
+        return PerftSuite.read().stream();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("positions")
+    void textRoundTrips(PerftSuite.Position position) {
+        State state = position.toState();
+
+        assertSameState(state, BoardCodec.fromText(BoardCodec.toText(state, true), !state.isBotTurn()));
+        assertSameState(state, BoardCodec.fromText(BoardCodec.toText(state, false), state.isBotTurn()));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("positions")
+    void packedRoundTrips(PerftSuite.Position position) {
+        State state = position.toState();
+        byte[] bytes = BoardCodec.pack(state);
+
+        assertEquals(BoardCodec.PACKED_SIZE, bytes.length);
+        assertSameState(state, BoardCodec.unpack(bytes, state.isBotTurn()));
+    }
+
+    @Test
+    void fromTextReadsInitialBoard() throws IOException {
+        assertSameState(PerftSuite.read().get(0).toState(), BoardCodec.fromText(INITIAL_TEXT + " b", false));
+    }
+
+    @Test
+    void fromTextRejectsBadRowLength() {
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.fromText("rnbkqbnr/ppppppp/8/8/8/8/PPPPPPPP/RNBKQBNR", true));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.fromText("rnbkqbnrp/pppppppp/8/8/8/8/PPPPPPPP/RNBKQBNR", true));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.fromText("rnbkqbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKQBN", true));
+    }
+
+    @Test
+    void fromTextRejectsTooManyRows() {
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.fromText(INITIAL_TEXT + "/8", true));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.fromText("8/" + INITIAL_TEXT, true));
+    }
+
+    @Test
+    void fromTextRejectsBadLetter() {
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.fromText("rnbkxbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBKQBNR", true));
+    }
+
+    @Test
+    void fromTextRejectsBadTurnLetter() {
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.fromText(INITIAL_TEXT + " x", true));
+    }
+
+    @Test
+    void unpackRejectsWrongByteCount() {
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.unpack(new byte[BoardCodec.PACKED_SIZE - 1], true));
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.unpack(new byte[BoardCodec.PACKED_SIZE + 1], true));
+    }
+
+    @Test
+    void unpackRejectsInvalidNibble() {
+        byte[] bytes = new byte[BoardCodec.PACKED_SIZE];
+        bytes[0] = 0x07;
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.unpack(bytes, true));
+
+        bytes[0] = (byte) 0xF0;
+        assertThrows(IllegalArgumentException.class, () -> BoardCodec.unpack(bytes, true));
+    }
+
+    /**
+     * Check the given states have the same pieces and the same player to move
+     * @param expected the expected state
+     * @param actual the actual state
+     */
+    static void assertSameState(State expected, State actual) {
+        assertArrayEquals(expected.getBotPlayer().bitboards, actual.getBotPlayer().bitboards, () -> "bot pieces of\n" + expected);
+        assertArrayEquals(expected.getHumanPlayer().bitboards, actual.getHumanPlayer().bitboards, () -> "human pieces of\n" + expected);
+        assertEquals(expected.isBotTurn(), actual.isBotTurn(), () -> "turn of\n" + expected);
+        assertEquals(expected.getHash(), actual.getHash(), () -> "hash of\n" + expected);
+    }
+}
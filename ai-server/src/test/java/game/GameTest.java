@@ -0,0 +1,98 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import piece.Piece;
+import util.Position;
+
+import java.io.IOException;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GameTest {
+
+    /**
+     * The number of plies walked from each position of the perft suite
+     */
+    static final int DEPTH = 3;
+
+    static Stream<PerftSuite.Position> positions() throws IOException {
+        return PerftSuite.read().stream();
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("positions")
+    void evaluateMatchesEvaluateFromScratch(PerftSuite.Position position) {
+        walk(new Game(), position.toState(), DEPTH);
+    }
+
+    @Test
+    void resultRejectsTargetOffTheBoard() throws IOException {
+        State state = PerftSuite.read().get(0).toState();
+        Piece pawn = state.getHumanPlayer().findPieceAt(new Position(0, 6)).orElseThrow();
+
+        assertThrows(IllegalArgumentException.class, () -> new Game().result(state, new Action(pawn, new Position(0, 8))));
+        assertThrows(IllegalArgumentException.class, () -> new Game().result(state, new Action(pawn, new Position(-1, 5))));
+    }
+
+    @Test
+    void resultRejectsTargetOccupiedByOwnPiece() throws IOException {
+        State state = PerftSuite.read().get(0).toState();
+        Piece pawn = state.getHumanPlayer().findPieceAt(new Position(0, 6)).orElseThrow();
+
+        assertThrows(IllegalArgumentException.class, () -> new Game().result(state, new Action(pawn, new Position(0, 7))));
+        assertMaintainedFields(state);
+    }
+
+    /**
+     * Check the given state and all states reachable from it in the given number of plies. The moves are made and
+     * unmade on the state in place, as the search does.
+     * @param game the game
+     * @param state the state
+     * @param depth the number of plies
+     */
+    static void walk(Game game, State state, int depth) {
+        assertMaintainedFields(state);
+        if (game.isTerminal(state)) {
+            return;
+        }
+
+        assertEquals(game.evaluateFromScratch(state), game.evaluate(state), () -> "evaluate of\n" + state);
+        if (depth == 0) {
+            return;
+        }
+
+        for (Action action : game.actions(state)) {
+            long hash = state.getHash();
+            long pawnHash = state.getPawnHash();
+            double botMaterial = state.getBotPlayer().getMaterial();
+            double humanMaterial = state.getHumanPlayer().getMaterial();
+
+            state.makeMove(action);
+            walk(game, state, depth - 1);
+            state.unmakeMove();
+
+            assertEquals(hash, state.getHash(), () -> "hash after unmaking " + action + " of\n" + state);
+            assertEquals(pawnHash, state.getPawnHash(), () -> "pawn hash after unmaking " + action + " of\n" + state);
+            assertEquals(botMaterial, state.getBotPlayer().getMaterial(), () -> "bot material after unmaking " + action);
+            assertEquals(humanMaterial, state.getHumanPlayer().getMaterial(), () -> "human material after unmaking " + action);
+        }
+    }
+
+    /**
+     * Check the hashes and the material maintained by the moves against the ones counted from the bitboards
+     * @param state the state
+     */
+    static void assertMaintainedFields(State state) {
+        State counted = new State(new Player(true, state.getBotPlayer().bitboards.clone()),
+                new Player(false, state.getHumanPlayer().bitboards.clone()), state.isBotTurn());
+
+        assertEquals(counted.getHash(), state.getHash(), () -> "hash of\n" + state);
+        assertEquals(counted.getPawnHash(), state.getPawnHash(), () -> "pawn hash of\n" + state);
+        assertEquals(counted.getBotPlayer().getMaterial(), state.getBotPlayer().getMaterial(), () -> "bot material of\n" + state);
+        assertEquals(counted.getHumanPlayer().getMaterial(), state.getHumanPlayer().getMaterial(), () -> "human material of\n" + state);
+    }
+}
@@ -0,0 +1,66 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The positions of the perft suite and their expected node counts
+ */
+final class PerftSuite {
+
+    static final String RESOURCE = "perft/suite.txt";
+
+    /**
+     * A position of the suite
+     * @param board the board with its rows separated by '/'
+     * @param player b if it is the bot turn, h if it is the human turn
+     * @param numNodes the expected node counts from depth 1
+     */
+    record Position(String board, String player, long[] numNodes) {
+
+        State toState() {
+            return Perft.parse(this.board, this.player);
+        }
+
+        @Override
+        public String toString() {
+            return this.board + ";" + this.player;
+        }
+    }
+
+    private PerftSuite() {}
+
+    /**
+     * Read the positions of the suite
+     * @return the positions
+     * @throws IOException when the suite cannot be read
+     */
+    static List<Position> read() throws IOException {
+        InputStream input = PerftSuite.class.getClassLoader().getResourceAsStream(RESOURCE);
+        if (input == null) {
+            throw new IOException("The resource " + RESOURCE + " not found");
+        }
+
+        List<Position> positions = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank() && !line.startsWith("#")) {
+                    String[] fields = line.split(";");
+                    long[] numNodes = new long[fields.length - 2];
+                    for (int i = 0; i < numNodes.length; i++) {
+                        numNodes[i] = Long.parseLong(fields[i + 2]);
+                    }
+                    positions.add(new Position(fields[0], fields[1], numNodes));
+                }
+            }
+        }
+
+        return positions;
+    }
+}
@@ -0,0 +1,25 @@
+package game;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PerftTest {
+
+    static Stream<Arguments> nodeCounts() throws IOException {
+        return PerftSuite.read().stream().flatMap(position -> LongStream.range(0, position.numNodes().length)
+                .mapToObj(i -> Arguments.of(position, (int) i + 1, position.numNodes()[(int) i])));
+    }
+
+    @ParameterizedTest(name = "{0} depth {1}")
+    @MethodSource("nodeCounts")
+    void countsNodes(PerftSuite.Position position, int depth, long expected) {
+        assertEquals(expected, new Perft().perft(position.toState(), depth));
+    }
+}
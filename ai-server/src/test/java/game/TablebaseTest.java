@@ -0,0 +1,109 @@
+package game;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import piece.PieceType;
+import util.Bitboard;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TablebaseTest {
+
+    /**
+     * The number of random states checked of each material, and of the material with the players swapped
+     */
+    static final int NUM_SAMPLES = 20_000;
+
+    @Test
+    void resultsAgreeWithMoves(@TempDir Path directory) throws IOException {
+        TablebaseGenerator generator = new TablebaseGenerator(directory);
+        for (long material : TablebaseGenerator.materials(3)) {
+            generator.generate(material);
+        }
+
+        Tablebase tablebase = Tablebase.open(directory);
+        Random random = new Random(11);
+        for (long material : TablebaseGenerator.materials(3)) {
+            // the swapped material is probed from the table of the material with the board flipped
+            for (long probedMaterial : new long[]{material, Tablebase.swapPlayers(material)}) {
+                String name = Tablebase.materialName(probedMaterial);
+                for (int i = 0; i < NUM_SAMPLES; i++) {
+                    State state = randomState(probedMaterial, random);
+                    int distance = tablebase.probeDistance(state.getBotPlayer().bitboards,
+                            state.getHumanPlayer().bitboards, state.isBotTurn());
+                    assertEquals(resultByMoves(tablebase, state), distance, () -> name + "\n" + state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Place the pieces of the given material on random squares, the pawns off the first and last rows
+     * @param material the material
+     * @param random the random
+     * @return the state, with a random player to move
+     */
+    static State randomState(long material, Random random) {
+        long[] botBitboards = new long[PieceType.VALUES.length];
+        long[] humanBitboards = new long[PieceType.VALUES.length];
+        long occupancy = Bitboard.EMPTY;
+        for (boolean isBot : new boolean[]{true, false}) {
+            for (PieceType type : PieceType.VALUES) {
+                for (int i = 0; i < Tablebase.count(material, isBot, type); i++) {
+                    int square;
+                    do {
+                        square = random.nextInt(Bitboard.NUM_SQUARES);
+                    } while (Bitboard.contains(occupancy, square) || (type == PieceType.PAWN
+                            && (Bitboard.y(square) == 0 || Bitboard.y(square) == Bitboard.BOARD_SIZE - 1)));
+
+                    occupancy |= Bitboard.mask(square);
+                    (isBot ? botBitboards : humanBitboards)[type.ordinal()] |= Bitboard.mask(square);
+                }
+            }
+        }
+
+        return new State(new Player(true, botBitboards), new Player(false, humanBitboards), random.nextBoolean());
+    }
+
+    /**
+     * Find the result of the given state one ply later: the best result of its moves for the player to move, made by
+     * the move generator and probed from the tablebase
+     * @param tablebase the tablebase
+     * @param state the state
+     * @return the result in the format of probeDistance
+     */
+    static int resultByMoves(Tablebase tablebase, State state) {
+        Player player = state.isBotTurn() ? state.getBotPlayer() : state.getHumanPlayer();
+        Player opponent = state.isBotTurn() ? state.getHumanPlayer() : state.getBotPlayer();
+        int[] moves = new int[player.getMaxNumMoves()];
+        int numMoves = player.generateMoves(opponent, moves);
+
+        int bestResult = 0;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < numMoves; i++) {
+            state.makeMove(moves[i]);
+            int result;
+            if (state.isTerminal()) {
+                result = state.getWinner().isPresent() ? 1 : 0;
+            } else {
+                int distance = tablebase.probeDistance(state.getBotPlayer().bitboards, state.getHumanPlayer().bitboards,
+                        state.isBotTurn());
+                result = distance > 0 ? -(distance + 1) : distance < 0 ? -distance + 1 : 0;
+            }
+            state.unmakeMove();
+
+            // the faster win, the win, the draw, the slower loss and the loss
+            int rank = result > 0 ? 1000 - result : result < 0 ? -1000 - result : 0;
+            if (rank > bestRank) {
+                bestRank = rank;
+                bestResult = result;
+            }
+        }
+
+        return bestResult;
+    }
+}